@@ -0,0 +1,39 @@
+package com.example.Horacije.benchmark;
+
+import com.example.Horacije.administration.model.Bill;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the same bills for every run, so results of different runs can be compared.
+ */
+final class BenchmarkData {
+
+    private static final String[] TYPES = {"hrana", "piće", "duvan", "slatkiši", "higijena", "ostalo"};
+    private static final String[] BRANDS = {"Imlek", "Bambi", "Štark", "Jaffa", "Knjaz Miloš", "Nectar"};
+    private static final String[] WORDS = {"mleko", "hleb", "jogurt", "sir", "kafa", "čokolada", "sapun", "sok"};
+
+    private BenchmarkData() {
+    }
+
+    static List<Bill> bills(int size) {
+        Random random = new Random(size);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Bill> bills = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Bill bill = new Bill();
+            bill.setId(i + 1);
+            bill.setBillDate(start.plusDays(random.nextInt(5 * 365)));
+            bill.setArticleName(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1_000));
+            bill.setArticlePrice(BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+            bill.setArticleType(TYPES[random.nextInt(TYPES.length)]);
+            bill.setBrandName(BRANDS[random.nextInt(BRANDS.length)]);
+            bills.add(bill);
+        }
+        return bills;
+    }
+}
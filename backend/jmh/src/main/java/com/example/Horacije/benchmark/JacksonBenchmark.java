@@ -0,0 +1,60 @@
+package com.example.Horacije.benchmark;
+
+import com.example.Horacije.administration.model.Bill;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization and deserialization of Bill lists, including the per-field @JsonFormat
+ * annotations, with a mapper configured like Spring Boot's default one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JacksonBenchmark {
+
+    private static final TypeReference<List<Bill>> BILL_LIST = new TypeReference<>() {
+    };
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<Bill> bills;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().build();
+        bills = BenchmarkData.bills(size);
+        json = objectMapper.writeValueAsBytes(bills);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return objectMapper.writeValueAsBytes(bills);
+    }
+
+    @Benchmark
+    public List<Bill> deserialize() {
+        return objectMapper.readValue(json, BILL_LIST);
+    }
+}
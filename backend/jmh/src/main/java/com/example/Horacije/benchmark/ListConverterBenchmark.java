@@ -0,0 +1,59 @@
+package com.example.Horacije.benchmark;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers.listConverter with a List (what JpaRepository.findAll returns) and with a plain Iterable,
+ * compared to the ArrayList copy constructor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ListConverterBenchmark {
+
+    @Param({"100", "100000"})
+    public int size;
+
+    private List<Bill> bills;
+    private Iterable<Bill> iterable;
+
+    @Setup
+    public void setUp() {
+        bills = BenchmarkData.bills(size);
+        iterable = () -> bills.iterator();
+    }
+
+    @Benchmark
+    public List<Bill> listConverterFromList() {
+        return Helpers.listConverter(bills);
+    }
+
+    @Benchmark
+    public List<Bill> listConverterFromIterable() {
+        return Helpers.listConverter(iterable);
+    }
+
+    @Benchmark
+    public List<Bill> copyConstructor() {
+        return new ArrayList<>(bills);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.Horacije.benchmark;
+
+import com.example.Horacije.administration.model.Bill;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summing article prices in Java: the stream reduction sumFilteredBills used before the sum moved
+ * to the database, the plain loop it replaced, and the cents column summed by BillColumnStore.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PriceReductionBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Bill> bills;
+    private long[] priceCents;
+
+    @Setup
+    public void setUp() {
+        bills = BenchmarkData.bills(size);
+        priceCents = bills.stream()
+                .mapToLong(bill -> bill.getArticlePrice().movePointRight(2).longValueExact())
+                .toArray();
+    }
+
+    @Benchmark
+    public BigDecimal streamReduce() {
+        return bills.stream()
+                .map(Bill::getArticlePrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public BigDecimal loop() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Bill bill : bills) {
+            sum = sum.add(bill.getArticlePrice());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public BigDecimal primitiveCents() {
+        long sum = 0;
+        for (long cents : priceCents) {
+            sum += cents;
+        }
+        return BigDecimal.valueOf(sum, 2);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.Horacije.benchmark;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.specification.BillSpecification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the /search Specification chain, without translating it to SQL.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SpecificationBenchmark {
+
+    private final BigDecimal priceMin = new BigDecimal("100.00");
+    private final BigDecimal priceMax = new BigDecimal("5000.00");
+    private final LocalDate dateFrom = LocalDate.of(2024, 1, 1);
+    private final LocalDate dateTo = LocalDate.of(2024, 12, 31);
+    private final List<String> types = List.of("hrana", "hrana za bebe");
+    private final List<String> brands = List.of("imlek");
+
+    @Benchmark
+    public Specification<Bill> allFilters() {
+        return BillSpecification.filter("mleko", types, brands, priceMin, priceMax, dateFrom, dateTo);
+    }
+
+    @Benchmark
+    public Specification<Bill> noFilters() {
+        return BillSpecification.filter(null, null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public Specification<Bill> filtersWithIds() {
+        return BillSpecification.filter("mleko", null, null, null, null, dateFrom, dateTo)
+                .and(BillSpecification.idIn(new int[]{1, 2, 3}));
+    }
+}
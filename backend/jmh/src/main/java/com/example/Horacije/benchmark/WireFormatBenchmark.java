@@ -0,0 +1,109 @@
+package com.example.Horacije.benchmark;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillColumns;
+import com.example.Horacije.administration.model.BillView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization CPU of a bill list response in every format the read endpoints can send,
+ * with and without gzip (as done by server.compression). The columnar variant includes
+ * the conversion of the views into columns. Bytes on the wire are printed by
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.Horacije.benchmark.WireFormatBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    public enum Format {
+        JSON, COLUMNAR_JSON, SMILE, CBOR
+    }
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param
+    public Format format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private final ObjectMapper jsonMapper = JsonMapper.builder().build();
+    private final ObjectMapper smileMapper = SmileMapper.builder().build();
+    private final ObjectMapper cborMapper = CBORMapper.builder().build();
+
+    private List<Bill> bills;
+    private List<BillView> views;
+
+    @Setup
+    public void setUp() {
+        bills = BenchmarkData.bills(size);
+        views = bills.stream()
+                .map(bill -> new BillView(bill.getId(), bill.getBillDate(), bill.getArticleName(),
+                        bill.getArticlePrice(), bill.getArticleType(), bill.getBrandName()))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        byte[] body = switch (format) {
+            case JSON -> jsonMapper.writeValueAsBytes(bills);
+            case COLUMNAR_JSON -> jsonMapper.writeValueAsBytes(BillColumns.of(views));
+            case SMILE -> smileMapper.writeValueAsBytes(bills);
+            case CBOR -> cborMapper.writeValueAsBytes(bills);
+        };
+        return gzip ? gzip(body) : body;
+    }
+
+    public static void main(String[] args) {
+        WireFormatBenchmark benchmark = new WireFormatBenchmark();
+        System.out.printf("%-8s %-14s %12s %12s%n", "bills", "format", "bytes", "gzip bytes");
+        for (int size : new int[]{100, 10_000}) {
+            benchmark.size = size;
+            benchmark.setUp();
+            for (Format format : Format.values()) {
+                benchmark.format = format;
+                benchmark.gzip = false;
+                byte[] body = benchmark.serialize();
+                System.out.printf("%-8d %-14s %12d %12d%n", size, format, body.length, gzip(body).length);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,33 +1,68 @@
 package com.example.Horacije.administration.controller;
 
 import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillBucket;
+import com.example.Horacije.administration.model.BillBulkUpdate;
+import com.example.Horacije.administration.model.BillChanges;
+import com.example.Horacije.administration.model.BillColumns;
+import com.example.Horacije.administration.model.BillFacets;
+import com.example.Horacije.administration.model.BillImportStatus;
+import com.example.Horacije.administration.model.BillIngestLogStatus;
+import com.example.Horacije.administration.model.BillIngestReceipt;
+import com.example.Horacije.administration.model.BillPriceStats;
+import com.example.Horacije.administration.model.BillSearchSummary;
+import com.example.Horacije.administration.model.BillSlice;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.services.BillAggregateCache;
+import com.example.Horacije.administration.services.BillArchiver;
+import com.example.Horacije.administration.services.BillColumnStore;
+import com.example.Horacije.administration.services.BillIngestLog;
+import com.example.Horacije.administration.services.BillLiveTotals;
 import com.example.Horacije.administration.services.BillServiceCrud;
+import com.example.Horacije.administration.services.BillServiceExport;
+import com.example.Horacije.administration.services.BillServiceImport;
 
 import com.example.Horacije.administration.services.BillServiceFunctions;
+import com.example.Horacije.administration.sharedTools.http.VersionedResource;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @Validated
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/bill")
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
 public class BillController {
 
     private final BillServiceCrud billServiceCrud;
     private final BillServiceFunctions billServiceFunctions;
+    private final BillServiceExport billServiceExport;
+    private final BillServiceImport billServiceImport;
+    private final BillIngestLog billIngestLog;
+    private final BillColumnStore billColumnStore;
+    private final BillAggregateCache billAggregateCache;
+    private final BillArchiver billArchiver;
+    private final BillLiveTotals billLiveTotals;
 
     @PostMapping("/create")
     public ResponseEntity<String> createBill(
@@ -37,11 +72,55 @@ public class BillController {
         return billServiceCrud.createBill(models);
     }
 
+    @PostMapping("/create/bulk")
+    public ResponseEntity<String> createBillsInBulk(
+            @RequestBody
+            @NotNull(message = "Models can not be null")
+            List<Bill> models) {
+        return billServiceCrud.createBillsInChunks(models);
+    }
+
+    @PostMapping("/create/fast")
+    public ResponseEntity<BillIngestReceipt> createBillFast(
+            @RequestBody
+            @NotNull(message = "Models can not be null")
+            List<Bill> models) {
+        return billIngestLog.ingest(models);
+    }
+
+    @GetMapping("/ingest-log/status")
+    public ResponseEntity<BillIngestLogStatus> readIngestLogStatus() {
+        return billIngestLog.status();
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BillImportStatus> importBills(
+            @RequestParam("file")
+            MultipartFile file) {
+        return billServiceImport.startImport(file);
+    }
+
+    @GetMapping("/import/{id}")
+    public ResponseEntity<BillImportStatus> readImportStatus(
+            @PathVariable("id")
+            @NotEmpty(message = "import id can not be empty or null")
+            String id) {
+        return billServiceImport.getImportStatus(id);
+    }
+
+    @VersionedResource
     @GetMapping("/read-all")
     public ResponseEntity<List<Bill>> readAllBills() {
         return billServiceCrud.readAllBills();
     }
 
+    @VersionedResource
+    @GetMapping(value = "/read-all", produces = BillColumns.MEDIA_TYPE_VALUE)
+    public ResponseEntity<BillColumns> readAllBillsAsColumns() {
+        return billServiceCrud.readAllBillsAsColumns();
+    }
+
+    @VersionedResource
     @GetMapping("/read-by-id/{id}")
     public ResponseEntity<Bill> readBillById(
             @PathVariable("id")
@@ -51,22 +130,25 @@ public class BillController {
         return billServiceCrud.readBillById(id);
     }
 
+    @VersionedResource
     @GetMapping("/read-by-article-name")
-    public ResponseEntity<List<Bill>> readAllBillsByArticleName(
+    public ResponseEntity<List<BillView>> readAllBillsByArticleName(
             @RequestParam("article_name")
             @NotEmpty(message = "article name can not be empty or null")
             String articleName) {
         return billServiceCrud.readAllBillsByArticleName(articleName);
     }
 
+    @VersionedResource
     @GetMapping("/read-by-article-type")
-    public ResponseEntity<List<Bill>> readAllBillsByArticleType(
+    public ResponseEntity<List<BillView>> readAllBillsByArticleType(
             @RequestParam("article_type")
             @NotEmpty(message = "article type can not be empty or null")
             String articleType) {
         return billServiceCrud.readAllBillsByArticleType(articleType);
     }
 
+    @VersionedResource
     @GetMapping("/read-by-bill-date")
     public ResponseEntity<Bill> readBillByBillDate(
             @RequestParam("bill_date")
@@ -91,6 +173,34 @@ public class BillController {
 
     }
 
+    @PutMapping("/update/bulk")
+    public ResponseEntity<String> updateBills(
+            @Valid
+            @RequestBody
+            @NotNull(message = "bulk update can not be null")
+            BillBulkUpdate model) {
+        return billServiceCrud.updateBills(model.ids(), model.changes());
+    }
+
+    @PutMapping("/update/search")
+    public ResponseEntity<String> updateBillsMatching(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @Valid
+            @RequestBody
+            @NotNull(message = "changes can not be null")
+            BillChanges changes) {
+        return billServiceCrud.updateBillsMatching(
+                name, type, brand,
+                priceMin, priceMax,
+                dateFrom, dateTo, changes);
+    }
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<String> deleteBill(
             @PathVariable("id")
@@ -101,8 +211,32 @@ public class BillController {
         return billServiceCrud.deleteBill(id);
     }
 
+    @PostMapping("/delete/bulk")
+    public ResponseEntity<String> deleteBills(
+            @RequestBody
+            @NotEmpty(message = "ids can not be empty or null")
+            List<@NotNull(message = "id can not be null") Integer> ids) {
+        return billServiceCrud.deleteBills(ids);
+    }
+
+    @DeleteMapping("/delete/search")
+    public ResponseEntity<String> deleteBillsMatching(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo) {
+        return billServiceCrud.deleteBillsMatching(
+                name, type, brand,
+                priceMin, priceMax,
+                dateFrom, dateTo);
+    }
+
+    @VersionedResource
     @GetMapping("read-by-date-range")
-    public ResponseEntity<List<Bill>> readBillsByDateRange(
+    public ResponseEntity<List<BillView>> readBillsByDateRange(
             @RequestParam("start_date")
             @DateTimeFormat(pattern = "yyyy-MM-dd")
             LocalDate startDate,
@@ -113,6 +247,20 @@ public class BillController {
         return billServiceFunctions.findAllByBillDateBetween(startDate, endDate);
     }
 
+    @VersionedResource
+    @GetMapping(value = "read-by-date-range", produces = BillColumns.MEDIA_TYPE_VALUE)
+    public ResponseEntity<BillColumns> readBillsByDateRangeAsColumns(
+            @RequestParam("start_date")
+            @DateTimeFormat(pattern = "yyyy-MM-dd")
+            LocalDate startDate,
+            @RequestParam("end_date")
+            @DateTimeFormat(pattern = "yyyy-MM-dd")
+            LocalDate endDate
+    ) {
+        return billServiceFunctions.findAllByBillDateBetweenAsColumns(startDate, endDate);
+    }
+
+    @VersionedResource
     @GetMapping("/sum-by-date-range")
     public ResponseEntity<BigDecimal> sumArticlePriceByDateRange(
             @RequestParam("start_date")
@@ -126,6 +274,7 @@ public class BillController {
         return billServiceFunctions.sumArticlePriceByDateRange(startDate, endDate);
     }
 
+    @VersionedResource
     @GetMapping("/sum-by-article-name")
     public ResponseEntity<BigDecimal> sumByArticleNameAndDateRange(
             @RequestParam("start_date")
@@ -143,6 +292,7 @@ public class BillController {
         return billServiceFunctions.sumArticlePriceByArticleName(articleName, startDate, endDate);
     }
 
+    @VersionedResource
     @GetMapping("/sum-by-article-type")
     public ResponseEntity<BigDecimal> sumByArticleTypeAndDateRange(
             @RequestParam("start_date")
@@ -160,8 +310,26 @@ public class BillController {
         return billServiceFunctions.sumByArticleTypeAndDateRange(articleType, startDate, endDate);
     }
 
+    @VersionedResource
+    @GetMapping("/price-stats-by-article-type")
+    public ResponseEntity<BillPriceStats> priceStatsByArticleType(
+            @RequestParam("start_month")
+            @DateTimeFormat(pattern = "yyyy-MM")
+            YearMonth startMonth,
+
+            @RequestParam("end_month")
+            @DateTimeFormat(pattern = "yyyy-MM")
+            YearMonth endMonth,
+
+            @RequestParam(value = "article_type", required = false)
+            String articleType
+    ) {
+        return billServiceFunctions.priceStatsByArticleType(articleType, startMonth, endMonth);
+    }
+
+    @VersionedResource
     @GetMapping("/search")
-    public ResponseEntity<Page<Bill>> searchBills(
+    public ResponseEntity<Page<BillView>> searchBills(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String brand,
@@ -170,7 +338,10 @@ public class BillController {
             @RequestParam(required = false) LocalDate dateFrom,
             @RequestParam(required = false) LocalDate dateTo,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "size can not be less then one")
+            @Max(value = 100, message = "size can not be more then 100")
+            int size,
             @RequestParam(defaultValue = "billDate")
             String sortBy, @RequestParam(defaultValue = "desc")
             String direction) {
@@ -180,6 +351,92 @@ public class BillController {
                         priceMax, dateFrom, dateTo,
                         page, size, sortBy, direction));
     }
+
+    @VersionedResource
+    @GetMapping(value = "/search", params = "mode=cursor")
+    public ResponseEntity<BillSlice> searchBillsByCursor(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "size can not be less then one")
+            @Max(value = 100, message = "size can not be more then 100")
+            int size,
+            @RequestParam(defaultValue = "billDate")
+            String sortBy, @RequestParam(defaultValue = "desc")
+            String direction) {
+        return ResponseEntity.ok(
+                billServiceFunctions.searchBillsByCursor(
+                        name, type, brand, priceMin,
+                        priceMax, dateFrom, dateTo,
+                        cursor, size, sortBy, direction));
+    }
+
+    @VersionedResource
+    @GetMapping(value = "/search", params = "mode=facets")
+    public ResponseEntity<BillFacets> searchBillsWithFacets(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "size can not be less then one")
+            @Max(value = 100, message = "size can not be more then 100")
+            int size,
+            @RequestParam(defaultValue = "billDate")
+            String sortBy, @RequestParam(defaultValue = "desc")
+            String direction,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "facetSize can not be less then one")
+            @Max(value = 100, message = "facetSize can not be more then 100")
+            int facetSize,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "priceBuckets can not be less then one")
+            @Max(value = 100, message = "priceBuckets can not be more then 100")
+            int priceBuckets) {
+        return ResponseEntity.ok(
+                billServiceFunctions.searchBillsWithFacets(
+                        name, type, brand, priceMin,
+                        priceMax, dateFrom, dateTo,
+                        page, size, sortBy, direction,
+                        facetSize, priceBuckets));
+    }
+
+    @VersionedResource
+    @GetMapping(value = "/search", params = "mode=summary")
+    public CompletableFuture<ResponseEntity<BillSearchSummary>> searchBillsWithSum(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10")
+            @Min(value = 1, message = "size can not be less then one")
+            @Max(value = 100, message = "size can not be more then 100")
+            int size,
+            @RequestParam(defaultValue = "billDate")
+            String sortBy, @RequestParam(defaultValue = "desc")
+            String direction) {
+        return billServiceFunctions.searchBillsWithSum(
+                        name, type, brand, priceMin,
+                        priceMax, dateFrom, dateTo,
+                        page, size, sortBy, direction)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @VersionedResource
     @GetMapping("/sum")
     public ResponseEntity<BigDecimal> sumFilteredBills(
             @RequestParam(required = false) String name,
@@ -195,4 +452,101 @@ public class BillController {
                 priceMin, priceMax,
                 dateFrom, dateTo);
     }
+
+    @GetMapping(value = "/sum/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFilteredTotal(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo
+    ) {
+        return billLiveTotals.subscribe(
+                name, type, brand,
+                priceMin, priceMax,
+                dateFrom, dateTo);
+    }
+
+    @VersionedResource
+    @GetMapping("/sum-by-period")
+    public ResponseEntity<List<BillBucket>> sumByPeriod(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(defaultValue = "month") String granularity,
+            @RequestParam(defaultValue = "none") String groupBy
+    ) {
+        return billServiceFunctions.sumByPeriod(
+                name, type, brand,
+                priceMin, priceMax,
+                dateFrom, dateTo,
+                granularity, groupBy);
+    }
+
+    @VersionedResource
+    @GetMapping(value = "/export/ndjson", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBillsAsNdjson(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo
+    ) {
+        StreamingResponseBody body = out -> billServiceExport.exportNdjson(
+                name, type, brand,
+                priceMin, priceMax,
+                dateFrom, dateTo, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @VersionedResource
+    @GetMapping(value = "/export/csv", produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> exportBillsAsCsv(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) BigDecimal priceMin,
+            @RequestParam(required = false) BigDecimal priceMax,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo
+    ) {
+        StreamingResponseBody body = out -> billServiceExport.exportCsv(
+                name, type, brand,
+                priceMin, priceMax,
+                dateFrom, dateTo, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"bills.csv\"")
+                .body(body);
+    }
+
+    @PostMapping("/daily-summary/rebuild")
+    public ResponseEntity<String> rebuildDailySummary() {
+        return billServiceCrud.rebuildDailySummary();
+    }
+
+    @PostMapping("/archive/run")
+    public ResponseEntity<String> archiveBills() {
+        return billArchiver.archive();
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<BillAggregateCache.Stats> readCacheStats() {
+        return ResponseEntity.ok(billAggregateCache.stats());
+    }
+
+    @GetMapping("/column-store/check")
+    public ResponseEntity<BillColumnStore.ConsistencyReport> checkColumnStore() {
+        return ResponseEntity.ok(billColumnStore.checkConsistency());
+    }
 }
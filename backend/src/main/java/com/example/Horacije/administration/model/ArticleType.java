@@ -0,0 +1,32 @@
+package com.example.Horacije.administration.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Row of the article_type lookup table. Bills carry the name itself in {@link Bill#getArticleType()},
+ * the entity is only joined to sort bills by type name.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+@Entity
+@Immutable
+@Table(name = "article_type")
+public class ArticleType {
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "name")
+    private String name;
+}
@@ -1,10 +1,15 @@
 package com.example.Horacije.administration.model;
 
 
+import com.example.Horacije.administration.repository.ArticleTypeConverter;
+import com.example.Horacije.administration.repository.BrandConverter;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
@@ -42,6 +47,8 @@ public class Bill {
     private String articleName;
 
     @NotNull(message = "article price can not be null")
+    @DecimalMin(value = "-99999999.99", message = "article price is out of range")
+    @DecimalMax(value = "99999999.99", message = "article price is out of range")
     @JsonFormat(shape = JsonFormat.Shape.NUMBER)
     @JsonProperty("article_price")
     @Column(name = "article_price", precision = 10, scale = 2)
@@ -49,12 +56,27 @@ public class Bill {
 
     @JsonFormat(shape =  JsonFormat.Shape.STRING)
     @JsonProperty("article_type")
-    @Column(name = "article_type")
+    @Convert(converter = ArticleTypeConverter.class)
+    @Column(name = "article_type_id")
     private String articleType;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING)
     @JsonProperty("brand_name")
-    @Column(name = "brand_name")
+    @Convert(converter = BrandConverter.class)
+    @Column(name = "brand_id")
     private String brandName;
 
+    // Read-only views of the same id columns, joined only to sort by type or brand name
+    @JsonIgnore
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "article_type_id", insertable = false, updatable = false)
+    private ArticleType articleTypeEntry;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "brand_id", insertable = false, updatable = false)
+    private Brand brandEntry;
+
 }
@@ -0,0 +1,48 @@
+package com.example.Horacije.administration.model;
+
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Aggregates of the bills in one time period and (optionally) one article type or brand.
+ *
+ * @param period first day of the period (the day itself, Monday of the week or first day of the month)
+ * @param group  article type or brand name of the bucket, null when not grouped or the bills have none
+ * @param sum    sum of article prices
+ * @param count  number of bills
+ * @param min    lowest article price
+ * @param max    highest article price
+ */
+public record BillBucket(LocalDate period,
+                         String group,
+                         BigDecimal sum,
+                         Long count,
+                         BigDecimal min,
+                         BigDecimal max) {
+
+    public enum Granularity {
+        DAY, WEEK, MONTH
+    }
+
+    public enum GroupBy {
+        NONE, TYPE, BRAND
+    }
+
+    /**
+     * Parses a request parameter (case-insensitive) into an enum constant.
+     *
+     * @throws CustomException if the value is not one of the constants
+     */
+    public static <E extends Enum<E>> E parse(Class<E> type, String value, String parameter) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new CustomException(parameter + " must be one of "
+                    + Arrays.toString(type.getEnumConstants()).toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.Horacije.administration.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * Body of the bulk update by ids.
+ *
+ * @param ids     identifiers of the bills to update
+ * @param changes new values set on all of them
+ */
+public record BillBulkUpdate(@NotEmpty(message = "ids can not be empty or null")
+                             List<@NotNull(message = "id can not be null") Integer> ids,
+
+                             @Valid
+                             @NotNull(message = "changes can not be null")
+                             BillChanges changes) {
+}
@@ -0,0 +1,25 @@
+package com.example.Horacije.administration.model;
+
+import java.util.List;
+
+/**
+ * Published by BillServiceCrud after a write is committed.
+ * An update is reported as the old version in removed and the new version in added.
+ *
+ * @param removed bills as they were before the write (deleted or updated bills)
+ * @param added   bills as they are after the write (inserted or updated bills)
+ */
+public record BillChangedEvent(List<Bill> removed, List<Bill> added) {
+
+    public static BillChangedEvent inserted(List<Bill> bills) {
+        return new BillChangedEvent(List.of(), List.copyOf(bills));
+    }
+
+    public static BillChangedEvent updated(Bill before, Bill after) {
+        return new BillChangedEvent(List.of(before), List.of(after));
+    }
+
+    public static BillChangedEvent deleted(Bill bill) {
+        return new BillChangedEvent(List.of(bill), List.of());
+    }
+}
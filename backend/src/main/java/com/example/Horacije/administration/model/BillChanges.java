@@ -0,0 +1,62 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Pattern;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * New values set on every bill of a bulk update, e.g. to re-type or re-brand bills.
+ * Null fields are left unchanged, so a change can't set a column to null.
+ * Set values must be valid like on {@link Bill}: names are not blank and the price fits the column.
+ */
+public record BillChanges(@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+                          @JsonProperty("bill_date")
+                          LocalDate billDate,
+
+                          @Pattern(regexp = ".*\\S.*", message = "article name can not be empty")
+                          @JsonFormat(shape = JsonFormat.Shape.STRING)
+                          @JsonProperty("article_name")
+                          String articleName,
+
+                          @DecimalMin(value = "-99999999.99", message = "article price is out of range")
+                          @DecimalMax(value = "99999999.99", message = "article price is out of range")
+                          @JsonFormat(shape = JsonFormat.Shape.NUMBER)
+                          @JsonProperty("article_price")
+                          BigDecimal articlePrice,
+
+                          @Pattern(regexp = ".*\\S.*", message = "article type can not be empty")
+                          @JsonFormat(shape = JsonFormat.Shape.STRING)
+                          @JsonProperty("article_type")
+                          String articleType,
+
+                          @Pattern(regexp = ".*\\S.*", message = "brand name can not be empty")
+                          @JsonFormat(shape = JsonFormat.Shape.STRING)
+                          @JsonProperty("brand_name")
+                          String brandName) {
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return billDate == null && articleName == null && articlePrice == null
+                && articleType == null && brandName == null;
+    }
+
+    /**
+     * Returns a copy of the bill with these changes applied, the given bill is not modified.
+     */
+    public Bill applyTo(Bill bill) {
+        Bill changed = new Bill();
+        changed.setId(bill.getId());
+        changed.setBillDate(billDate != null ? billDate : bill.getBillDate());
+        changed.setArticleName(articleName != null ? articleName : bill.getArticleName());
+        changed.setArticlePrice(articlePrice != null ? articlePrice : bill.getArticlePrice());
+        changed.setArticleType(articleType != null ? articleType : bill.getArticleType());
+        changed.setBrandName(brandName != null ? brandName : bill.getBrandName());
+        return changed;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.http.MediaType;
+
+import java.math.BigDecimal;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Columnar form of a bill list, sent for Accept: {@value #MEDIA_TYPE_VALUE}.
+ * <p>
+ * Every field is one array with a value per bill, so the keys are written once
+ * instead of once per bill. The bill at index i is made of the i-th value of every array.
+ *
+ * @param count number of bills (length of every array)
+ */
+public record BillColumns(int count,
+
+                          int[] id,
+
+                          @JsonProperty("bill_date")
+                          String[] billDate,
+
+                          @JsonProperty("article_name")
+                          String[] articleName,
+
+                          @JsonProperty("article_price")
+                          BigDecimal[] articlePrice,
+
+                          @JsonProperty("article_type")
+                          String[] articleType,
+
+                          @JsonProperty("brand_name")
+                          String[] brandName) {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.horacije.columnar+json";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    public static BillColumns of(List<BillView> bills) {
+        int count = bills.size();
+        int[] id = new int[count];
+        String[] billDate = new String[count];
+        String[] articleName = new String[count];
+        BigDecimal[] articlePrice = new BigDecimal[count];
+        String[] articleType = new String[count];
+        String[] brandName = new String[count];
+        for (int i = 0; i < count; i++) {
+            BillView bill = bills.get(i);
+            id[i] = bill.id();
+            // Same yyyy-MM-dd format as the bill_date of Bill
+            billDate[i] = bill.billDate() == null ? null : DateTimeFormatter.ISO_LOCAL_DATE.format(bill.billDate());
+            articleName[i] = bill.articleName();
+            articlePrice[i] = bill.articlePrice();
+            articleType[i] = bill.articleType();
+            brandName[i] = bill.brandName();
+        }
+        return new BillColumns(count, id, billDate, articleName, articlePrice, articleType, brandName);
+    }
+}
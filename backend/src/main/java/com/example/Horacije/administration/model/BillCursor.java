@@ -0,0 +1,67 @@
+package com.example.Horacije.administration.model;
+
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position of the last bill on a keyset page: the value of the sort field and the bill id.
+ * Clients get it as an opaque Base64 string and send it back to read the next page.
+ *
+ * @param sortBy    sort field the cursor was created for ("billDate" or "articlePrice")
+ * @param direction sort direction the cursor was created for ("asc" or "desc")
+ * @param key       value of the sort field of the last bill
+ * @param id        id of the last bill, used as a tie breaker
+ */
+public record BillCursor(String sortBy, String direction, Comparable<?> key, Integer id) {
+
+    public static final Set<String> SORT_FIELDS = Set.of("billDate", "articlePrice");
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Creates a cursor pointing after the given bill.
+     */
+    public static BillCursor after(Bill bill, String sortBy, String direction) {
+        Comparable<?> key = sortBy.equals("billDate") ? bill.getBillDate() : bill.getArticlePrice();
+        return new BillCursor(sortBy, direction, key, bill.getId());
+    }
+
+    /**
+     * Encodes the cursor as an URL safe string.
+     */
+    public String encode() {
+        String value = key instanceof BigDecimal price ? price.toPlainString() : key.toString();
+        String raw = String.join(SEPARATOR, sortBy, direction, value, id.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor created by {@link #encode()}.
+     *
+     * @param cursor encoded cursor
+     * @return decoded cursor
+     * @throws CustomException if the cursor is malformed
+     */
+    public static BillCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != 4 || !SORT_FIELDS.contains(parts[0])) {
+                throw new CustomException("Invalid cursor");
+            }
+            Comparable<?> key = parts[0].equals("billDate")
+                    ? LocalDate.parse(parts[2])
+                    : new BigDecimal(parts[2]);
+            return new BillCursor(parts[0], parts[1], key, Integer.valueOf(parts[3]));
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CustomException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.data.domain.Page;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A /search page together with facets of all bills matching the same filters.
+ *
+ * @param page           requested page of bills
+ * @param types          most frequent article types, by bill count
+ * @param brands         most frequent brands, by bill count
+ * @param priceHistogram equal-width price ranges from the lowest to the highest matching price
+ */
+public record BillFacets(Page<BillView> page,
+                         List<Value> types,
+                         List<Value> brands,
+                         @JsonProperty("price_histogram") List<PriceRange> priceHistogram) {
+
+    /**
+     * Bills sharing one article type or brand.
+     *
+     * @param value article type or brand name, null for bills without one
+     * @param count number of bills
+     * @param sum   sum of article prices
+     */
+    public record Value(String value, Long count, BigDecimal sum) {
+    }
+
+    /**
+     * Bills with a price in [from, to), the last range also includes its upper bound.
+     *
+     * @param from  lowest price of the range
+     * @param to    highest price of the range
+     * @param count number of bills
+     * @param sum   sum of article prices
+     */
+    public record PriceRange(BigDecimal from, BigDecimal to, Long count, BigDecimal sum) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress of a background CSV import.
+ *
+ * @param id            import job id
+ * @param fileName      name of the uploaded file
+ * @param status        QUEUED, RUNNING, COMPLETED or FAILED
+ * @param rowsRead      data rows read from the file so far
+ * @param rowsCommitted rows saved to the database so far
+ * @param rowsRejected  rows that could not be parsed, failed validation or failed to save
+ * @param rowsPerSecond committed rows per second since the import started
+ * @param startedAt     time the import started (null while queued)
+ * @param finishedAt    time the import finished (null while running)
+ * @param failure       reason the whole import stopped, null unless FAILED
+ * @param rejected      line number and reason for the first rejected rows
+ */
+public record BillImportStatus(String id,
+                               @JsonProperty("file_name") String fileName,
+                               String status,
+                               @JsonProperty("rows_read") long rowsRead,
+                               @JsonProperty("rows_committed") long rowsCommitted,
+                               @JsonProperty("rows_rejected") long rowsRejected,
+                               @JsonProperty("rows_per_second") double rowsPerSecond,
+                               @JsonProperty("started_at") Instant startedAt,
+                               @JsonProperty("finished_at") Instant finishedAt,
+                               String failure,
+                               List<String> rejected) {
+}
@@ -0,0 +1,29 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Flush progress of the ingest log.
+ *
+ * @param enabled          false if fast ingest is turned off
+ * @param appendedSequence sequence of the last record written to the log
+ * @param flushedSequence  sequence of the last record saved to the database
+ * @param pendingRecords   records in the log that are not saved yet
+ * @param pendingBills     bills in the log that are not saved yet
+ * @param lagMillis        age of the oldest record that is not saved yet, 0 if all are saved
+ * @param segments         log segment files on disk
+ * @param lastFlushAt      time of the last successful flush (null if none since startup)
+ * @param lastFailure      reason the last flush failed, null after a successful flush
+ */
+public record BillIngestLogStatus(boolean enabled,
+                                  @JsonProperty("appended_sequence") long appendedSequence,
+                                  @JsonProperty("flushed_sequence") long flushedSequence,
+                                  @JsonProperty("pending_records") long pendingRecords,
+                                  @JsonProperty("pending_bills") long pendingBills,
+                                  @JsonProperty("lag_millis") long lagMillis,
+                                  int segments,
+                                  @JsonProperty("last_flush_at") Instant lastFlushAt,
+                                  @JsonProperty("last_failure") String lastFailure) {
+}
@@ -0,0 +1,11 @@
+package com.example.Horacije.administration.model;
+
+/**
+ * Acknowledgement of bills written to the ingest log, before they are saved to the database.
+ *
+ * @param sequence sequence number of the log record, the bills are saved once
+ *                 the flushed sequence of the ingest log status reaches it
+ * @param bills    number of bills in the record
+ */
+public record BillIngestReceipt(long sequence, int bills) {
+}
@@ -0,0 +1,32 @@
+package com.example.Horacije.administration.model;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * Approximate price percentiles and distinct article count of the bills in a range of months,
+ * merged from the per (article type, month) sketches.
+ *
+ * @param articleType      article type of the bills, null for all types
+ * @param startMonth       first month of the range (inclusive)
+ * @param endMonth         last month of the range (inclusive)
+ * @param count            exact number of bills
+ * @param median           approximate median price, an actual price of one of the bills
+ * @param p90              approximate 90th percentile price, an actual price of one of the bills
+ * @param rankError        with 99% confidence the true rank of median and p90 is within
+ *                         this fraction of the requested rank (e.g. 0.0133 means p90 is between p88.67 and p91.33)
+ * @param distinctArticles estimated number of distinct article names (case and accents ignored)
+ * @param distinctLower    lower bound of distinctArticles with about 95% confidence
+ * @param distinctUpper    upper bound of distinctArticles with about 95% confidence
+ */
+public record BillPriceStats(String articleType,
+                             YearMonth startMonth,
+                             YearMonth endMonth,
+                             long count,
+                             BigDecimal median,
+                             BigDecimal p90,
+                             double rankError,
+                             long distinctArticles,
+                             long distinctLower,
+                             long distinctUpper) {
+}
@@ -0,0 +1,14 @@
+package com.example.Horacije.administration.model;
+
+import org.springframework.data.domain.Page;
+
+import java.math.BigDecimal;
+
+/**
+ * A /search page together with the price sum of all bills matching the same filters.
+ *
+ * @param page requested page of bills, its total is the number of matching bills
+ * @param sum  sum of article prices of all matching bills, null if no bill matches
+ */
+public record BillSearchSummary(Page<BillView> page, BigDecimal sum) {
+}
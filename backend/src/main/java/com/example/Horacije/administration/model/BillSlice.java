@@ -0,0 +1,20 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One keyset page of bills. Unlike a Page it has no total count,
+ * so reading it never runs a count query.
+ *
+ * @param content    bills on this page
+ * @param size       requested page size
+ * @param hasNext    true if there are more bills after this page
+ * @param nextCursor cursor of the next page, null on the last page
+ */
+public record BillSlice(List<Bill> content,
+                        int size,
+                        @JsonProperty("has_next") boolean hasNext,
+                        @JsonProperty("next_cursor") String nextCursor) {
+}
@@ -0,0 +1,17 @@
+package com.example.Horacije.administration.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregated price total and row count for a set of bills,
+ * calculated by the database instead of loading the entities.
+ *
+ * @param sum   sum of article prices (null if no bills matched)
+ * @param count number of matched bills
+ */
+public record BillTotal(BigDecimal sum, Long count) {
+
+    public boolean isEmpty() {
+        return count == null || count == 0;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.Horacije.administration.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Read-only copy of a {@link Bill}, filled directly by a constructor query.
+ * <p>
+ * It is serialized exactly like Bill, but is not an entity, so Hibernate doesn't keep
+ * it in the persistence context or track it for dirty checking.
+ */
+public record BillView(Integer id,
+
+                       @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+                       @JsonProperty("bill_date")
+                       LocalDate billDate,
+
+                       @JsonFormat(shape = JsonFormat.Shape.STRING)
+                       @JsonProperty("article_name")
+                       String articleName,
+
+                       @JsonFormat(shape = JsonFormat.Shape.NUMBER)
+                       @JsonProperty("article_price")
+                       BigDecimal articlePrice,
+
+                       @JsonFormat(shape = JsonFormat.Shape.STRING)
+                       @JsonProperty("article_type")
+                       String articleType,
+
+                       @JsonFormat(shape = JsonFormat.Shape.STRING)
+                       @JsonProperty("brand_name")
+                       String brandName) {
+}
@@ -0,0 +1,32 @@
+package com.example.Horacije.administration.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Row of the brand lookup table. Bills carry the name itself in {@link Bill#getBrandName()},
+ * the entity is only joined to sort bills by brand name.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+@Entity
+@Immutable
+@Table(name = "brand")
+public class Brand {
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "name")
+    private String name;
+}
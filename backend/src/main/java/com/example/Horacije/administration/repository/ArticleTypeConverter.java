@@ -0,0 +1,30 @@
+package com.example.Horacije.administration.repository;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stores {@code Bill.articleType} as the id of its article_type row.
+ * Hibernate creates converters through Spring, so the dictionary is injected.
+ * <p>
+ * Written values must be registered first (see {@link BillDictionary#register}), an unknown name fails
+ * instead of being stored as {@link BillDictionary#UNKNOWN_ID}. Hibernate converts query parameters
+ * with the same method, so queries must compare with names the dictionary knows.
+ */
+@Converter
+@RequiredArgsConstructor
+public class ArticleTypeConverter implements AttributeConverter<String, Integer> {
+
+    private final BillDictionary billDictionary;
+
+    @Override
+    public Integer convertToDatabaseColumn(String articleType) {
+        return billDictionary.articleTypes().requireId(articleType);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return billDictionary.articleTypes().nameOf(id);
+    }
+}
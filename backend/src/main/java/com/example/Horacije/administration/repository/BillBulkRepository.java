@@ -0,0 +1,113 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts bills with multi-row INSERT statements and deletes them with DELETE ... RETURNING.
+ * <p>
+ * Bill ids are generated with IDENTITY, which turns off Hibernate JDBC batching,
+ * so saveAll() sends one INSERT per bill. Here up to {@link #ROWS_PER_STATEMENT} bills
+ * are sent in a single statement and MariaDB's INSERT ... RETURNING gives back the generated ids.
+ * Deletes return the deleted rows in the same statement, so the daily summary can be corrected
+ * without reading the bills first.
+ * Article types and brands are written and read as their ids from {@link BillDictionary},
+ * so they must be registered before the insert.
+ * Runs in the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BillBulkRepository {
+
+    public static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO bill (bill_date, article_name, article_price, article_type_id, brand_id) VALUES ";
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?)";
+    private static final String FULL_STATEMENT = insertSql(ROWS_PER_STATEMENT);
+    private static final String DELETE_PREFIX = "DELETE FROM bill WHERE id IN (";
+    private static final String DELETE_SUFFIX =
+            ") RETURNING id, bill_date, article_name, article_price, article_type_id, brand_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BillDictionary billDictionary;
+
+    /**
+     * Inserts all bills and sets their generated ids.
+     *
+     * @param bills bills to insert, ids are ignored and overwritten
+     */
+    public void insertAll(List<Bill> bills) {
+        for (int from = 0; from < bills.size(); from += ROWS_PER_STATEMENT) {
+            List<Bill> chunk = bills.subList(from, Math.min(from + ROWS_PER_STATEMENT, bills.size()));
+            String sql = chunk.size() == ROWS_PER_STATEMENT ? FULL_STATEMENT : insertSql(chunk.size());
+
+            // RETURNING gives the ids in the same order as the VALUES rows
+            List<Integer> ids = jdbcTemplate.query(sql, statement -> bind(statement, chunk), (rs, row) -> rs.getInt(1));
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(ids.get(i));
+            }
+        }
+    }
+
+    /**
+     * Deletes the bills with the given ids, up to {@link #ROWS_PER_STATEMENT} ids per statement.
+     *
+     * @param ids identifiers of the bills to delete, ids that don't exist are ignored
+     * @return the deleted bills as they were before the delete
+     */
+    public List<Bill> deleteAllReturning(List<Integer> ids) {
+        List<Bill> deleted = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ROWS_PER_STATEMENT) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + ROWS_PER_STATEMENT, ids.size()));
+            String sql = DELETE_PREFIX + String.join(", ", Collections.nCopies(chunk.size(), "?")) + DELETE_SUFFIX;
+            deleted.addAll(jdbcTemplate.query(sql, chunk.toArray(), this::mapBill));
+        }
+        return deleted;
+    }
+
+    private Bill mapBill(ResultSet rs, int row) throws SQLException {
+        Bill bill = new Bill();
+        bill.setId(rs.getInt("id"));
+        bill.setBillDate(rs.getObject("bill_date", LocalDate.class));
+        bill.setArticleName(rs.getString("article_name"));
+        bill.setArticlePrice(rs.getBigDecimal("article_price"));
+        bill.setArticleType(billDictionary.articleTypes().nameOf(rs.getObject("article_type_id", Integer.class)));
+        bill.setBrandName(billDictionary.brands().nameOf(rs.getObject("brand_id", Integer.class)));
+        return bill;
+    }
+
+    private void bind(PreparedStatement statement, List<Bill> bills) throws SQLException {
+        int index = 1;
+        for (Bill bill : bills) {
+            statement.setObject(index++, bill.getBillDate(), Types.DATE);
+            statement.setString(index++, bill.getArticleName());
+            statement.setBigDecimal(index++, bill.getArticlePrice());
+            statement.setObject(index++, billDictionary.articleTypes().requireId(bill.getArticleType()), Types.INTEGER);
+            statement.setObject(index++, billDictionary.brands().requireId(bill.getBrandName()), Types.INTEGER);
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_VALUES.length() + 2) + 16);
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_VALUES);
+        }
+        return sql.append(" RETURNING id").toString();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access to bill_daily_summary, which holds the price total and bill count
+ * per (bill_date, article_type_id, brand_id).
+ * <p>
+ * Date range sums read about one row per day and type/brand instead of every bill.
+ * Writes must call {@link #apply(Collection)} in the same transaction as the bill change,
+ * so the summary never drifts from the bill table. {@link #rebuild()} recalculates it from scratch.
+ * Deltas carry names, which are resolved to their lookup ids by {@link BillDictionary}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BillDailySummaryRepository {
+
+    private static final String UPSERT = """
+            INSERT INTO bill_daily_summary (bill_date, article_type_id, brand_id, total_price, bill_count)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                total_price = total_price + VALUES(total_price),
+                bill_count = bill_count + VALUES(bill_count)""";
+
+    private static final String DELETE_EMPTY = """
+            DELETE FROM bill_daily_summary
+            WHERE bill_date = ? AND article_type_id = ? AND brand_id = ? AND bill_count <= 0""";
+
+    private static final String REBUILD = """
+            INSERT INTO bill_daily_summary (bill_date, article_type_id, brand_id, total_price, bill_count)
+            SELECT bill_date, COALESCE(article_type_id, 0), COALESCE(brand_id, 0), SUM(article_price), COUNT(*)
+            FROM bill
+            GROUP BY bill_date, COALESCE(article_type_id, 0), COALESCE(brand_id, 0)""";
+
+    // Stored instead of NULL, because primary key columns can't be NULL
+    private static final int NONE = 0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BillDictionary billDictionary;
+
+    /**
+     * Change of one summary row.
+     *
+     * @param billDate    bill date
+     * @param articleType article type, null if the bill has none
+     * @param brandName   brand name, null if the bill has none
+     * @param total       price change
+     * @param count       bill count change
+     */
+    public record Delta(LocalDate billDate, String articleType, String brandName, BigDecimal total, long count) {
+    }
+
+    /**
+     * Creates deltas that add the given bills to the summary, grouped by summary key.
+     */
+    public static List<Delta> added(Collection<Bill> bills) {
+        return group(bills, 1);
+    }
+
+    /**
+     * Creates deltas that remove the given bills from the summary, grouped by summary key.
+     */
+    public static List<Delta> removed(Collection<Bill> bills) {
+        return group(bills, -1);
+    }
+
+    /**
+     * Applies deltas to the summary. Must run in the transaction that changed the bills.
+     *
+     * @param deltas changes to apply
+     */
+    public void apply(Collection<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT, deltas, deltas.size(), (statement, delta) -> {
+            statement.setDate(1, Date.valueOf(delta.billDate()));
+            statement.setInt(2, articleTypeId(delta));
+            statement.setInt(3, brandId(delta));
+            statement.setBigDecimal(4, delta.total());
+            statement.setLong(5, delta.count());
+        });
+
+        List<Delta> decrements = deltas.stream().filter(delta -> delta.count() < 0).toList();
+        if (!decrements.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_EMPTY, decrements, decrements.size(), (statement, delta) -> {
+                statement.setDate(1, Date.valueOf(delta.billDate()));
+                statement.setInt(2, articleTypeId(delta));
+                statement.setInt(3, brandId(delta));
+            });
+        }
+    }
+
+    /**
+     * Recalculates the whole summary from the bill table.
+     *
+     * @return number of summary rows
+     */
+    public int rebuild() {
+        jdbcTemplate.update("DELETE FROM bill_daily_summary");
+        return jdbcTemplate.update(REBUILD);
+    }
+
+    /**
+     * Sums prices of all bills between two dates (inclusive).
+     *
+     * @return the total, or null if there are no bills in the range
+     */
+    public BigDecimal sumByDateRange(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.queryForObject(
+                "SELECT SUM(total_price) FROM bill_daily_summary WHERE bill_date BETWEEN ? AND ?",
+                BigDecimal.class, Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+
+    /**
+     * Sums prices of bills with the given article type between two dates (inclusive).
+     *
+     * @return the total, or null if there are no matching bills
+     */
+    public BigDecimal sumByArticleTypeAndDateRange(String articleType, LocalDate startDate, LocalDate endDate) {
+        Integer articleTypeId = billDictionary.articleTypes().idOf(articleType);
+        if (articleTypeId == null || articleTypeId == BillDictionary.UNKNOWN_ID) {
+            return null;
+        }
+        return jdbcTemplate.queryForObject(
+                "SELECT SUM(total_price) FROM bill_daily_summary WHERE article_type_id = ? AND bill_date BETWEEN ? AND ?",
+                BigDecimal.class, articleTypeId, Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+
+    private int articleTypeId(Delta delta) {
+        Integer id = billDictionary.articleTypes().requireId(delta.articleType());
+        return id == null ? NONE : id;
+    }
+
+    private int brandId(Delta delta) {
+        Integer id = billDictionary.brands().requireId(delta.brandName());
+        return id == null ? NONE : id;
+    }
+
+    private static List<Delta> group(Collection<Bill> bills, int sign) {
+        Map<List<Object>, Delta> deltas = new LinkedHashMap<>();
+        for (Bill bill : bills) {
+            String type = bill.getArticleType();
+            String brand = bill.getBrandName();
+            // The bill table keeps two decimals, so the summary must add the same rounded value
+            BigDecimal price = bill.getArticlePrice().setScale(2, RoundingMode.HALF_UP);
+            BigDecimal total = sign < 0 ? price.negate() : price;
+            deltas.merge(Arrays.asList(bill.getBillDate(), type, brand),
+                    new Delta(bill.getBillDate(), type, brand, total, sign),
+                    (a, b) -> new Delta(a.billDate(), a.articleType(), a.brandName(),
+                            a.total().add(b.total()), a.count() + b.count()));
+        }
+        return List.copyOf(deltas.values());
+    }
+}
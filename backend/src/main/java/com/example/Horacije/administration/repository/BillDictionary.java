@@ -0,0 +1,208 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory name/id dictionary of the article_type and brand lookup tables, which bills reference by id.
+ * <p>
+ * Reading a bill resolves its ids to names from memory, see {@link ArticleTypeConverter} and
+ * {@link BrandConverter}, and filters resolve names to ids before the query runs.
+ * A name that isn't cached yet is looked up in the database, where names are unique under the
+ * case and accent insensitive collation, so e.g. "HRANA" resolves to the id of "hrana".
+ * <p>
+ * Writes must {@link #register} their names before the write transaction starts. New names are then
+ * committed on their own, so a cached id never points to a row that was rolled back with the write.
+ * Lookup rows are never deleted. Names added by other application instances are loaded on the first miss,
+ * and before a substring lookup when the row count changed.
+ */
+@Repository
+public class BillDictionary implements SmartInitializingSingleton {
+
+    /**
+     * Id of a name that isn't in the lookup table, no bill has it.
+     */
+    public static final int UNKNOWN_ID = -1;
+
+    private final Lookup articleTypes;
+    private final Lookup brands;
+
+    public BillDictionary(JdbcTemplate jdbcTemplate) {
+        this.articleTypes = new Lookup(jdbcTemplate, "article_type");
+        this.brands = new Lookup(jdbcTemplate, "brand");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        articleTypes.reload();
+        brands.reload();
+    }
+
+    public Lookup articleTypes() {
+        return articleTypes;
+    }
+
+    public Lookup brands() {
+        return brands;
+    }
+
+    /**
+     * Adds the article types and brands of the bills that aren't in the lookup tables yet.
+     * Must be called outside of the transaction that writes the bills.
+     */
+    public void register(Collection<Bill> bills) {
+        for (Bill bill : bills) {
+            register(bill.getArticleType(), bill.getBrandName());
+        }
+    }
+
+    /**
+     * Adds the article type and brand if they aren't in the lookup tables yet.
+     * Must be called outside of the transaction that writes them.
+     *
+     * @param articleType article type (nullable)
+     * @param brandName   brand name (nullable)
+     */
+    public void register(String articleType, String brandName) {
+        articleTypes.register(articleType);
+        brands.register(brandName);
+    }
+
+    /**
+     * Names and ids of one lookup table.
+     */
+    public static final class Lookup {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final String table;
+        private final Map<String, Integer> idByName = new ConcurrentHashMap<>();
+        private final Map<Integer, Name> nameById = new ConcurrentHashMap<>();
+
+        private Lookup(JdbcTemplate jdbcTemplate, String table) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.table = table;
+        }
+
+        /**
+         * Name as stored in the lookup table, with its normalized form for substring filters.
+         */
+        private record Name(String value, String normalized) {
+        }
+
+        /**
+         * Resolves a name to its id, for filters and for writing already registered names.
+         *
+         * @param name name to resolve (nullable)
+         * @return the id, {@link #UNKNOWN_ID} if the name isn't in the table, or null if name is null
+         */
+        public Integer idOf(String name) {
+            if (name == null) {
+                return null;
+            }
+            Integer id = idByName.get(name);
+            if (id != null) {
+                return id;
+            }
+            List<Integer> ids = jdbcTemplate.query("SELECT id, name FROM " + table + " WHERE name = ?",
+                    (rs, row) -> put(rs.getInt("id"), rs.getString("name")), name);
+            if (ids.isEmpty()) {
+                return UNKNOWN_ID;
+            }
+            idByName.put(name, ids.getFirst());
+            return ids.getFirst();
+        }
+
+        /**
+         * Resolves a registered name to its id.
+         *
+         * @throws IllegalStateException if the name was not registered
+         */
+        public Integer requireId(String name) {
+            Integer id = idOf(name);
+            if (id != null && id == UNKNOWN_ID) {
+                throw new IllegalStateException("'" + name + "' was not registered in " + table);
+            }
+            return id;
+        }
+
+        /**
+         * Resolves an id to its name, reloading the table if the id isn't cached.
+         *
+         * @param id id to resolve (nullable)
+         * @return the name, or null if id is null
+         * @throws IllegalStateException if there is no row with the id
+         */
+        public String nameOf(Integer id) {
+            if (id == null) {
+                return null;
+            }
+            Name name = nameById.get(id);
+            if (name == null) {
+                reload();
+                name = nameById.get(id);
+                if (name == null) {
+                    throw new IllegalStateException("There is no " + table + " with id " + id);
+                }
+            }
+            return name.value();
+        }
+
+        /**
+         * Finds the names containing the text, ignoring case and accents like the substring filters did
+         * on the bill table, so the bills can be filtered on the matching ids.
+         * Names added by other application instances are loaded first, because a substring can't miss.
+         *
+         * @param text text to search for (nullable)
+         * @return the matching names, or null if text is empty
+         */
+        public List<String> containing(String text) {
+            if (text == null || text.isBlank()) {
+                return null;
+            }
+            // Rows are never deleted, so a different count means that names were added
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+            if (rows != null && rows != nameById.size()) {
+                reload();
+            }
+            String key = Helpers.normalize(text);
+            List<String> names = new ArrayList<>();
+            for (Name name : nameById.values()) {
+                if (name.normalized().contains(key)) {
+                    names.add(name.value());
+                }
+            }
+            return names;
+        }
+
+        private void register(String name) {
+            if (name == null || idByName.containsKey(name)) {
+                return;
+            }
+            // A name that is already there (in any spelling) is left as it is
+            jdbcTemplate.update("INSERT INTO " + table + " (name) VALUES (?) ON DUPLICATE KEY UPDATE id = id", name);
+            requireId(name);
+        }
+
+        private synchronized void reload() {
+            jdbcTemplate.query("SELECT id, name FROM " + table,
+                    rs -> {
+                        put(rs.getInt("id"), rs.getString("name"));
+                    });
+        }
+
+        private int put(int id, String name) {
+            nameById.put(id, new Name(name, Helpers.normalize(name)));
+            idByName.put(name, id);
+            return id;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.Horacije.administration.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Access to bill_ingest_checkpoint, the last sequence of each ingest log that is saved to the bill table.
+ * {@link #save} must run in the same transaction as the insert of the bills up to that sequence.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BillIngestCheckpointRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param logId id of the ingest log
+     * @return the last saved sequence, or 0 if nothing of the log was saved yet
+     */
+    public long findFlushedSequence(String logId) {
+        List<Long> sequences = jdbcTemplate.queryForList(
+                "SELECT flushed_sequence FROM bill_ingest_checkpoint WHERE log_id = ?", Long.class, logId);
+        return sequences.isEmpty() ? 0 : sequences.getFirst();
+    }
+
+    public void save(String logId, long flushedSequence) {
+        jdbcTemplate.update("""
+                INSERT INTO bill_ingest_checkpoint (log_id, flushed_sequence) VALUES (?, ?)
+                ON DUPLICATE KEY UPDATE flushed_sequence = VALUES(flushed_sequence)""", logId, flushedSequence);
+    }
+}
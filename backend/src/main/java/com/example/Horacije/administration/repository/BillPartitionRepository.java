@@ -0,0 +1,86 @@
+package com.example.Horacije.administration.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Reads and reorganizes the yearly partitions of the bill table (see V5_0__bill_partitioned_by_year.sql)
+ * and moves the bills of archived years to the compressed bill_archive table (see V8_0__bill_archive.sql).
+ * <p>
+ * Partitions are named {@value #ARCHIVE} for all archived years, pYYYY for every live year
+ * and {@value #FUTURE} for dates after the last live year. ALTER TABLE commits implicitly
+ * and copies the rows of the reorganized partitions, so {@link #archive} and {@link #addYear}
+ * must not run inside a transaction and block writes to bill while they run.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BillPartitionRepository {
+
+    public static final String ARCHIVE = "p_archive";
+    public static final String FUTURE = "p_future";
+    private static final String COLUMNS = "id, bill_date, article_name, article_price, article_type_id, brand_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return names of the bill partitions in ascending date order
+     */
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'bill' " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class);
+    }
+
+    /**
+     * Moves the bills of a partition to the bill_archive table. Must run inside a transaction, the bills
+     * of the partition are locked first, so a bill written to it meanwhile waits instead of being
+     * deleted without a copy.
+     *
+     * @param partition partition to empty
+     * @return number of moved bills
+     * @throws IllegalStateException if the copied and deleted rows differ, the transaction has to roll back
+     */
+    public int moveToArchiveTable(String partition) {
+        Integer locked = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM bill PARTITION (" + partition + ") FOR UPDATE", Integer.class);
+        if (locked == null || locked == 0) {
+            return 0;
+        }
+        int copied = jdbcTemplate.update("INSERT INTO bill_archive (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM bill PARTITION (" + partition + ")");
+        int deleted = jdbcTemplate.update("DELETE FROM bill PARTITION (" + partition + ")");
+        if (copied != locked || deleted != locked) {
+            throw new IllegalStateException("Partition " + partition + " had " + locked + " bills, "
+                    + copied + " were copied and " + deleted + " deleted");
+        }
+        return deleted;
+    }
+
+    /**
+     * Merges the oldest live year partitions into the archive partition. They are emptied
+     * by {@link #moveToArchiveTable} first, so no rows are copied.
+     *
+     * @param years         partitions to merge, they must directly follow the archive partition
+     * @param firstLiveYear first year that stays live, the new upper bound of the archive partition
+     */
+    public void archive(List<String> years, int firstLiveYear) {
+        jdbcTemplate.execute("ALTER TABLE bill REORGANIZE PARTITION " + ARCHIVE + ", " + String.join(", ", years)
+                + " INTO (PARTITION " + ARCHIVE + " VALUES LESS THAN ('" + firstLiveYear + "-01-01'))");
+    }
+
+    /**
+     * Splits the partition of the given year off the future partition.
+     *
+     * @param year year after the last existing year partition
+     */
+    public void addYear(int year) {
+        jdbcTemplate.execute("ALTER TABLE bill REORGANIZE PARTITION " + FUTURE + " INTO ("
+                + "PARTITION p" + year + " VALUES LESS THAN ('" + (year + 1) + "-01-01'), "
+                + "PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE))");
+    }
+}
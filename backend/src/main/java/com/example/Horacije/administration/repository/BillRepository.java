@@ -1,9 +1,15 @@
 package com.example.Horacije.administration.repository;
 
 import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 
 import java.math.BigDecimal;
@@ -13,14 +19,50 @@ import java.util.Optional;
 
 public interface BillRepository extends
         JpaRepository<Bill,Integer>,
-        JpaSpecificationExecutor<Bill> {
-    List<Bill> findAllByArticleName(String articleName);
-
-    List<Bill> findAllByArticleType(String articleType);
-
+        JpaSpecificationExecutor<Bill>,
+        BillRepositoryCustom {
     Optional<Bill> findByBillDate(LocalDate billDate);
 
     List<Bill> findAllByBillDateBetween(LocalDate startDate, LocalDate endDate);
+
+    List<Bill> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    String SELECT_VIEW = "SELECT new com.example.Horacije.administration.model.BillView(" +
+            "b.id, b.billDate, b.articleName, b.articlePrice, b.articleType, b.brandName) FROM Bill b ";
+
+    // Constructor queries don't load entities, COMMIT flush mode skips the auto flush before the query
+    @Query(SELECT_VIEW)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<BillView> findAllViews();
+
+    @Query(SELECT_VIEW + "WHERE b.articleName = :articleName")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<BillView> findViewsByArticleName(String articleName);
+
+    // ArticleTypeConverter turns the parameter into an id, so it must be a name the dictionary knows
+    @Query(SELECT_VIEW + "WHERE b.articleType = :articleType")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<BillView> findViewsByArticleType(String articleType);
+
+    @Query(SELECT_VIEW + "WHERE b.billDate BETWEEN :startDate AND :endDate")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<BillView> findViewsByBillDateBetween(LocalDate startDate, LocalDate endDate);
+
+    @Query(SELECT_VIEW + "WHERE b.articleType = :articleType AND b.billDate BETWEEN :startDate AND :endDate")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<BillView> findViewsByArticleTypeAndBillDateBetween(String articleType, LocalDate startDate, LocalDate endDate);
+
+    @Query(SELECT_VIEW + "WHERE b.articleType IS NULL AND b.billDate BETWEEN :startDate AND :endDate")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<BillView> findViewsWithoutArticleTypeByBillDateBetween(LocalDate startDate, LocalDate endDate);
+
+    // Replaces all columns in one UPDATE, without loading and merging the entity
+    @Modifying
+    @Query("UPDATE Bill b SET b.billDate = :#{#bill.billDate}, b.articleName = :#{#bill.articleName}, " +
+            "b.articlePrice = :#{#bill.articlePrice}, b.articleType = :#{#bill.articleType}, " +
+            "b.brandName = :#{#bill.brandName} WHERE b.id = :#{#bill.id}")
+    int replace(Bill bill);
+
     @Query("SELECT SUM(b.articlePrice) FROM Bill b " +
             "WHERE b.billDate BETWEEN :startDate AND :endDate")
     BigDecimal sumArticlePriceByBillDateBetween(LocalDate startDate, LocalDate endDate);
@@ -0,0 +1,125 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillBucket;
+import com.example.Horacije.administration.model.BillChanges;
+import com.example.Horacije.administration.model.BillFacets;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.model.BillView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface BillRepositoryCustom {
+
+    /**
+     * Calculates SUM(article_price) and COUNT(*) of all bills matching the specification
+     * in a single aggregate query, without materializing any Bill entity.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @return sum and count of matching bills
+     */
+    BillTotal sumBySpecification(Specification<Bill> specification);
+
+    /**
+     * Reads a page of bills matching the specification as {@link BillView}s with a constructor query,
+     * so no Bill entity is loaded into the persistence context. The total is counted by a second query,
+     * which is skipped when the page shows it isn't needed.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param pageable      page, size and sort (by Bill attributes)
+     * @return page of matching bills
+     */
+    Page<BillView> findViewsBySpecification(Specification<Bill> specification, Pageable pageable);
+
+    /**
+     * Reads only the content of a page of bills matching the specification as {@link BillView}s,
+     * without counting the total.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param pageable      page, size and sort (by Bill attributes)
+     * @return bills of the page
+     */
+    List<BillView> findViewContentBySpecification(Specification<Bill> specification, Pageable pageable);
+
+    /**
+     * Streams all bills matching the specification, row by row, from an open JDBC result set.
+     * Rows are fetched in chunks, loaded read-only and periodically cleared from the persistence context,
+     * so memory use doesn't grow with the number of rows. Must be called inside a transaction
+     * and the returned stream must be closed.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param sort          order of the streamed bills
+     * @return stream of matching bills
+     */
+    Stream<Bill> streamBySpecification(Specification<Bill> specification, Sort sort);
+
+    /**
+     * Groups bills matching the specification by time period and optionally by article type or brand,
+     * calculating sum, count, min and max price of every group in a single GROUP BY query.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param granularity   length of the time periods
+     * @param groupBy       additional grouping dimension
+     * @return one bucket per non-empty group, ordered by period and group
+     */
+    List<BillBucket> aggregateBySpecification(Specification<Bill> specification,
+                                              BillBucket.Granularity granularity,
+                                              BillBucket.GroupBy groupBy);
+
+    /**
+     * Counts and sums bills matching the specification per value of an attribute,
+     * in a single GROUP BY query.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param attribute     Bill attribute to group by (e.g. "articleType", "brandName")
+     * @param limit         maximum number of values
+     * @return the most frequent values, ordered by count descending
+     */
+    List<BillFacets.Value> facetBySpecification(Specification<Bill> specification, String attribute, int limit);
+
+    /**
+     * Counts and sums bills matching the specification per price range. The ranges have equal width
+     * and span from the lowest to the highest matching price, so the histogram needs two queries,
+     * one for the bounds and one grouping the bills into ranges.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param buckets       maximum number of ranges, fewer are returned if the prices are close together
+     * @return all ranges in ascending order, including empty ones, or an empty list if no bill matches
+     */
+    List<BillFacets.PriceRange> priceHistogramBySpecification(Specification<Bill> specification, int buckets);
+
+    /**
+     * Reads bills matching the specification with SELECT ... FOR UPDATE, so they can't be changed
+     * by another transaction until the current one ends. Used to get the old values of the bills
+     * that a bulk statement is about to change. Must be called inside a transaction.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param limit         maximum number of bills to read
+     * @return matching bills, at most limit of them
+     */
+    List<Bill> lockBySpecification(Specification<Bill> specification, int limit);
+
+    /**
+     * Sets the non-null values of the changes on all bills matching the specification
+     * with a single UPDATE statement. Bills in the persistence context are not refreshed.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @param changes       new values, null fields are left unchanged
+     * @return number of updated bills
+     */
+    int updateBySpecification(Specification<Bill> specification, BillChanges changes);
+
+    /**
+     * Deletes all bills matching the specification with a single DELETE statement.
+     * Bills in the persistence context are not detached.
+     *
+     * @param specification filters to apply (nullable, meaning all bills)
+     * @return number of deleted bills
+     */
+    int deleteBySpecification(Specification<Bill> specification);
+}
@@ -0,0 +1,326 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillBucket;
+import com.example.Horacije.administration.model.BillChanges;
+import com.example.Horacije.administration.model.BillFacets;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class BillRepositoryCustomImpl implements BillRepositoryCustom {
+
+    private static final int STREAM_FETCH_SIZE = 1_000;
+    private static final int STREAM_CLEAR_INTERVAL = 1_000;
+    private static final Comparator<BillBucket> BUCKET_ORDER = Comparator.comparing(BillBucket::period)
+            .thenComparing(BillBucket::group, Comparator.nullsFirst(Comparator.comparing(Helpers::normalize)));
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public BillTotal sumBySpecification(Specification<Bill> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BillTotal> query = cb.createQuery(BillTotal.class);
+        Root<Bill> root = query.from(Bill.class);
+
+        // Same predicates as findAll(specification), but only the aggregates are selected
+        query.select(cb.construct(BillTotal.class,
+                cb.sum(root.<BigDecimal>get("articlePrice")),
+                cb.count(root)));
+
+        applySpecification(specification, root, query, cb);
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    public Page<BillView> findViewsBySpecification(Specification<Bill> specification, Pageable pageable) {
+        return PageableExecutionUtils.getPage(findViewContentBySpecification(specification, pageable), pageable, () -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+            Root<Bill> countRoot = countQuery.from(Bill.class);
+            countQuery.select(cb.count(countRoot));
+            applySpecification(specification, countRoot, countQuery, cb);
+            return entityManager.createQuery(countQuery).getSingleResult();
+        });
+    }
+
+    @Override
+    public List<BillView> findViewContentBySpecification(Specification<Bill> specification, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BillView> query = cb.createQuery(BillView.class);
+        Root<Bill> root = query.from(Bill.class);
+
+        query.select(cb.construct(BillView.class,
+                root.get("id"),
+                root.get("billDate"),
+                root.get("articleName"),
+                root.get("articlePrice"),
+                root.get("articleType"),
+                root.get("brandName")));
+        applySpecification(specification, root, query, cb);
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        // Nothing is written on this path, so the auto flush before the query is skipped
+        TypedQuery<BillView> typedQuery = entityManager.createQuery(query).setFlushMode(FlushModeType.COMMIT);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+        return typedQuery.getResultList();
+    }
+
+    @Override
+    public Stream<Bill> streamBySpecification(Specification<Bill> specification, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Bill> query = cb.createQuery(Bill.class);
+        Root<Bill> root = query.from(Bill.class);
+
+        applySpecification(specification, root, query, cb);
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        AtomicLong streamed = new AtomicLong();
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .peek(bill -> {
+                    // Already read bills are not needed anymore, drop them from the persistence context
+                    if (streamed.incrementAndGet() % STREAM_CLEAR_INTERVAL == 0) {
+                        entityManager.clear();
+                    }
+                });
+    }
+
+    @Override
+    public List<BillBucket> aggregateBySpecification(Specification<Bill> specification,
+                                                     BillBucket.Granularity granularity,
+                                                     BillBucket.GroupBy groupBy) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Bill> root = query.from(Bill.class);
+
+        Expression<LocalDate> period = periodStart(cb, root.get("billDate"), granularity);
+        Expression<String> group = switch (groupBy) {
+            case TYPE -> root.get("articleType");
+            case BRAND -> root.get("brandName");
+            case NONE -> null;
+        };
+        Expression<BigDecimal> price = root.get("articlePrice");
+
+        List<Selection<?>> selections = new ArrayList<>(List.of(
+                period.alias("period"),
+                cb.sum(price).alias("sum"),
+                cb.count(root).alias("count"),
+                cb.min(price).alias("min"),
+                cb.max(price).alias("max")));
+        List<Expression<?>> grouping = new ArrayList<>(List.of(period));
+        if (group != null) {
+            selections.add(group.alias("group"));
+            grouping.add(group);
+        }
+        query.multiselect(selections).groupBy(grouping);
+
+        applySpecification(specification, root, query, cb);
+
+        // Types and brands are grouped by their lookup ids, so the buckets are sorted by name here
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> new BillBucket(
+                        tuple.get("period", LocalDate.class),
+                        group == null ? null : tuple.get("group", String.class),
+                        tuple.get("sum", BigDecimal.class),
+                        tuple.get("count", Long.class),
+                        tuple.get("min", BigDecimal.class),
+                        tuple.get("max", BigDecimal.class)))
+                .sorted(BUCKET_ORDER)
+                .toList();
+    }
+
+    @Override
+    public List<BillFacets.Value> facetBySpecification(Specification<Bill> specification, String attribute, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BillFacets.Value> query = cb.createQuery(BillFacets.Value.class);
+        Root<Bill> root = query.from(Bill.class);
+
+        Expression<String> value = root.get(attribute);
+        Expression<Long> count = cb.count(root);
+        // The value is grouped by its lookup id, so values with equal counts are ordered by id, not by name
+        query.select(cb.construct(BillFacets.Value.class, value, count, cb.sum(root.<BigDecimal>get("articlePrice"))))
+                .groupBy(value)
+                .orderBy(cb.desc(count), cb.asc(value));
+        applySpecification(specification, root, query, cb);
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<BillFacets.PriceRange> priceHistogramBySpecification(Specification<Bill> specification, int buckets) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> boundsQuery = cb.createTupleQuery();
+        Root<Bill> boundsRoot = boundsQuery.from(Bill.class);
+        Expression<BigDecimal> boundsPrice = boundsRoot.get("articlePrice");
+        boundsQuery.multiselect(
+                cb.min(boundsPrice).alias("min"),
+                cb.max(boundsPrice).alias("max"),
+                cb.count(boundsRoot).alias("count"),
+                cb.sum(boundsPrice).alias("sum"));
+        applySpecification(specification, boundsRoot, boundsQuery, cb);
+        Tuple bounds = entityManager.createQuery(boundsQuery).getSingleResult();
+
+        BigDecimal min = bounds.get("min", BigDecimal.class);
+        BigDecimal max = bounds.get("max", BigDecimal.class);
+        if (min == null) {
+            return List.of();
+        }
+        // Prices have two decimals, so ranges narrower than a cent would stay empty
+        BigDecimal width = max.subtract(min).divide(BigDecimal.valueOf(buckets), 2, RoundingMode.UP);
+        if (width.signum() == 0) {
+            return List.of(new BillFacets.PriceRange(min, max,
+                    bounds.get("count", Long.class), bounds.get("sum", BigDecimal.class)));
+        }
+        int ranges = max.subtract(min).divide(width, 0, RoundingMode.CEILING).max(BigDecimal.ONE).intValue();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Bill> root = query.from(Bill.class);
+        Expression<BigDecimal> price = root.get("articlePrice");
+        // The highest price would start a range of its own, so it is put into the last one
+        Expression<Integer> index = cb.function("LEAST", Integer.class,
+                cb.function("FLOOR", Integer.class, cb.quot(cb.diff(price, min), width)),
+                cb.literal(ranges - 1));
+        query.multiselect(
+                        index.alias("index"),
+                        cb.count(root).alias("count"),
+                        cb.sum(price).alias("sum"))
+                .groupBy(index);
+        applySpecification(specification, root, query, cb);
+
+        Map<Integer, Tuple> byIndex = new HashMap<>();
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            byIndex.put(tuple.get("index", Integer.class), tuple);
+        }
+
+        List<BillFacets.PriceRange> histogram = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            BigDecimal from = min.add(width.multiply(BigDecimal.valueOf(i)));
+            BigDecimal to = i == ranges - 1 ? max : from.add(width);
+            Tuple tuple = byIndex.get(i);
+            histogram.add(tuple == null
+                    ? new BillFacets.PriceRange(from, to, 0L, BigDecimal.ZERO)
+                    : new BillFacets.PriceRange(from, to,
+                            tuple.get("count", Long.class), tuple.get("sum", BigDecimal.class)));
+        }
+        return histogram;
+    }
+
+    @Override
+    public List<Bill> lockBySpecification(Specification<Bill> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Bill> query = cb.createQuery(Bill.class);
+        Root<Bill> root = query.from(Bill.class);
+        query.select(root);
+        applySpecification(specification, root, query, cb);
+
+        return entityManager.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public int updateBySpecification(Specification<Bill> specification, BillChanges changes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Bill> update = cb.createCriteriaUpdate(Bill.class);
+        Root<Bill> root = update.from(Bill.class);
+        if (changes.billDate() != null) {
+            update.set(root.<LocalDate>get("billDate"), changes.billDate());
+        }
+        if (changes.articleName() != null) {
+            update.set(root.<String>get("articleName"), changes.articleName());
+        }
+        if (changes.articlePrice() != null) {
+            update.set(root.<BigDecimal>get("articlePrice"), changes.articlePrice());
+        }
+        if (changes.articleType() != null) {
+            update.set(root.<String>get("articleType"), changes.articleType());
+        }
+        if (changes.brandName() != null) {
+            update.set(root.<String>get("brandName"), changes.brandName());
+        }
+
+        // The filters only use root and cb, so they can be applied without a CriteriaQuery
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, null, cb);
+        if (predicate != null) {
+            update.where(predicate);
+        }
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public int deleteBySpecification(Specification<Bill> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaDelete<Bill> delete = cb.createCriteriaDelete(Bill.class);
+        Root<Bill> root = delete.from(Bill.class);
+
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, null, cb);
+        if (predicate != null) {
+            delete.where(predicate);
+        }
+        return entityManager.createQuery(delete).executeUpdate();
+    }
+
+    private static void applySpecification(Specification<Bill> specification,
+                                           Root<Bill> root,
+                                           CriteriaQuery<?> query,
+                                           CriteriaBuilder cb) {
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    // First day of the period, calculated by MariaDB so the grouping happens in the database
+    private static Expression<LocalDate> periodStart(CriteriaBuilder cb,
+                                                     Expression<LocalDate> billDate,
+                                                     BillBucket.Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> billDate;
+            case WEEK -> cb.function("SUBDATE", LocalDate.class, billDate,
+                    cb.function("WEEKDAY", Integer.class, billDate));
+            case MONTH -> cb.function("SUBDATE", LocalDate.class, billDate,
+                    cb.diff(cb.function("DAYOFMONTH", Integer.class, billDate), 1));
+        };
+    }
+}
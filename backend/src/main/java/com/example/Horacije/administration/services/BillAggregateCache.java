@@ -0,0 +1,268 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.sharedTools.datasource.ReplicaDataSource;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache for the sum endpoints, keyed by the normalized filter set.
+ * <p>
+ * Entries are evicted when the cache is full (least recently used first) or older than the TTL.
+ * After every committed write only the entries whose filters could include an added,
+ * changed or deleted bill are invalidated, all other totals stay cached.
+ * A result calculated while a write was running is returned but not cached,
+ * so a total read before the commit can't be stored after the invalidation.
+ */
+@Service
+public class BillAggregateCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong writeVersion = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong expiredEvictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public BillAggregateCache(@Value("${horacije.aggregate-cache.enabled:true}") boolean enabled,
+                              @Value("${horacije.aggregate-cache.max-size:1000}") int maxSize,
+                              @Value("${horacije.aggregate-cache.ttl:PT5M}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Kind of aggregate. Name, type and brand are substring filters for FILTERED
+     * and exact values for the sum-by-* kinds.
+     */
+    public enum Kind {
+        FILTERED, BY_DATE_RANGE, BY_ARTICLE_NAME, BY_ARTICLE_TYPE
+    }
+
+    /**
+     * Normalized filter set of one aggregate request.
+     */
+    public record Key(Kind kind,
+                      String name,
+                      String type,
+                      String brand,
+                      BigDecimal priceMin,
+                      BigDecimal priceMax,
+                      LocalDate dateFrom,
+                      LocalDate dateTo) {
+
+        /**
+         * Key of a /sum request. Text filters are lower-cased like the LIKE pattern,
+         * blank filters are dropped and prices are compared by value.
+         */
+        public static Key filtered(String name, String type, String brand,
+                                   BigDecimal priceMin, BigDecimal priceMax,
+                                   LocalDate dateFrom, LocalDate dateTo) {
+            return new Key(Kind.FILTERED, lower(name), lower(type), lower(brand),
+                    price(priceMin), price(priceMax), dateFrom, dateTo);
+        }
+
+        public static Key byDateRange(LocalDate startDate, LocalDate endDate) {
+            return new Key(Kind.BY_DATE_RANGE, null, null, null, null, null, startDate, endDate);
+        }
+
+        public static Key byArticleName(String articleName, LocalDate startDate, LocalDate endDate) {
+            return new Key(Kind.BY_ARTICLE_NAME, articleName, null, null, null, null, startDate, endDate);
+        }
+
+        public static Key byArticleType(String articleType, LocalDate startDate, LocalDate endDate) {
+            return new Key(Kind.BY_ARTICLE_TYPE, null, articleType, null, null, null, startDate, endDate);
+        }
+
+        /**
+         * Returns true if the bill could be counted by this aggregate.
+         * Text is compared ignoring case and accents, which is looser than the database,
+         * so a doubtful entry is rather invalidated than kept.
+         */
+        boolean mayInclude(Bill bill) {
+            LocalDate date = bill.getBillDate();
+            if ((dateFrom != null && date.isBefore(dateFrom)) || (dateTo != null && date.isAfter(dateTo))) {
+                return false;
+            }
+            BigDecimal price = bill.getArticlePrice().setScale(2, RoundingMode.HALF_UP);
+            if ((priceMin != null && price.compareTo(priceMin) <= 0)
+                    || (priceMax != null && price.compareTo(priceMax) >= 0)) {
+                return false;
+            }
+            boolean exact = kind != Kind.FILTERED;
+            return matches(name, bill.getArticleName(), exact)
+                    && matches(type, bill.getArticleType(), exact)
+                    && matches(brand, bill.getBrandName(), exact);
+        }
+
+        private static boolean matches(String filter, String value, boolean exact) {
+            if (filter == null) {
+                return true;
+            }
+            if (value == null) {
+                return false;
+            }
+            String normalizedFilter = Helpers.normalize(filter);
+            String normalizedValue = Helpers.normalize(value);
+            return exact
+                    ? normalizedValue.stripTrailing().equals(normalizedFilter.stripTrailing())
+                    : normalizedValue.contains(normalizedFilter);
+        }
+
+        private static String lower(String value) {
+            return value == null || value.isBlank() ? null : value.toLowerCase();
+        }
+
+        private static BigDecimal price(BigDecimal value) {
+            return value == null ? null : value.stripTrailingZeros();
+        }
+    }
+
+    /**
+     * Cache counters.
+     *
+     * @param size             current number of entries
+     * @param hits             requests answered from the cache
+     * @param misses           requests that had to calculate the aggregate
+     * @param sizeEvictions    entries evicted because the cache was full
+     * @param expiredEvictions entries evicted because they were older than the TTL
+     * @param invalidations    entries evicted because a write could change them
+     */
+    public record Stats(int size,
+                        long hits,
+                        long misses,
+                        @JsonProperty("size_evictions") long sizeEvictions,
+                        @JsonProperty("expired_evictions") long expiredEvictions,
+                        long invalidations) {
+    }
+
+    private record Entry(Object value, long createdAt) {
+    }
+
+    /**
+     * Returns the cached aggregate for the key, or calculates and caches it.
+     *
+     * @param key    normalized filter set
+     * @param loader calculates the aggregate on a miss
+     * @return cached or calculated aggregate (may be null if the loader returns null)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt() <= ttlNanos) {
+                    hits.incrementAndGet();
+                    return (T) entry.value();
+                }
+                entries.remove(key);
+                expiredEvictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        long version = writeVersion.get();
+        // Cached totals are shared by all clients, so they must include the latest writes
+        T value = ReplicaDataSource.readFromPrimary(loader);
+
+        synchronized (entries) {
+            // Skip caching if a write was committed while calculating
+            if (writeVersion.get() == version) {
+                entries.put(key, new Entry(value, System.nanoTime()));
+                evictOverflow();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates entries that could include any of the changed bills.
+     *
+     * Runs after the column store has applied the change.
+     *
+     * @param event change published by BillServiceCrud
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onBillsChanged(BillChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            writeVersion.incrementAndGet();
+            Iterator<Key> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                Key key = keys.next();
+                if (includesAny(key, event.removed()) || includesAny(key, event.added())) {
+                    keys.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries, for example after bills were changed outside of the application.
+     */
+    public void clear() {
+        synchronized (entries) {
+            writeVersion.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(entries.size(), hits.get(), misses.get(),
+                    sizeEvictions.get(), expiredEvictions.get(), invalidations.get());
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            sizeEvictions.incrementAndGet();
+        }
+    }
+
+    private static boolean includesAny(Key key, List<Bill> bills) {
+        for (Bill bill : bills) {
+            if (key.mayInclude(bill)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.repository.BillPartitionRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the yearly partitions of the bill table in shape.
+ * <p>
+ * Bills of closed years older than the live years are moved to the compressed bill_archive table and
+ * their emptied partitions are merged into the archive partition, so the live table stays uncompressed
+ * with a small, fixed number of partitions. Partitions for the coming years are added before their
+ * bills arrive, so they don't end up in the future partition, which can't be pruned by year.
+ * <p>
+ * Archived bills leave every query and total of the application. After a move the daily summary,
+ * the column store and the sketches are rebuilt from the live bills, so all of them agree again.
+ */
+@Slf4j
+@Service
+public class BillArchiver {
+
+    private static final Pattern YEAR_PARTITION = Pattern.compile("p(\\d{4})");
+
+    private final BillPartitionRepository billPartitionRepository;
+    private final BillServiceCrud billServiceCrud;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int liveYears;
+    private final int yearsAhead;
+
+    public BillArchiver(BillPartitionRepository billPartitionRepository,
+                        BillServiceCrud billServiceCrud,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${horacije.archive.enabled:true}") boolean enabled,
+                        @Value("${horacije.archive.live-years:2}") int liveYears,
+                        @Value("${horacije.archive.years-ahead:1}") int yearsAhead) {
+        this.billPartitionRepository = billPartitionRepository;
+        this.billServiceCrud = billServiceCrud;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.liveYears = liveYears;
+        this.yearsAhead = yearsAhead;
+    }
+
+    /**
+     * Partitions to change. Years are added first, so closed years missing after the last
+     * year partition exist before their bills are moved and they are merged into the archive partition.
+     *
+     * @param archive       year partitions to empty and merge into the archive partition, including added ones
+     * @param firstLiveYear new upper bound of the archive partition
+     * @param add           years to add as new partitions, in ascending order
+     */
+    public record Plan(List<String> archive, int firstLiveYear, List<Integer> add) {
+
+        public boolean isEmpty() {
+            return archive.isEmpty() && add.isEmpty();
+        }
+    }
+
+    @Scheduled(cron = "${horacije.archive.cron:0 30 3 * * *}")
+    public void archiveOnSchedule() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive();
+        } catch (CustomException e) {
+            log.error("Scheduled bill archiving failed", e);
+        }
+    }
+
+    /**
+     * Adds partitions for the coming years, moves the bills of closed years to the archive table
+     * and merges their emptied partitions into the archive partition. Bills written to the archive
+     * partition since the last run, with a date of an archived year, are moved as well.
+     *
+     * @return 200 OK with a description of the moved bills and changed partitions
+     * @throws CustomException if moving the bills or reorganizing the partitions fails
+     */
+    public synchronized ResponseEntity<String> archive() {
+        Plan plan;
+        int moved = 0;
+        try {
+            plan = plan(billPartitionRepository.findPartitionNames(), Year.now().getValue(), liveYears, yearsAhead);
+            for (Integer year : plan.add()) {
+                billPartitionRepository.addYear(year);
+                log.info("Added bill partition p{}", year);
+            }
+            List<String> emptied = new ArrayList<>();
+            emptied.add(BillPartitionRepository.ARCHIVE);
+            emptied.addAll(plan.archive());
+            // One transaction per partition, a failed run leaves every year either moved or live
+            for (String partition : emptied) {
+                Integer bills = transactionTemplate.execute(
+                        status -> billPartitionRepository.moveToArchiveTable(partition));
+                if (bills != null && bills > 0) {
+                    moved += bills;
+                    log.info("Moved {} bills of partition {} to the archive table", bills, partition);
+                }
+            }
+            if (!plan.archive().isEmpty()) {
+                billPartitionRepository.archive(plan.archive(), plan.firstLiveYear());
+                log.info("Archived bill partitions {}", plan.archive());
+            }
+            if (moved > 0) {
+                billServiceCrud.rebuildDailySummary();
+            }
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CustomException("Failed to archive bills", e);
+        }
+        if (plan.isEmpty() && moved == 0) {
+            return ResponseEntity.ok().body("Bill partitions are up to date");
+        }
+        return ResponseEntity.ok().body("Moved " + moved + " bills to the archive table, archived partitions "
+                + plan.archive() + ", added years " + plan.add());
+    }
+
+    /**
+     * Decides which partitions to archive and which to add.
+     *
+     * @param partitions  names of the existing partitions in ascending date order
+     * @param currentYear the current year
+     * @param liveYears   number of years that stay live, including the current year
+     * @param yearsAhead  number of years after the current one that must have a partition
+     * @return partitions to change
+     */
+    static Plan plan(List<String> partitions, int currentYear, int liveYears, int yearsAhead) {
+        if (!partitions.contains(BillPartitionRepository.ARCHIVE) || !partitions.contains(BillPartitionRepository.FUTURE)) {
+            throw new CustomException("Bill table is not partitioned by year");
+        }
+        int firstLiveYear = currentYear - liveYears + 1;
+        List<String> archive = new ArrayList<>();
+        int lastYear = 0;
+        for (String partition : partitions) {
+            Matcher matcher = YEAR_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            int year = Integer.parseInt(matcher.group(1));
+            if (year < firstLiveYear) {
+                archive.add(partition);
+            }
+            lastYear = Math.max(lastYear, year);
+        }
+
+        List<Integer> add = new ArrayList<>();
+        // A new partition can only be split off the future partition, after the last year. Every year
+        // after it is added, so the archive bound ends on a partition bound and no year partition
+        // holds the bills of the years skipped before it
+        for (int year = lastYear == 0 ? firstLiveYear : lastYear + 1; year <= currentYear + yearsAhead; year++) {
+            add.add(year);
+            if (year < firstLiveYear) {
+                archive.add("p" + year);
+            }
+        }
+        return new Plan(archive, firstLiveYear, add);
+    }
+}
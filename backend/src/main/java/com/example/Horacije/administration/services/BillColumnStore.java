@@ -0,0 +1,560 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Resident, column oriented copy of the bill table used to answer the sum endpoints
+ * without a database round trip.
+ * <p>
+ * Every bill is kept as one row spread over primitive arrays: bill date as epoch day,
+ * price in cents and dictionary encoded ids for article name, type and brand.
+ * Sums are answered by simple loops over those arrays which the JIT can unroll and vectorize.
+ * The store is loaded from {@link BillRepository} when the application is ready and
+ * is kept up to date by the {@link BillChangedEvent} published after every successful write.
+ * Until loading is finished {@link #isReady()} returns false and callers should fall back to SQL.
+ * <p>
+ * String filters are compared on a key that ignores case and accents,
+ * to follow the utf8mb4_unicode_ci collation of the bill table.
+ * The same dictionaries, with a trigram index, resolve substring searches to bill ids.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BillColumnStore {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final int INITIAL_CAPACITY = 1_024;
+
+    // Bounds far away from any DECIMAL(10,2) price or LocalDate epoch day, so subtraction can't overflow
+    private static final long NO_MIN_CENTS = -(1L << 60);
+    private static final long NO_MAX_CENTS = 1L << 60;
+    private static final int NO_MIN_DAY = -(1 << 29);
+    private static final int NO_MAX_DAY = 1 << 29;
+
+    private final BillRepository billRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${horacije.column-store.enabled:true}")
+    private boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    // Columns, one entry per bill, rows [0, size) are valid
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private long[] priceCents = new long[INITIAL_CAPACITY];
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private int[] typeIds = new int[INITIAL_CAPACITY];
+    private int[] brandIds = new int[INITIAL_CAPACITY];
+
+    // Bill id -> row index, needed for update and delete
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+
+    private final Dictionary names = new Dictionary();
+    private final Dictionary types = new Dictionary();
+    private final Dictionary brands = new Dictionary();
+
+    /**
+     * Summary of comparing the store with the bill table.
+     *
+     * @param storeCount number of bills in the store
+     * @param storeSum   sum of article prices in the store
+     * @param dbCount    number of bills in the database
+     * @param dbSum      sum of article prices in the database
+     * @param consistent true if both counts and sums are equal
+     */
+    public record ConsistencyReport(long storeCount, BigDecimal storeSum,
+                                    long dbCount, BigDecimal dbSum,
+                                    boolean consistent) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            log.info("Bill column store is disabled");
+            return;
+        }
+        reload();
+    }
+
+    /**
+     * Returns true if the store is loaded and can answer queries.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Drops the current content and loads all bills from the database in batches ordered by id.
+     * Writes that happen while loading wait for the lock and are applied afterwards,
+     * which is safe because {@link #upsert(Bill)} and {@link #remove(Integer)} are idempotent.
+     */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            clear();
+            int lastId = 0;
+            List<Bill> batch;
+            do {
+                // Not read-only, so the batch is read from the primary and bills that aren't replicated yet
+                // are not missed. Their change events may already have been applied before the reload.
+                int after = lastId;
+                batch = transactionTemplate.execute(status ->
+                        billRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(LOAD_BATCH_SIZE)));
+                for (Bill bill : batch) {
+                    upsertLocked(bill);
+                    lastId = bill.getId();
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            ready = true;
+            log.info("Bill column store loaded {} bills", size);
+        } catch (Exception e) {
+            clear();
+            log.error("Failed to load bill column store, sums will be calculated by the database", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts the bill, or replaces the row with the same id.
+     *
+     * @param bill saved bill, must have an id
+     */
+    public void upsert(Bill bill) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            upsertLocked(bill);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or replaces all given bills.
+     *
+     * @param bills saved bills, each must have an id
+     */
+    public void upsertAll(Iterable<Bill> bills) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            bills.forEach(this::upsertLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a committed write: removes deleted bills and inserts or replaces added ones.
+     *
+     * Runs before other listeners, so caches are invalidated only after the store has the new data.
+     *
+     * @param event change published by BillServiceCrud
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onBillsChanged(BillChangedEvent event) {
+        Set<Integer> addedIds = new HashSet<>();
+        event.added().forEach(bill -> addedIds.add(bill.getId()));
+        event.removed().stream()
+                .map(Bill::getId)
+                .filter(id -> !addedIds.contains(id))
+                .forEach(this::remove);
+        upsertAll(event.added());
+    }
+
+    /**
+     * Removes the bill with the given id, does nothing if it is not in the store.
+     *
+     * @param id identifier of the deleted bill
+     */
+    public void remove(Integer id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(id);
+            if (row == null) {
+                return;
+            }
+            // Move the last row into the hole, so the columns stay dense
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                epochDays[row] = epochDays[last];
+                priceCents[row] = priceCents[last];
+                nameIds[row] = nameIds[last];
+                typeIds[row] = typeIds[last];
+                brandIds[row] = brandIds[last];
+                rowById.put(ids[row], row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sums prices of bills between two dates (inclusive).
+     */
+    public BillTotal sumByDateRange(LocalDate startDate, LocalDate endDate) {
+        return sum(startDate, endDate, null, null, null, null, null);
+    }
+
+    /**
+     * Sums prices of bills with the given article name between two dates (inclusive).
+     */
+    public BillTotal sumByArticleName(String articleName, LocalDate startDate, LocalDate endDate) {
+        return sum(startDate, endDate, null, null, equalTo(articleName), null, null);
+    }
+
+    /**
+     * Sums prices of bills with the given article type between two dates (inclusive).
+     */
+    public BillTotal sumByArticleType(String articleType, LocalDate startDate, LocalDate endDate) {
+        return sum(startDate, endDate, null, null, null, equalTo(articleType), null);
+    }
+
+    /**
+     * Sums prices of bills matching the same filters as {@code BillSpecification.filter}.
+     * Name, type and brand are substring filters, prices are exclusive and dates inclusive bounds.
+     */
+    public BillTotal sumFiltered(String name,
+                                 String type,
+                                 String brand,
+                                 BigDecimal priceMin,
+                                 BigDecimal priceMax,
+                                 LocalDate dateFrom,
+                                 LocalDate dateTo) {
+        return sum(dateFrom, dateTo, priceMin, priceMax, containing(name), containing(type), containing(brand));
+    }
+
+    /**
+     * Finds ids of bills whose article name, type and brand contain the given texts,
+     * so a substring search can read the matching bills by primary key instead of
+     * scanning the table with LIKE '%text%'.
+     *
+     * @param name  article name text (nullable)
+     * @param type  article type text (nullable)
+     * @param brand brand name text (nullable)
+     * @param limit maximum number of ids worth returning
+     * @return ids of matching bills, or null if there is no text filter,
+     * the store is not loaded, or more than limit bills match
+     */
+    public int[] findIdsContaining(String name, String type, String brand, int limit) {
+        DictionaryFilter nameFilter = containing(name);
+        DictionaryFilter typeFilter = containing(type);
+        DictionaryFilter brandFilter = containing(brand);
+        if (!ready || (nameFilter == null && typeFilter == null && brandFilter == null)) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            boolean[] nameMatch = nameFilter == null ? null : nameFilter.match(names);
+            boolean[] typeMatch = typeFilter == null ? null : typeFilter.match(types);
+            boolean[] brandMatch = brandFilter == null ? null : brandFilter.match(brands);
+
+            IntList result = new IntList();
+            for (int i = 0; i < size; i++) {
+                if ((nameMatch != null && !nameMatch[nameIds[i]])
+                        || (typeMatch != null && !typeMatch[typeIds[i]])
+                        || (brandMatch != null && !brandMatch[brandIds[i]])) {
+                    continue;
+                }
+                if (result.size == limit) {
+                    return null;
+                }
+                result.add(ids[i]);
+            }
+            return result.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares count and total of the store with the bill table.
+     * Writes running at the same time can produce a false mismatch, so repeat the check before reloading.
+     *
+     * @return comparison of the store and the database
+     */
+    public ConsistencyReport checkConsistency() {
+        BillTotal store = sumByDateRange(null, null);
+        BillTotal db = billRepository.sumBySpecification(null);
+        BigDecimal storeSum = store.sum() == null ? BigDecimal.ZERO : store.sum();
+        BigDecimal dbSum = db.sum() == null ? BigDecimal.ZERO : db.sum();
+        boolean consistent = ready
+                && store.count().equals(db.count())
+                && storeSum.compareTo(dbSum) == 0;
+        return new ConsistencyReport(store.count(), storeSum, db.count(), dbSum, consistent);
+    }
+
+    private BillTotal sum(LocalDate dateFrom,
+                          LocalDate dateTo,
+                          BigDecimal priceMin,
+                          BigDecimal priceMax,
+                          DictionaryFilter nameFilter,
+                          DictionaryFilter typeFilter,
+                          DictionaryFilter brandFilter) {
+        int fromDay = dateFrom == null ? NO_MIN_DAY : (int) dateFrom.toEpochDay();
+        int toDay = dateTo == null ? NO_MAX_DAY : (int) dateTo.toEpochDay();
+        // price > min  <=>  cents > floor(min * 100),  price < max  <=>  cents < ceil(max * 100)
+        long minCents = priceMin == null ? NO_MIN_CENTS
+                : priceMin.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValueExact();
+        long maxCents = priceMax == null ? NO_MAX_CENTS
+                : priceMax.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+
+        lock.readLock().lock();
+        try {
+            boolean[] nameMatch = nameFilter == null ? null : nameFilter.match(names);
+            boolean[] typeMatch = typeFilter == null ? null : typeFilter.match(types);
+            boolean[] brandMatch = brandFilter == null ? null : brandFilter.match(brands);
+
+            long sum = 0;
+            long count = 0;
+            int n = size;
+            if (nameMatch == null && typeMatch == null && brandMatch == null) {
+                // Branch free loop: mask is -1 when the row is inside all bounds, 0 otherwise
+                int[] days = epochDays;
+                long[] cents = priceCents;
+                for (int i = 0; i < n; i++) {
+                    int day = days[i];
+                    long price = cents[i];
+                    long mask = ((fromDay - 1 - day) & (day - toDay - 1)) >> 31;
+                    mask &= ((minCents - price) & (price - maxCents)) >> 63;
+                    sum += price & mask;
+                    count -= mask;
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    int day = epochDays[i];
+                    long price = priceCents[i];
+                    if (day < fromDay || day > toDay || price <= minCents || price >= maxCents) {
+                        continue;
+                    }
+                    if ((nameMatch != null && !nameMatch[nameIds[i]])
+                            || (typeMatch != null && !typeMatch[typeIds[i]])
+                            || (brandMatch != null && !brandMatch[brandIds[i]])) {
+                        continue;
+                    }
+                    sum += price;
+                    count++;
+                }
+            }
+            return new BillTotal(count == 0 ? null : BigDecimal.valueOf(sum, 2), count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void upsertLocked(Bill bill) {
+        Integer row = rowById.get(bill.getId());
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rowById.put(bill.getId(), row);
+        }
+        ids[row] = bill.getId();
+        epochDays[row] = (int) bill.getBillDate().toEpochDay();
+        priceCents[row] = toCents(bill.getArticlePrice());
+        nameIds[row] = names.idOf(bill.getArticleName());
+        typeIds[row] = types.idOf(bill.getArticleType());
+        brandIds[row] = brands.idOf(bill.getBrandName());
+    }
+
+    private void clear() {
+        size = 0;
+        rowById.clear();
+        names.clear();
+        types.clear();
+        brands.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newLength);
+        epochDays = Arrays.copyOf(epochDays, newLength);
+        priceCents = Arrays.copyOf(priceCents, newLength);
+        nameIds = Arrays.copyOf(nameIds, newLength);
+        typeIds = Arrays.copyOf(typeIds, newLength);
+        brandIds = Arrays.copyOf(brandIds, newLength);
+    }
+
+    // The column is DECIMAL(10,2), so the database rounds half up to cents as well
+    private static long toCents(BigDecimal price) {
+        return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static DictionaryFilter equalTo(String value) {
+        String key = Helpers.normalize(value).stripTrailing();
+        return dictionary -> dictionary.match(entry -> entry.stripTrailing().equals(key));
+    }
+
+    private static DictionaryFilter containing(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String key = Helpers.normalize(value);
+        return dictionary -> dictionary.matchContaining(key);
+    }
+
+    /**
+     * Resolves a name, type or brand filter to a match flag per dictionary id.
+     */
+    private interface DictionaryFilter {
+        boolean[] match(Dictionary dictionary);
+    }
+
+    /**
+     * Maps normalized strings to dense int ids. Id 0 is reserved for null,
+     * so rows without a type or brand never match a filter.
+     * <p>
+     * Every value is also indexed by its trigrams (three consecutive characters),
+     * so a substring filter only has to check values sharing the rarest trigram of the search text.
+     * Values are never removed, the dictionary only grows until the next reload.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> idByValue = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final Map<Long, IntList> idsByTrigram = new HashMap<>();
+
+        Dictionary() {
+            clear();
+        }
+
+        int idOf(String value) {
+            if (value == null) {
+                return 0;
+            }
+            return idByValue.computeIfAbsent(Helpers.normalize(value), key -> {
+                values.add(key);
+                int id = values.size() - 1;
+                Set<Long> seen = new HashSet<>();
+                for (int i = 0; i + 3 <= key.length(); i++) {
+                    long trigram = trigram(key, i);
+                    if (seen.add(trigram)) {
+                        idsByTrigram.computeIfAbsent(trigram, t -> new IntList()).add(id);
+                    }
+                }
+                return id;
+            });
+        }
+
+        /**
+         * Evaluates the filter once per distinct value instead of once per row.
+         *
+         * @return match flag per id
+         */
+        boolean[] match(Predicate<String> filter) {
+            boolean[] match = new boolean[values.size()];
+            for (int id = 1; id < match.length; id++) {
+                match[id] = filter.test(values.get(id));
+            }
+            return match;
+        }
+
+        /**
+         * Finds values containing the normalized text, using the trigram index
+         * when the text is at least three characters long.
+         *
+         * @return match flag per id
+         */
+        boolean[] matchContaining(String text) {
+            if (text.length() < 3) {
+                return match(entry -> entry.contains(text));
+            }
+            IntList candidates = null;
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                IntList ids = idsByTrigram.get(trigram(text, i));
+                if (ids == null) {
+                    // No value has this trigram, so no value contains the text
+                    return new boolean[values.size()];
+                }
+                if (candidates == null || ids.size < candidates.size) {
+                    candidates = ids;
+                }
+            }
+            boolean[] match = new boolean[values.size()];
+            for (int i = 0; i < candidates.size; i++) {
+                int id = candidates.values[i];
+                match[id] = values.get(id).contains(text);
+            }
+            return match;
+        }
+
+        void clear() {
+            idByValue.clear();
+            values.clear();
+            values.add(null);
+            idsByTrigram.clear();
+        }
+
+        private static long trigram(String text, int start) {
+            return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+        }
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
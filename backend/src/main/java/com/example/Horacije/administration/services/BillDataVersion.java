@@ -0,0 +1,45 @@
+package com.example.Horacije.administration.services;
+
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing version of the bill data, used for the ETags of the read endpoints.
+ * <p>
+ * BillServiceCrud increments it after every committed write, once the change event listeners
+ * (column store and aggregate cache) have run, so a request that reads the new version
+ * also reads the new data. The version starts from zero on every start, so it is paired
+ * with a random instance id, and ETags of a previous run (or of another instance) never match.
+ * Changes made directly in the database are not seen until the daily summary is rebuilt.
+ */
+@Service
+public class BillDataVersion {
+
+    private final long instance = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    private final AtomicLong version = new AtomicLong();
+    private volatile long changedAt;
+
+    public long instance() {
+        return instance;
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public long increment() {
+        // Set before the version, so a request that reads the new version also reads its change time
+        changedAt = System.currentTimeMillis();
+        return version.incrementAndGet();
+    }
+
+    /**
+     * @return whether the version was incremented during the last {@code period}
+     */
+    public boolean changedWithin(Duration period) {
+        return System.currentTimeMillis() - changedAt < period.toMillis();
+    }
+}
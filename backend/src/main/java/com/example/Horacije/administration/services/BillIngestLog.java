@@ -0,0 +1,560 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillIngestLogStatus;
+import com.example.Horacije.administration.model.BillIngestReceipt;
+import com.example.Horacije.administration.repository.BillIngestCheckpointRepository;
+import com.example.Horacije.administration.sharedTools.datasource.ReplicaDataSource;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import com.example.Horacije.administration.sharedTools.exceptions.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Fast ingest: bills are acknowledged once they are in a local write-ahead log and saved to the database later.
+ * <p>
+ * Validated bills of a request are appended as one record to a memory-mapped segment file and the written
+ * range is forced to disk before the sequence number of the record is returned, so the latency of a request
+ * is a local fsync instead of a database transaction. Requests that wait for a force while another one
+ * runs are forced together with the next one. A background flusher saves the pending records in batches
+ * of up to {@code horacije.ingest-log.batch-size} bills through {@link BillServiceCrud#insertBills(List, Runnable)},
+ * and stores the last saved sequence in bill_ingest_checkpoint in the same transaction.
+ * A record is queued for saving only after it is forced, and a batch never skips a record that is still
+ * being forced, so the checkpoint always covers every record up to it. If more than
+ * {@code horacije.ingest-log.max-pending-bills} bills wait to be saved, new requests are rejected with 503.
+ * <p>
+ * On startup all records after the checkpoint are read from the log and saved again, so bills that were
+ * acknowledged but not saved before a crash or shutdown are not lost and none is saved twice.
+ * A record that wasn't completely written (its checksum doesn't match) ends the log, it was never acknowledged.
+ * Segments whose records are all saved are deleted. Bills are visible to reads only after they are saved.
+ */
+@Slf4j
+@Service
+public class BillIngestLog {
+
+    private static final String LOG_ID_FILE = "log-id";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Record layout: payload length (int), checksum (int), sequence (long), appended at (epoch millis, long), payload.
+    // The checksum covers everything after itself.
+    private static final int HEADER_SIZE = 24;
+    private static final int CHECKSUM_FROM = 8;
+
+    private final BillServiceCrud billServiceCrud;
+    private final BillIngestCheckpointRepository checkpointRepository;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final long maxPendingBills;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Object forceLock = new Object();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    // Forced records that are not saved yet, by sequence
+    private final ConcurrentSkipListMap<Long, Record> pending = new ConcurrentSkipListMap<>();
+    // Bills of the pending records and of the records that are being written
+    private final AtomicLong pendingBills = new AtomicLong();
+    private ScheduledExecutorService flusher;
+
+    private String logId;
+    private long nextSequence;
+    private volatile long appendedSequence;
+    private volatile long flushedSequence;
+    private volatile Instant lastFlushAt;
+    private volatile String lastFailure;
+    private volatile boolean ready;
+
+    public BillIngestLog(BillServiceCrud billServiceCrud,
+                         BillIngestCheckpointRepository checkpointRepository,
+                         @Value("${horacije.ingest-log.enabled:false}") boolean enabled,
+                         @Value("${horacije.ingest-log.directory:data/ingest-log}") Path directory,
+                         @Value("${horacije.ingest-log.segment-size:64MB}") DataSize segmentSize,
+                         @Value("${horacije.ingest-log.batch-size:10000}") int batchSize,
+                         @Value("${horacije.ingest-log.flush-interval:PT0.2S}") Duration flushInterval,
+                         @Value("${horacije.ingest-log.max-pending-bills:1000000}") long maxPendingBills) {
+        this.billServiceCrud = billServiceCrud;
+        this.checkpointRepository = checkpointRepository;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.maxPendingBills = maxPendingBills;
+    }
+
+    /**
+     * Bills of one acknowledged request.
+     */
+    private record Record(long sequence, List<Bill> bills, long appendedAt) {
+    }
+
+    /**
+     * One memory-mapped log file, named after the sequence of its first record.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // Written under the append lock, read by forcing threads
+        private volatile int position;
+        // Guarded by the force lock
+        private int forced;
+        private long lastSequence;
+
+        private Segment(Path path, int size) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+    }
+
+    /**
+     * Opens the log, queues the records that are not saved yet and starts the flusher.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void open() {
+        if (!enabled) {
+            log.info("Fast ingest is disabled");
+            return;
+        }
+        appendLock.lock();
+        try {
+            Files.createDirectories(directory);
+            logId = readOrCreateLogId();
+            flushedSequence = ReplicaDataSource.readFromPrimary(() -> checkpointRepository.findFlushedSequence(logId));
+            long lastSequence = recover();
+            nextSequence = Math.max(lastSequence, flushedSequence) + 1;
+            appendedSequence = nextSequence - 1;
+            if (segments.isEmpty()) {
+                segments.add(newSegment(nextSequence));
+            }
+            ready = true;
+            log.info("Ingest log {} opened, {} records ({} bills) to save", logId, pending.size(), pendingBills.get());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to open the ingest log in {}, fast ingest is not available", directory, e);
+            return;
+        } finally {
+            appendLock.unlock();
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(this::flush,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Validates the bills and writes them to the log.
+     *
+     * @param models bills to save
+     * @return 202 Accepted with the sequence number of the log record
+     * @throws ServiceUnavailableException if too many bills wait to be saved
+     * @throws CustomException             if fast ingest is disabled or not open, a bill is invalid,
+     *                                     the bills don't fit into a segment or the log can't be written
+     */
+    public ResponseEntity<BillIngestReceipt> ingest(List<Bill> models) {
+        if (!enabled) {
+            throw new CustomException("Fast ingest is disabled, use /create");
+        }
+        if (!ready) {
+            throw new CustomException("Ingest log is not open, use /create");
+        }
+        billServiceCrud.validateBills(models);
+
+        byte[] payload = encode(models);
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new CustomException("Too many bills for one fast ingest request, use /create/bulk");
+        }
+
+        if (pendingBills.addAndGet(models.size()) > maxPendingBills) {
+            pendingBills.addAndGet(-models.size());
+            throw new ServiceUnavailableException("Too many bills wait to be saved, try again later");
+        }
+
+        Segment segment;
+        long sequence;
+        long appendedAt;
+        int end;
+        appendLock.lock();
+        try {
+            segment = segments.getLast();
+            if (segment.capacity() - segment.position < size) {
+                segment = roll();
+            }
+            sequence = nextSequence++;
+            appendedAt = System.currentTimeMillis();
+            end = write(segment, sequence, appendedAt, payload);
+            appendedSequence = sequence;
+        } catch (IOException | RuntimeException e) {
+            pendingBills.addAndGet(-models.size());
+            throw new CustomException("Failed to write the ingest log", e);
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            force(segment, end);
+        } catch (RuntimeException e) {
+            // Not acknowledged, so it must never be saved. An empty record lets the flusher move past it,
+            // and the log is closed for new requests, after a failed force it can't be trusted anymore.
+            pending.put(sequence, new Record(sequence, List.of(), appendedAt));
+            pendingBills.addAndGet(-models.size());
+            ready = false;
+            log.error("Failed to force the ingest log, fast ingest is not available until restart", e);
+            throw new CustomException("Failed to write the ingest log", e);
+        }
+        pending.put(sequence, new Record(sequence, models, appendedAt));
+        return ResponseEntity.accepted().body(new BillIngestReceipt(sequence, models.size()));
+    }
+
+    public ResponseEntity<BillIngestLogStatus> status() {
+        Map.Entry<Long, Record> oldest = pending.firstEntry();
+        long lagMillis = oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.getValue().appendedAt());
+        int segmentCount;
+        appendLock.lock();
+        try {
+            segmentCount = segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+        return ResponseEntity.ok(new BillIngestLogStatus(enabled && ready, appendedSequence, flushedSequence,
+                pending.size(), pendingBills.get(), lagMillis, segmentCount, lastFlushAt, lastFailure));
+    }
+
+    /**
+     * Saves the pending records in batches until none is left or saving fails.
+     * A failed batch stays pending and is tried again on the next run, unless the checkpoint
+     * shows it was committed and only handling the change afterwards failed.
+     */
+    void flush() {
+        try {
+            List<Record> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                List<Bill> bills = new ArrayList<>();
+                batch.forEach(record -> bills.addAll(record.bills()));
+                long last = batch.getLast().sequence();
+
+                save(bills, last);
+
+                batch.forEach(record -> pending.remove(record.sequence()));
+                pendingBills.addAndGet(-bills.size());
+                flushedSequence = last;
+                lastFlushAt = Instant.now();
+                lastFailure = null;
+                deleteFlushedSegments();
+            }
+        } catch (Exception e) {
+            lastFailure = e.getMessage();
+            log.warn("Failed to save bills from the ingest log, retrying in {}", flushInterval, e);
+        }
+    }
+
+    private void save(List<Bill> bills, long last) {
+        if (bills.isEmpty()) {
+            // Only records whose force failed, they are skipped
+            checkpointRepository.save(logId, last);
+            return;
+        }
+        try {
+            billServiceCrud.insertBills(bills, () -> checkpointRepository.save(logId, last));
+        } catch (RuntimeException e) {
+            // The change is published after commit, a failing listener doesn't undo the insert
+            long committed = ReplicaDataSource.readFromPrimary(() -> checkpointRepository.findFlushedSequence(logId));
+            if (committed < last) {
+                throw e;
+            }
+            log.warn("Bills up to sequence {} are saved, but handling the change failed", last, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        appendLock.lock();
+        try {
+            ready = false;
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                closeQuietly(segment);
+            }
+            segments.clear();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Reads all segments, queues the records after the checkpoint and clears the unwritten end of the last one.
+     *
+     * @return sequence of the last record in the log, 0 if it is empty
+     */
+    private long recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        long lastSequence = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = new Segment(files.get(i), segmentSize);
+            segments.add(segment);
+            int position = 0;
+            Record record;
+            while ((record = read(segment, position)) != null
+                    && (lastSequence == 0 || record.sequence() == lastSequence + 1)) {
+                position += HEADER_SIZE + encodedLength(segment, position);
+                lastSequence = record.sequence();
+                segment.lastSequence = lastSequence;
+                if (record.sequence() > flushedSequence) {
+                    pending.put(record.sequence(), record);
+                    pendingBills.addAndGet(record.bills().size());
+                }
+            }
+            boolean last = i == files.size() - 1;
+            if (!last && record != null) {
+                throw new IllegalStateException("Segment " + segment.path + " is out of sequence");
+            }
+            if (last) {
+                // Bytes after the last complete record were never acknowledged, they must not be read again later
+                byte[] zeros = new byte[8192];
+                for (int j = position; j < segment.capacity(); j += zeros.length) {
+                    segment.buffer.put(j, zeros, 0, Math.min(zeros.length, segment.capacity() - j));
+                }
+                segment.buffer.force();
+            }
+            segment.position = position;
+            segment.forced = position;
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Takes pending records in sequence order, up to the first one that is still being forced.
+     */
+    private List<Record> nextBatch() {
+        List<Record> batch = new ArrayList<>();
+        int bills = 0;
+        long next = flushedSequence + 1;
+        for (Record record : pending.values()) {
+            if (record.sequence() != next++ || (!batch.isEmpty() && bills + record.bills().size() > batchSize)) {
+                break;
+            }
+            batch.add(record);
+            bills += record.bills().size();
+        }
+        return batch;
+    }
+
+    private int write(Segment segment, long sequence, long appendedAt, byte[] payload) {
+        MappedByteBuffer buffer = segment.buffer;
+        int start = segment.position;
+        buffer.putLong(start + CHECKSUM_FROM, sequence);
+        buffer.putLong(start + CHECKSUM_FROM + 8, appendedAt);
+        buffer.put(start + HEADER_SIZE, payload);
+        buffer.putInt(start + 4, checksum(buffer, start, payload.length));
+        buffer.putInt(start, payload.length);
+        segment.lastSequence = sequence;
+        segment.position = start + HEADER_SIZE + payload.length;
+        return segment.position;
+    }
+
+    /**
+     * Forces the segment to disk up to at least end. A request that waits for the lock
+     * usually finds its record already forced by the request before it.
+     */
+    private void force(Segment segment, int end) {
+        synchronized (forceLock) {
+            if (segment.forced >= end) {
+                return;
+            }
+            int upTo = segment.position;
+            segment.buffer.force(segment.forced, upTo - segment.forced);
+            segment.forced = upTo;
+        }
+    }
+
+    // Called under the append lock
+    private Segment roll() throws IOException {
+        Segment full = segments.getLast();
+        synchronized (forceLock) {
+            full.buffer.force();
+            full.forced = full.position;
+        }
+        Segment segment = newSegment(nextSequence);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void deleteFlushedSegments() {
+        appendLock.lock();
+        try {
+            while (segments.size() > 1 && segments.getFirst().lastSequence <= flushedSequence) {
+                Segment segment = segments.removeFirst();
+                closeQuietly(segment);
+                try {
+                    Files.deleteIfExists(segment.path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete ingest log segment {}", segment.path, e);
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private Segment newSegment(long firstSequence) throws IOException {
+        return new Segment(directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX)),
+                segmentSize);
+    }
+
+    private String readOrCreateLogId() throws IOException {
+        Path file = directory.resolve(LOG_ID_FILE);
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8).strip();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
+        return id;
+    }
+
+    /**
+     * Reads the record at the position.
+     *
+     * @return the record, or null if there is none or it wasn't completely written
+     */
+    private static Record read(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer;
+        if (position + HEADER_SIZE > segment.capacity()) {
+            return null;
+        }
+        int length = encodedLength(segment, position);
+        if (length <= 0 || position + HEADER_SIZE + length > segment.capacity()
+                || buffer.getInt(position + 4) != checksum(buffer, position, length)) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_SIZE, payload);
+        return new Record(buffer.getLong(position + CHECKSUM_FROM), decode(payload),
+                buffer.getLong(position + CHECKSUM_FROM + 8));
+    }
+
+    private static int encodedLength(Segment segment, int position) {
+        return segment.buffer.getInt(position);
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int start, int payloadLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + CHECKSUM_FROM, HEADER_SIZE - CHECKSUM_FROM + payloadLength));
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(List<Bill> bills) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(bills.size());
+            for (Bill bill : bills) {
+                out.writeLong(bill.getBillDate().toEpochDay());
+                out.writeUTF(bill.getArticleName());
+                out.writeUTF(bill.getArticlePrice().toPlainString());
+                writeNullable(out, bill.getArticleType());
+                writeNullable(out, bill.getBrandName());
+            }
+        } catch (IOException e) {
+            throw new CustomException("Bill can not be written to the ingest log", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Bill> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int count = in.readInt();
+            List<Bill> bills = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Bill bill = new Bill();
+                bill.setBillDate(LocalDate.ofEpochDay(in.readLong()));
+                bill.setArticleName(in.readUTF());
+                bill.setArticlePrice(new BigDecimal(in.readUTF()));
+                bill.setArticleType(readNullable(in));
+                bill.setBrandName(readNullable(in));
+                bills.add(bill);
+            }
+            return bills;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close ingest log segment {}", segment.path, e);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.sharedTools.datasource.ReplicaDataSource;
+import com.example.Horacije.administration.sharedTools.exceptions.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes the /sum total and count of a filter set to Server-Sent Events subscribers
+ * whenever a committed write could change it, so clients don't have to poll /search and /sum.
+ * <p>
+ * Subscriptions with the same normalized filters (see {@link BillAggregateCache.Key#filtered}) share
+ * one group. After a write every group that could include an added, changed or deleted bill is marked
+ * dirty, and a single background thread calculates the new total of each dirty group once and hands it
+ * to all of its subscribers. Writes that arrive while the thread is busy are coalesced into the next
+ * round, and a total that didn't change is not sent again.
+ * <p>
+ * Every subscriber is sent its totals on a virtual thread of its own, one at a time, so a client that
+ * reads slowly blocks neither the calculation nor the other subscribers. If new totals arrive while
+ * a send is blocked, the client only gets the latest one.
+ */
+@Slf4j
+@Service
+public class BillLiveTotals {
+
+    static final String EVENT_NAME = "total";
+
+    private final BillServiceFunctions billServiceFunctions;
+    private final long timeoutMillis;
+    private final int maxSubscriptions;
+
+    private final Map<BillAggregateCache.Key, Group> groups = new ConcurrentHashMap<>();
+    private final Set<Group> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pushScheduled = new AtomicBoolean();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BillLiveTotals(BillServiceFunctions billServiceFunctions,
+                          @Value("${horacije.live-totals.timeout:PT30M}") Duration timeout,
+                          @Value("${horacije.live-totals.max-subscriptions:1000}") int maxSubscriptions) {
+        this.billServiceFunctions = billServiceFunctions;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxSubscriptions = maxSubscriptions;
+    }
+
+    /**
+     * Subscribers of one filter set, with the filters of the first subscriber
+     * and the total that was sent last.
+     */
+    private static final class Group {
+
+        private final BillAggregateCache.Key key;
+        private final String name;
+        private final String type;
+        private final String brand;
+        private final BigDecimal priceMin;
+        private final BigDecimal priceMax;
+        private final LocalDate dateFrom;
+        private final LocalDate dateTo;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private volatile BillTotal lastTotal;
+
+        private Group(BillAggregateCache.Key key, String name, String type, String brand,
+                      BigDecimal priceMin, BigDecimal priceMax, LocalDate dateFrom, LocalDate dateTo) {
+            this.key = key;
+            this.name = name;
+            this.type = type;
+            this.brand = brand;
+            this.priceMin = priceMin;
+            this.priceMax = priceMax;
+            this.dateFrom = dateFrom;
+            this.dateTo = dateTo;
+        }
+    }
+
+    /**
+     * One emitter with the latest total it wasn't sent yet.
+     */
+    private final class Subscriber {
+
+        private final Group group;
+        private final SseEmitter emitter;
+        private final AtomicReference<BillTotal> unsent = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(Group group, SseEmitter emitter) {
+            this.group = group;
+            this.emitter = emitter;
+        }
+
+        private void offer(BillTotal total) {
+            unsent.set(total);
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::sendUnsent);
+            }
+        }
+
+        private void sendUnsent() {
+            try {
+                BillTotal total;
+                while ((total = unsent.getAndSet(null)) != null) {
+                    send(this, total);
+                }
+            } finally {
+                sending.set(false);
+            }
+            // A total offered after the loop ended, but before sending was cleared
+            if (unsent.get() != null && sending.compareAndSet(false, true)) {
+                senders.execute(this::sendUnsent);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the total of the bills matching the /search filters.
+     * The current total is sent right away, then every change of it.
+     *
+     * @return emitter of "total" events with the sum (null if no bills match) and count
+     * @throws ServiceUnavailableException if there are too many subscriptions
+     */
+    public SseEmitter subscribe(String name,
+                                String type,
+                                String brand,
+                                BigDecimal priceMin,
+                                BigDecimal priceMax,
+                                LocalDate dateFrom,
+                                LocalDate dateTo) {
+        if (subscriptions.incrementAndGet() > maxSubscriptions) {
+            subscriptions.decrementAndGet();
+            throw new ServiceUnavailableException("Too many live total subscriptions, try again later");
+        }
+        BillAggregateCache.Key key = BillAggregateCache.Key.filtered(
+                name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        SseEmitter emitter = newEmitter(timeoutMillis);
+
+        // Joined before the first total is calculated, so a write in between marks the group dirty
+        Subscriber[] joined = new Subscriber[1];
+        Group group = groups.compute(key, (k, existing) -> {
+            Group current = existing != null ? existing
+                    : new Group(k, name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+            joined[0] = new Subscriber(current, emitter);
+            current.subscribers.add(joined[0]);
+            return current;
+        });
+        Subscriber subscriber = joined[0];
+        emitter.onCompletion(() -> leave(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> leave(subscriber));
+
+        BillTotal total = group.lastTotal;
+        if (total == null) {
+            try {
+                total = total(group);
+            } catch (RuntimeException e) {
+                leave(subscriber);
+                throw e;
+            }
+            group.lastTotal = total;
+        }
+        subscriber.offer(total);
+        return emitter;
+    }
+
+    public int subscriptionCount() {
+        return subscriptions.get();
+    }
+
+    /**
+     * Marks the groups that could include any of the changed bills and schedules the push.
+     * Called by BillServiceCrud after the change event was handled, so the column store,
+     * the aggregate cache and the read replica routing are up to date when the totals are calculated.
+     *
+     * @param event committed change
+     */
+    public void changed(BillChangedEvent event) {
+        for (Group group : groups.values()) {
+            if (event.removed().stream().anyMatch(group.key::mayInclude)
+                    || event.added().stream().anyMatch(group.key::mayInclude)) {
+                dirty.add(group);
+            }
+        }
+        if (!dirty.isEmpty() && pushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::pushDirty);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+        for (Group group : groups.values()) {
+            group.subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+    }
+
+    // Package-private, so tests can record what is sent
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void pushDirty() {
+        // Cleared first, so a write during this round schedules the next one
+        pushScheduled.set(false);
+        for (Group group : dirty) {
+            dirty.remove(group);
+            if (group.subscribers.isEmpty()) {
+                continue;
+            }
+            try {
+                BillTotal total = total(group);
+                if (!sameTotal(total, group.lastTotal)) {
+                    group.lastTotal = total;
+                    group.subscribers.forEach(subscriber -> subscriber.offer(total));
+                }
+            } catch (Exception e) {
+                log.warn("Failed to calculate the live total of {}", group.key, e);
+            }
+        }
+    }
+
+    private BillTotal total(Group group) {
+        // Pushed right after a write, to subscribers that didn't make it
+        return ReplicaDataSource.readFromPrimary(() -> billServiceFunctions.totalFiltered(group.name, group.type,
+                group.brand, group.priceMin, group.priceMax, group.dateFrom, group.dateTo));
+    }
+
+    private void send(Subscriber subscriber, BillTotal total) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().name(EVENT_NAME).data(total));
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone, the container calls onError or onCompletion as well
+            leave(subscriber);
+        }
+    }
+
+    private void leave(Subscriber subscriber) {
+        groups.computeIfPresent(subscriber.group.key, (k, current) -> {
+            if (current.subscribers.remove(subscriber)) {
+                subscriptions.decrementAndGet();
+            }
+            return current.subscribers.isEmpty() ? null : current;
+        });
+    }
+
+    private static boolean sameTotal(BillTotal a, BillTotal b) {
+        return b != null
+                && Objects.equals(a.count(), b.count())
+                && (a.sum() == null ? b.sum() == null : b.sum() != null && a.sum().compareTo(b.sum()) == 0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import com.example.Horacije.administration.sharedTools.exceptions.ServiceUnavailableException;
+import com.example.Horacije.administration.sharedTools.metrics.RequestSqlStatistics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent read queries of one request concurrently, each in its own read-only transaction.
+ * <p>
+ * Queries run on virtual threads when {@code spring.threads.virtual.enabled} is set, otherwise on a
+ * fixed pool of platform threads. Either way at most {@code horacije.parallel-queries.max-concurrent}
+ * queries run at the same time, so fan-out can take only part of the Hikari pool and the rest stays
+ * free for the request threads. A query that can't start within the wait time fails instead of queueing.
+ * The caller must not hold a connection (be inside a transaction) while it waits for the results.
+ */
+@Service
+public class BillQueryExecutor {
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long maxWaitMillis;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public BillQueryExecutor(PlatformTransactionManager transactionManager,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                             @Value("${horacije.parallel-queries.max-concurrent:10}") int maxConcurrent,
+                             @Value("${horacije.parallel-queries.max-wait:PT5S}") Duration maxWait) {
+        this.executor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(maxConcurrent);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWaitMillis = maxWait.toMillis();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Starts the query on another thread. The query runs with the caller's logging MDC and request
+     * (so it follows the caller's read-your-writes window), and its statements are counted in the
+     * caller's request SQL statistics.
+     *
+     * @param query read query, runs in a read-only transaction
+     * @return future completed with the query result, or exceptionally with
+     *         ServiceUnavailableException if too many queries are running
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        RequestSqlStatistics statistics = RequestSqlStatistics.current();
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return CompletableFuture.supplyAsync(() -> {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            RequestContextHolder.setRequestAttributes(request);
+            try {
+                return RequestSqlStatistics.callWith(statistics, () -> run(query));
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+                MDC.clear();
+            }
+        }, executor);
+    }
+
+    private <T> T run(Supplier<T> query) {
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Too many concurrent queries, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            return readOnlyTransaction.execute(status -> query.get());
+        } finally {
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,42 +1,134 @@
 package com.example.Horacije.administration.services;
 
 import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillChanges;
+import com.example.Horacije.administration.model.BillColumns;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.repository.BillBulkRepository;
+import com.example.Horacije.administration.repository.BillDailySummaryRepository;
+import com.example.Horacije.administration.repository.BillDailySummaryRepository.Delta;
+import com.example.Horacije.administration.repository.BillDictionary;
 import com.example.Horacije.administration.repository.BillRepository;
 import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import com.example.Horacije.administration.specification.BillSpecification;
 import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 @Service
 public class BillServiceCrud {
 
     private final BillRepository billRepository;
+    private final BillBulkRepository billBulkRepository;
+    private final BillDailySummaryRepository billDailySummaryRepository;
+    private final BillDictionary billDictionary;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BillDataVersion billDataVersion;
+    private final BillLiveTotals billLiveTotals;
+    private final BillColumnStore billColumnStore;
+    private final BillSketches billSketches;
+    private final BillAggregateCache billAggregateCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+
+    @Value("${horacije.bulk-insert.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${horacije.bulk-change.max-rows:100000}")
+    private int maxBulkChangeRows;
 
     /**
-     * Saves a list of Bill entities in a single batch operation.
+     * Saves a list of Bill entities in a single transaction,
+     * using multi-row INSERT statements instead of one INSERT per bill.
      *
      * @param models list of Bill entities to persist
      * @return HTTP response indicating the result of the operation
-     * @throws CustomException if list is null or empty, or if saving fails
+     * @throws CustomException if list is null or empty, a bill is invalid, or if saving fails
      */
     public ResponseEntity<String> createBill(List<Bill> models) {
+        validateBills(models);
+
+        try {
+            insertBills(models);
+            return ResponseEntity.ok().body("Bills saved successfully");
+        } catch (Exception e) {
+            throw new CustomException("Failed to save bills", e);
+        }
+    }
+
+    /**
+     * Saves a large list of Bill entities, committing every chunk of bills in its own transaction,
+     * so a big import doesn't hold one long transaction. If a chunk fails, previous chunks stay saved.
+     *
+     * @param models list of Bill entities to persist
+     * @return HTTP response with the number of saved bills and transactions
+     * @throws CustomException if list is null or empty, a bill is invalid, or if saving a chunk fails
+     */
+    public ResponseEntity<String> createBillsInChunks(List<Bill> models) {
+        validateBills(models);
+
+        int saved = 0;
+        int transactions = 0;
+        for (int from = 0; from < models.size(); from += chunkSize) {
+            List<Bill> chunk = models.subList(from, Math.min(from + chunkSize, models.size()));
+            try {
+                insertBills(chunk);
+            } catch (Exception e) {
+                throw new CustomException("Failed to save bills, " + saved + " bills were saved before the failure", e);
+            }
+            saved += chunk.size();
+            transactions++;
+        }
+        return ResponseEntity.ok().body(saved + " bills saved in " + transactions + " transactions");
+    }
 
-    if(models == null || models.isEmpty()) {
-        throw new CustomException("Bill list is empty or null");
+    /**
+     * Inserts already validated bills and their daily summary in one transaction,
+     * and publishes a {@link BillChangedEvent} after commit.
+     * New article types and brands are added to the lookup tables first.
+     * Sets the generated ids on the given bills.
+     *
+     * @param models bills to insert
+     */
+    public void insertBills(List<Bill> models) {
+        insertBills(models, () -> {
+        });
     }
 
-     try {
-         billRepository.saveAll(models);
-         return ResponseEntity.ok().body("Bills saved successfully");
-     }catch (Exception e){
-         throw new CustomException("Failed to save bills", e);
-     }
+    /**
+     * Inserts already validated bills like {@link #insertBills(List)} and runs inTransaction
+     * in the same transaction, e.g. to record how far an ingest log is saved.
+     *
+     * @param models        bills to insert
+     * @param inTransaction additional write that commits or rolls back together with the bills
+     */
+    public void insertBills(List<Bill> models, Runnable inTransaction) {
+        billDictionary.register(models);
+        transactionTemplate.executeWithoutResult(status -> {
+            billBulkRepository.insertAll(models);
+            billDailySummaryRepository.apply(BillDailySummaryRepository.added(models));
+            inTransaction.run();
+        });
+        publish(BillChangedEvent.inserted(models));
     }
 
     /**
@@ -44,17 +136,30 @@ public class BillServiceCrud {
      *
      * @return 200 OK with the list of bills, or 204 No Content if none exist
      */
+    @Transactional(readOnly = true)
     public ResponseEntity<List<Bill>> readAllBills() {
         List<Bill> result = Helpers.listConverter(billRepository.findAll());
         return result.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok().body(result);
     }
 
+    /**
+     * Retrieves all bills as read-only views, in the columnar form.
+     *
+     * @return 200 OK with the bills, or 204 No Content if none exist
+     */
+    @Transactional(readOnly = true)
+    public ResponseEntity<BillColumns> readAllBillsAsColumns() {
+        List<BillView> bills = billRepository.findAllViews();
+        return bills.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok().body(BillColumns.of(bills));
+    }
+
     /**
      * Retrieves a Bill entity by its ID and returns it as an HTTP response.
      *
      * @param id identifier of the Bill to retrieve
      * @return 200 OK with the Bill if found, or 204 No Content if not present
      */
+    @Transactional(readOnly = true)
     public ResponseEntity<Bill> readBillById(Integer id) {
         Optional<Bill> result = billRepository.findById(id);
         //Namerno koristen ovaj map(), kako bih ga naucio, iako moze i bez njega, sa if-else
@@ -74,24 +179,32 @@ public class BillServiceCrud {
     }
 
     /**
-     * Retrieves a Bill entities by its article name and returns it as an HTTP response
+     * Retrieves a Bill entities by its article name and returns it as an HTTP response.
+     * Bills are read as read-only views, without loading entities.
      *
      * @param articleName identifier of the Bill to retrive
      * @return 200 OK with the Bill if found, or 204 No Content if not present
      */
-    public ResponseEntity<List<Bill>> readAllBillsByArticleName(String articleName) {
-        List<Bill> bills = Helpers.listConverter(billRepository.findAllByArticleName(articleName));
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<BillView>> readAllBillsByArticleName(String articleName) {
+        List<BillView> bills = billRepository.findViewsByArticleName(articleName);
         return bills.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok().body(bills);
     }
 
     /**
-     * Retrieves a Bill entities by its article type and returns it as an HTTP response
+     * Retrieves a Bill entities by its article type and returns it as an HTTP response.
+     * Bills are read as read-only views, without loading entities.
      *
      * @param articleType identifier of the Bill to retrive
      * @return 200 OK with the Bill if found, or 204 No Content if not present
      */
-    public ResponseEntity<List<Bill>> readAllBillsByArticleType(String articleType) {
-        List<Bill> bills = Helpers.listConverter(billRepository.findAllByArticleType(articleType));
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<BillView>> readAllBillsByArticleType(String articleType) {
+        // An unknown type has no bills and can't be converted to a query parameter
+        if (Objects.equals(billDictionary.articleTypes().idOf(articleType), BillDictionary.UNKNOWN_ID)) {
+            return ResponseEntity.noContent().build();
+        }
+        List<BillView> bills = billRepository.findViewsByArticleType(articleType);
         return bills.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok().body(bills);
     }
 
@@ -102,6 +215,7 @@ public class BillServiceCrud {
      * @return 200 OK with the bill if found
      * @throws CustomException if no bill exists for the given date
      */
+    @Transactional(readOnly = true)
     public ResponseEntity<Bill> readByBillDate(LocalDate billDate) {
         Bill bill = billRepository.findByBillDate(billDate)
                 .orElseThrow(()-> new CustomException("Bill Date is empty"));
@@ -110,6 +224,9 @@ public class BillServiceCrud {
 
     /**
      * Updates an existing Bill entity by its ID.
+     * The bill is locked and read for the daily summary, then replaced with a single UPDATE,
+     * without merging the model into a managed entity.
+     * The daily summary is corrected in the same transaction.
      *
      * @param id identifier of the Bill to update
      * @param model updated Bill data
@@ -117,35 +234,279 @@ public class BillServiceCrud {
      * @throws CustomException if the Bill does not exist or the update fails
      */
     public ResponseEntity<String> update(Integer id, Bill model){
-        if(!billRepository.existsById(id)){
-            throw new CustomException("Bill with id " + id + " doesn't exist");
-        }
+        BillChangedEvent change;
         try {
-           model.setId(id);
-           billRepository.save(model);
-            return ResponseEntity.ok().body("Bill updated successfully");
-        }catch (Exception e){
+            billDictionary.register(model.getArticleType(), model.getBrandName());
+            change = transactionTemplate.execute(status -> {
+                List<Bill> before = billRepository.lockBySpecification(BillSpecification.idIn(new int[]{id}), 1);
+                if (before.isEmpty()) {
+                    throw new CustomException("Bill with id " + id + " doesn't exist");
+                }
+                model.setId(id);
+                billRepository.replace(model);
+                List<Delta> deltas = new ArrayList<>(BillDailySummaryRepository.removed(before));
+                deltas.addAll(BillDailySummaryRepository.added(List.of(model)));
+                billDailySummaryRepository.apply(deltas);
+                return BillChangedEvent.updated(before.getFirst(), model);
+            });
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
             throw new CustomException("Failed to update bill", e);
         }
+        publish(change);
+        return ResponseEntity.ok().body("Bill updated successfully");
+    }
+
+    /**
+     * Sets the same changes on all bills with the given ids, with a single UPDATE statement.
+     * Ids that don't exist are ignored.
+     *
+     * @param ids identifiers of the bills to update
+     * @param changes new values, null fields are left unchanged
+     * @return 200 OK with the number of updated bills
+     * @throws CustomException if there are no changes, too many bills, or the update fails
+     */
+    public ResponseEntity<String> updateBills(List<Integer> ids, BillChanges changes) {
+        int updated = updateMatching(BillSpecification.idIn(toArray(ids)), changes);
+        return ResponseEntity.ok().body(updated + " bills updated");
     }
 
     /**
-     * Deletes a Bill entity by its ID.
+     * Sets the same changes on all bills matching the /search filters, with a single UPDATE statement.
+     * At least one filter is required.
+     *
+     * @return 200 OK with the number of updated bills
+     * @throws CustomException if there are no filters or changes, too many bills, or the update fails
+     */
+    public ResponseEntity<String> updateBillsMatching(String name,
+                                                      String type,
+                                                      String brand,
+                                                      BigDecimal priceMin,
+                                                      BigDecimal priceMax,
+                                                      LocalDate dateFrom,
+                                                      LocalDate dateTo,
+                                                      BillChanges changes) {
+        requireFilter(name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        int updated = updateMatching(filter(name, type, brand, priceMin, priceMax, dateFrom, dateTo), changes);
+        return ResponseEntity.ok().body(updated + " bills updated");
+    }
+
+    /**
+     * Deletes a Bill entity by its ID with a single DELETE ... RETURNING statement,
+     * which also gives the deleted values for the daily summary.
+     * The daily summary is corrected in the same transaction.
      *
      * @param id identifier of the Bill to delete
      * @return 200 OK if the deletion succeeds
      * @throws CustomException if the Bill does not exist or deletion fails
      */
     public ResponseEntity<String> deleteBill(Integer id) {
-        if(!billRepository.existsById(id)){
+        List<Bill> deleted = deleteByIds(List.of(id));
+        if (deleted.isEmpty()) {
             throw new CustomException("Bill with id " + id + " doesn't exist");
         }
+        return ResponseEntity.ok().body("Bill deleted successfully");
+    }
+
+    /**
+     * Deletes all bills with the given ids with DELETE ... RETURNING statements,
+     * one per {@link BillBulkRepository#ROWS_PER_STATEMENT} ids. Ids that don't exist are ignored.
+     *
+     * @param ids identifiers of the bills to delete
+     * @return 200 OK with the number of deleted bills
+     * @throws CustomException if deletion fails
+     */
+    public ResponseEntity<String> deleteBills(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new CustomException("Id list is empty or null");
+        }
+        List<Bill> deleted = deleteByIds(ids);
+        return ResponseEntity.ok().body(deleted.size() + " bills deleted");
+    }
+
+    /**
+     * Deletes all bills matching the /search filters with a single DELETE statement.
+     * At least one filter is required.
+     *
+     * @return 200 OK with the number of deleted bills
+     * @throws CustomException if there are no filters, too many bills, or deletion fails
+     */
+    public ResponseEntity<String> deleteBillsMatching(String name,
+                                                      String type,
+                                                      String brand,
+                                                      BigDecimal priceMin,
+                                                      BigDecimal priceMax,
+                                                      LocalDate dateFrom,
+                                                      LocalDate dateTo) {
+        requireFilter(name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        Specification<Bill> specification = filter(name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        BillChangedEvent change;
+        try {
+            change = transactionTemplate.execute(status -> {
+                List<Bill> before = lockMatching(specification);
+                billRepository.deleteBySpecification(specification);
+                billDailySummaryRepository.apply(BillDailySummaryRepository.removed(before));
+                return new BillChangedEvent(before, List.of());
+            });
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CustomException("Failed to delete bills", e);
+        }
+        publish(change);
+        return ResponseEntity.ok().body(change.removed().size() + " bills deleted");
+    }
+
+    /**
+     * Recalculates the daily summary table from the bill table, reloads the column store and the sketches,
+     * clears the aggregate cache and increments the data version.
+     * Use it after bills were changed outside of the application.
+     *
+     * @return 200 OK with the number of summary rows
+     */
+    public ResponseEntity<String> rebuildDailySummary() {
         try {
-            billRepository.deleteById(id);
-            return ResponseEntity.ok().body("Bill deleted successfully");
-        } catch (Exception e){
-            throw new CustomException("Failed to delete bill", e);
+            Integer rows = transactionTemplate.execute(status -> billDailySummaryRepository.rebuild());
+            billColumnStore.reload();
+            billSketches.reload();
+            // Cleared after the reloads, so no total calculated from the old data stays cached
+            billAggregateCache.clear();
+            billDataVersion.increment();
+            return ResponseEntity.ok().body("Daily summary rebuilt with " + rows + " rows");
+        } catch (Exception e) {
+            throw new CustomException("Failed to rebuild daily summary", e);
+        }
+    }
+
+    /**
+     * Validates bills before they are inserted, because the JDBC insert
+     * doesn't go through the JPA bean validation.
+     *
+     * @param models bills to validate
+     * @throws CustomException if list is null or empty, or a bill is invalid
+     */
+    public void validateBills(List<Bill> models) {
+        if (models == null || models.isEmpty()) {
+            throw new CustomException("Bill list is empty or null");
+        }
+        for (int i = 0; i < models.size(); i++) {
+            Set<ConstraintViolation<Bill>> violations = validator.validate(models.get(i));
+            if (!violations.isEmpty()) {
+                throw new CustomException("Bill at index " + i + " is invalid: "
+                        + violations.iterator().next().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Publishes a committed change and then increments the data version. Listeners run synchronously,
+     * so the column store and the aggregate cache are up to date before the new version is visible.
+     * Live total subscribers are notified last, their totals are calculated from the updated state.
+     */
+    private void publish(BillChangedEvent change) {
+        eventPublisher.publishEvent(change);
+        billDataVersion.increment();
+        billLiveTotals.changed(change);
+    }
+
+    /**
+     * Locks and reads the matching bills, which are needed for the daily summary and the change event,
+     * then updates them with a single UPDATE statement in the same transaction.
+     *
+     * @return number of updated bills
+     */
+    private int updateMatching(Specification<Bill> specification, BillChanges changes) {
+        if (changes == null || changes.isEmpty()) {
+            throw new CustomException("Changes are empty or null");
+        }
+        BillChangedEvent change;
+        try {
+            billDictionary.register(changes.articleType(), changes.brandName());
+            change = transactionTemplate.execute(status -> {
+                List<Bill> before = lockMatching(specification);
+                int updated = billRepository.updateBySpecification(specification, changes);
+                if (updated != before.size()) {
+                    // The locked bills are the ones the summary and the event are based on
+                    throw new CustomException("Updated " + updated + " bills, but " + before.size() + " were locked");
+                }
+                List<Bill> after = before.stream().map(changes::applyTo).toList();
+                List<Delta> deltas = new ArrayList<>(BillDailySummaryRepository.removed(before));
+                deltas.addAll(BillDailySummaryRepository.added(after));
+                billDailySummaryRepository.apply(deltas);
+                return new BillChangedEvent(before, after);
+            });
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CustomException("Failed to update bills", e);
+        }
+        publish(change);
+        return change.added().size();
+    }
+
+    /**
+     * Locks the matching bills with SELECT ... FOR UPDATE, so the bulk statement that follows
+     * changes exactly the bills that were read.
+     *
+     * @throws CustomException if more than maxBulkChangeRows bills match
+     */
+    private List<Bill> lockMatching(Specification<Bill> specification) {
+        List<Bill> bills = billRepository.lockBySpecification(specification, maxBulkChangeRows + 1);
+        if (bills.size() > maxBulkChangeRows) {
+            throw new CustomException("More than " + maxBulkChangeRows + " bills match, narrow the filters");
+        }
+        return bills;
+    }
+
+    private List<Bill> deleteByIds(List<Integer> ids) {
+        BillChangedEvent change;
+        try {
+            change = transactionTemplate.execute(status -> {
+                List<Bill> deleted = billBulkRepository.deleteAllReturning(ids);
+                billDailySummaryRepository.apply(BillDailySummaryRepository.removed(deleted));
+                return new BillChangedEvent(deleted, List.of());
+            });
+        } catch (Exception e) {
+            throw new CustomException("Failed to delete bills", e);
+        }
+        if (!change.removed().isEmpty()) {
+            publish(change);
+        }
+        return change.removed();
+    }
+
+    // A bulk change without filters would change the whole table
+    private static void requireFilter(String name,
+                                      String type,
+                                      String brand,
+                                      BigDecimal priceMin,
+                                      BigDecimal priceMax,
+                                      LocalDate dateFrom,
+                                      LocalDate dateTo) {
+        boolean noText = Stream.of(name, type, brand).allMatch(value -> value == null || value.isBlank());
+        if (noText && Stream.of(priceMin, priceMax, dateFrom, dateTo).allMatch(Objects::isNull)) {
+            throw new CustomException("At least one filter is required");
+        }
+    }
+
+    // Type and brand filters become id filters on the lookup values the dictionary matched
+    private Specification<Bill> filter(String name,
+                                       String type,
+                                       String brand,
+                                       BigDecimal priceMin,
+                                       BigDecimal priceMax,
+                                       LocalDate dateFrom,
+                                       LocalDate dateTo) {
+        return BillSpecification.filter(name, billDictionary.articleTypes().containing(type),
+                billDictionary.brands().containing(brand), priceMin, priceMax, dateFrom, dateTo);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new CustomException("Id list is empty or null");
         }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
     }
 
 }
@@ -0,0 +1,139 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.specification.BillSpecification;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+@Service
+public class BillServiceExport {
+
+    private static final String CSV_HEADER = "id,bill_date,article_name,article_price,article_type,brand_name";
+    private static final int FLUSH_INTERVAL = 1_000;
+
+    private final BillRepository billRepository;
+    private final BillDictionary billDictionary;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writes all bills matching the filters as newline delimited JSON, one bill per line.
+     * Bills are streamed from the database, so memory use doesn't depend on the number of rows.
+     *
+     * @param name     article name filter (nullable)
+     * @param type     article type filter (nullable)
+     * @param brand    brand name filter (nullable)
+     * @param priceMin minimum price (nullable)
+     * @param priceMax maximum price (nullable)
+     * @param dateFrom start date (nullable)
+     * @param dateTo   end date (nullable)
+     * @param out      stream the bills are written to
+     */
+    @Transactional(readOnly = true)
+    public void exportNdjson(String name,
+                             String type,
+                             String brand,
+                             BigDecimal priceMin,
+                             BigDecimal priceMax,
+                             LocalDate dateFrom,
+                             LocalDate dateTo,
+                             OutputStream out) throws IOException {
+        Specification<Bill> specification = BillSpecification.filter(name, billDictionary.articleTypes().containing(type),
+                billDictionary.brands().containing(brand), priceMin, priceMax, dateFrom, dateTo);
+
+        try (Stream<Bill> bills = billRepository.streamBySpecification(specification, Sort.by("id"));
+             Writer writer = writer(out)) {
+            write(bills, writer, objectMapper::writeValueAsString);
+        }
+    }
+
+    /**
+     * Writes all bills matching the filters as CSV with a header row.
+     * Bills are streamed from the database, so memory use doesn't depend on the number of rows.
+     *
+     * @param name     article name filter (nullable)
+     * @param type     article type filter (nullable)
+     * @param brand    brand name filter (nullable)
+     * @param priceMin minimum price (nullable)
+     * @param priceMax maximum price (nullable)
+     * @param dateFrom start date (nullable)
+     * @param dateTo   end date (nullable)
+     * @param out      stream the bills are written to
+     */
+    @Transactional(readOnly = true)
+    public void exportCsv(String name,
+                          String type,
+                          String brand,
+                          BigDecimal priceMin,
+                          BigDecimal priceMax,
+                          LocalDate dateFrom,
+                          LocalDate dateTo,
+                          OutputStream out) throws IOException {
+        Specification<Bill> specification = BillSpecification.filter(name, billDictionary.articleTypes().containing(type),
+                billDictionary.brands().containing(brand), priceMin, priceMax, dateFrom, dateTo);
+
+        try (Stream<Bill> bills = billRepository.streamBySpecification(specification, Sort.by("id"));
+             Writer writer = writer(out)) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            write(bills, writer, BillServiceExport::toCsvRow);
+        }
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static void write(Stream<Bill> bills, Writer writer, Function<Bill, String> formatter) throws IOException {
+        Iterator<Bill> iterator = bills.iterator();
+        long rows = 0;
+        while (iterator.hasNext()) {
+            writer.write(formatter.apply(iterator.next()));
+            writer.write('\n');
+            // Push rows to the client regularly instead of buffering the whole response
+            if (++rows % FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    private static String toCsvRow(Bill bill) {
+        return String.join(",",
+                String.valueOf(bill.getId()),
+                bill.getBillDate().toString(),
+                csvValue(bill.getArticleName()),
+                bill.getArticlePrice().toPlainString(),
+                csvValue(bill.getArticleType()),
+                csvValue(bill.getBrandName()));
+    }
+
+    // Quotes the value if needed, as described in RFC 4180
+    private static String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
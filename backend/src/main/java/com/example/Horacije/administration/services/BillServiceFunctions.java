@@ -1,52 +1,106 @@
 package com.example.Horacije.administration.services;
 
 import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillBucket;
+import com.example.Horacije.administration.model.BillColumns;
+import com.example.Horacije.administration.model.BillCursor;
+import com.example.Horacije.administration.model.BillFacets;
+import com.example.Horacije.administration.model.BillPriceStats;
+import com.example.Horacije.administration.model.BillSearchSummary;
+import com.example.Horacije.administration.model.BillSlice;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.repository.BillDailySummaryRepository;
+import com.example.Horacije.administration.repository.BillDictionary;
 import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
 import com.example.Horacije.administration.specification.BillSpecification;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @RequiredArgsConstructor
 @Service
 public class BillServiceFunctions {
 
+    private static final Map<String, String> SORT_PATHS = Map.of(
+            "articleType", "articleTypeEntry.name",
+            "brandName", "brandEntry.name");
+
     private final BillRepository billRepository;
+    private final BillDailySummaryRepository billDailySummaryRepository;
+    private final BillColumnStore billColumnStore;
+    private final BillAggregateCache billAggregateCache;
+    private final BillQueryExecutor billQueryExecutor;
+    private final BillDictionary billDictionary;
+    private final BillSketches billSketches;
+    private final PlatformTransactionManager transactionManager;
 
+    @Value("${horacije.substring-index.max-candidates:10000}")
+    private int maxSubstringCandidates;
 
 
     /**
-     * Retrieves all bills within the specified date range.
+     * Retrieves all bills within the specified date range, as read-only views.
      *
      * @param startDate lower bound of the date range (inclusive)
      * @param endDate   upper bound of the date range (inclusive)
      * @return 200 OK with the list of bills, or 204 No Content if none found
      */
-    public ResponseEntity<List<Bill>> findAllByBillDateBetween(LocalDate startDate, LocalDate endDate) {
-        List<Bill> bills = billRepository.findAllByBillDateBetween(startDate, endDate);
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<BillView>> findAllByBillDateBetween(LocalDate startDate, LocalDate endDate) {
+        List<BillView> bills = billRepository.findViewsByBillDateBetween(startDate, endDate);
         return bills.isEmpty()
                 ? ResponseEntity.noContent().build()
                 : ResponseEntity.ok(bills);
     }
 
+    /**
+     * Retrieves all bills within the specified date range, as read-only views in the columnar form.
+     *
+     * @param startDate lower bound of the date range (inclusive)
+     * @param endDate   upper bound of the date range (inclusive)
+     * @return 200 OK with the bills, or 204 No Content if none found
+     */
+    @Transactional(readOnly = true)
+    public ResponseEntity<BillColumns> findAllByBillDateBetweenAsColumns(LocalDate startDate, LocalDate endDate) {
+        List<BillView> bills = billRepository.findViewsByBillDateBetween(startDate, endDate);
+        return bills.isEmpty()
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.ok(BillColumns.of(bills));
+    }
+
     /**
      * Calculates the total article price for the given date range.
+     * Uses the in-memory column store when it is loaded, otherwise the daily summary table.
      *
      * @param startDate lower bound of the date range (inclusive)
      * @param endDate   upper bound of the date range (inclusive)
      * @return 200 OK with the total sum (0 if no records found)
      */
     public ResponseEntity<BigDecimal> sumArticlePriceByDateRange(LocalDate startDate, LocalDate endDate) {
-        BigDecimal sum = billRepository.sumArticlePriceByBillDateBetween(startDate, endDate);
+        BigDecimal sum = billAggregateCache.get(BillAggregateCache.Key.byDateRange(startDate, endDate),
+                () -> billColumnStore.isReady()
+                        ? billColumnStore.sumByDateRange(startDate, endDate).sum()
+                        : readOnly(() -> billDailySummaryRepository.sumByDateRange(startDate, endDate)));
         if (sum == null) {
             sum = BigDecimal.ZERO;
         }
@@ -64,7 +118,10 @@ public class BillServiceFunctions {
      * @return total sum of article prices, or null if no records match
      */
     public ResponseEntity<BigDecimal> sumArticlePriceByArticleName(String articleName, LocalDate startDate, LocalDate endDate) {
-        BigDecimal sum = billRepository.sumByArticleNameAndBillDateBetween(articleName, startDate, endDate);
+        BigDecimal sum = billAggregateCache.get(BillAggregateCache.Key.byArticleName(articleName, startDate, endDate),
+                () -> billColumnStore.isReady()
+                        ? billColumnStore.sumByArticleName(articleName, startDate, endDate).sum()
+                        : readOnly(() -> billRepository.sumByArticleNameAndBillDateBetween(articleName, startDate, endDate)));
         if (sum == null) {
             sum = BigDecimal.ZERO;
         }
@@ -75,6 +132,7 @@ public class BillServiceFunctions {
     /**
      * Returns the total article price for the given article type
      * within the specified date range.
+     * Uses the in-memory column store when it is loaded, otherwise the daily summary table.
      *
      * @param startDate   lower bound of the date range (inclusive)
      * @param endDate     upper bound of the date range (inclusive)
@@ -82,7 +140,10 @@ public class BillServiceFunctions {
      * @return total sum of article prices, or null if no records match
      */
     public ResponseEntity<BigDecimal> sumByArticleTypeAndDateRange(String articleType, LocalDate startDate, LocalDate endDate) {
-        BigDecimal sum = billRepository.sumByArticleTypeAndBillDateBetween(articleType, startDate, endDate);
+        BigDecimal sum = billAggregateCache.get(BillAggregateCache.Key.byArticleType(articleType, startDate, endDate),
+                () -> billColumnStore.isReady()
+                        ? billColumnStore.sumByArticleType(articleType, startDate, endDate).sum()
+                        : readOnly(() -> billDailySummaryRepository.sumByArticleTypeAndDateRange(articleType, startDate, endDate)));
 
         if (sum == null) {
             sum = BigDecimal.ZERO;
@@ -91,6 +152,23 @@ public class BillServiceFunctions {
         return ResponseEntity.ok(sum);
     }
 
+    /**
+     * Returns the approximate median and 90th percentile price and the distinct article count
+     * of an article type within the specified range of months, merged from the bill sketches.
+     * See {@link BillPriceStats} for the error bounds.
+     *
+     * @param articleType type of the article to filter by, or null for all types
+     * @param startMonth  first month of the range (inclusive)
+     * @param endMonth    last month of the range (inclusive)
+     * @return 200 OK with the statistics, or 204 No Content if no records match
+     */
+    public ResponseEntity<BillPriceStats> priceStatsByArticleType(String articleType, YearMonth startMonth, YearMonth endMonth) {
+        BillPriceStats stats = billSketches.stats(articleType, startMonth, endMonth);
+        return stats == null
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.ok(stats);
+    }
+
     /**
      * Searches bills using dynamic filters, pagination and sorting.
      *
@@ -105,9 +183,10 @@ public class BillServiceFunctions {
      * @param size      page size
      * @param sortBy    field to sort by (e.g. "billDate", "articlePrice")
      * @param direction direction sort direction ("asc" or "desc")
-     * @return paginated and filtered list of bills
+     * @return paginated and filtered list of bills, read as views without loading entities
      */
-    public Page<Bill> searchBills(String name,
+    @Transactional(readOnly = true)
+    public Page<BillView> searchBills(String name,
                                   String type,
                                   String brand,
                                   BigDecimal priceMin,
@@ -119,36 +198,173 @@ public class BillServiceFunctions {
                                   String sortBy,
                                   String direction) {
         // Building Specification
-        Specification<Bill> specification = Specification
-                .where(BillSpecification.hasName(name))
-                .and(BillSpecification.hasType(type))
-                .and(BillSpecification.hasBrand(brand))
-                .and(BillSpecification.priceGreaterThan(priceMin))
-                .and(BillSpecification.priceLessThan(priceMax))
-                .and(BillSpecification.dateAfter(dateFrom))
-                .and(BillSpecification.dateBefore(dateTo));
+        Specification<Bill> specification = searchSpecification(
+                name, type, brand, priceMin, priceMax, dateFrom, dateTo);
 
-        // Check sortBy and make it default "billDate"
+        return billRepository.findViewsBySpecification(specification, pageable(page, size, sortBy, direction));
+    }
+
+    /**
+     * Searches bills like {@link #searchBills} and also returns facets of all matching bills:
+     * the most frequent article types and brands and a price histogram, each with counts and sums.
+     * The page and the facets use the same Specification and run in one read-only transaction,
+     * so they are calculated from the same data.
+     *
+     * @param name         article name filter (nullable)
+     * @param type         article type filter (nullable)
+     * @param brand        brand name filter (nullable)
+     * @param priceMin     minimum price (nullable)
+     * @param priceMax     maximum price (nullable)
+     * @param dateFrom     start date (nullable)
+     * @param dateTo       end date (nullable)
+     * @param page         page number (0-based)
+     * @param size         page size
+     * @param sortBy       field to sort by (e.g. "billDate", "articlePrice")
+     * @param direction    sort direction ("asc" or "desc")
+     * @param facetSize    number of article types and brands to return
+     * @param priceBuckets number of price histogram ranges
+     * @return page of bills with facets
+     */
+    @Transactional(readOnly = true)
+    public BillFacets searchBillsWithFacets(String name,
+                                           String type,
+                                           String brand,
+                                           BigDecimal priceMin,
+                                           BigDecimal priceMax,
+                                           LocalDate dateFrom,
+                                           LocalDate dateTo,
+                                           int page,
+                                           int size,
+                                           String sortBy,
+                                           String direction,
+                                           int facetSize,
+                                           int priceBuckets) {
+        Specification<Bill> specification = searchSpecification(
+                name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+
+        return new BillFacets(
+                billRepository.findViewsBySpecification(specification, pageable(page, size, sortBy, direction)),
+                billRepository.facetBySpecification(specification, "articleType", facetSize),
+                billRepository.facetBySpecification(specification, "brandName", facetSize),
+                billRepository.priceHistogramBySpecification(specification, priceBuckets));
+    }
+
+    /**
+     * Searches bills using dynamic filters and keyset (seek) pagination.
+     * Instead of skipping rows with OFFSET, every page continues right after the cursor
+     * of the previous one, and no count query is executed, so deep pages cost the same as the first.
+     *
+     * @param name      article name filter (nullable)
+     * @param type      article type filter (nullable)
+     * @param brand     brand name filter (nullable)
+     * @param priceMin  minimum price (nullable)
+     * @param priceMax  maximum price (nullable)
+     * @param dateFrom  start date (nullable)
+     * @param dateTo    end date (nullable)
+     * @param cursor    next_cursor of the previous page, null for the first page
+     * @param size      page size
+     * @param sortBy    field to sort by ("billDate" or "articlePrice")
+     * @param direction sort direction ("asc" or "desc")
+     * @return bills of the requested page with the cursor of the next page
+     * @throws CustomException if the sort field is not supported or the cursor does not match the sort
+     */
+    @Transactional(readOnly = true)
+    public BillSlice searchBillsByCursor(String name,
+                                         String type,
+                                         String brand,
+                                         BigDecimal priceMin,
+                                         BigDecimal priceMax,
+                                         LocalDate dateFrom,
+                                         LocalDate dateTo,
+                                         String cursor,
+                                         int size,
+                                         String sortBy,
+                                         String direction) {
         if (sortBy == null || sortBy.isBlank()) {
             sortBy = "billDate";
         }
+        if (!BillCursor.SORT_FIELDS.contains(sortBy)) {
+            throw new CustomException("Cursor pagination supports sorting by " + BillCursor.SORT_FIELDS);
+        }
+        direction = direction.equalsIgnoreCase("desc") ? "desc" : "asc";
 
-        // Check and initializes sorting direction
-        Sort sort = direction.equalsIgnoreCase("desc")
-                ? Sort.by(sortBy).descending()
-                : Sort.by(sortBy).ascending();
+        BillCursor position = null;
+        if (cursor != null && !cursor.isBlank()) {
+            position = BillCursor.decode(cursor);
+            if (!position.sortBy().equals(sortBy) || !position.direction().equals(direction)) {
+                throw new CustomException("Cursor was created for a different sort order");
+            }
+        }
+
+        Specification<Bill> specification = searchSpecification(
+                        name, type, brand, priceMin, priceMax, dateFrom, dateTo)
+                .and(BillSpecification.after(position));
+
+        // Id is the tie breaker, so the order is total and the cursor is unique
+        Sort.Direction sortDirection = Sort.Direction.fromString(direction);
+        Sort sort = Sort.by(sortDirection, sortBy).and(Sort.by(sortDirection, "id"));
 
+        // One extra row tells if there is a next page
+        List<Bill> bills = billRepository.findBy(specification, query -> query.sortBy(sort).limit(size + 1).all());
 
-        // Making Pageable object
-        Pageable pageable = PageRequest.of(page, size, sort);
+        boolean hasNext = bills.size() > size;
+        List<Bill> content = hasNext ? bills.subList(0, size) : bills;
+        String nextCursor = hasNext
+                ? BillCursor.after(content.getLast(), sortBy, direction).encode()
+                : null;
 
-        return billRepository.findAll(specification, pageable);
+        return new BillSlice(content, size, hasNext, nextCursor);
+    }
+
+    /**
+     * Searches bills like {@link #searchBills} and also sums the prices of all matching bills.
+     * The page query and the sum-and-count query are independent, so they run concurrently
+     * on {@link BillQueryExecutor}, each in its own read-only transaction, and the response
+     * takes about as long as the slower of the two.
+     *
+     * @param name      article name filter (nullable)
+     * @param type      article type filter (nullable)
+     * @param brand     brand name filter (nullable)
+     * @param priceMin  minimum price (nullable)
+     * @param priceMax  maximum price (nullable)
+     * @param dateFrom  start date (nullable)
+     * @param dateTo    end date (nullable)
+     * @param page      page number (0-based)
+     * @param size      page size
+     * @param sortBy    field to sort by (e.g. "billDate", "articlePrice")
+     * @param direction sort direction ("asc" or "desc")
+     * @return future completed with the page and the sum
+     */
+    public CompletableFuture<BillSearchSummary> searchBillsWithSum(String name,
+                                                                  String type,
+                                                                  String brand,
+                                                                  BigDecimal priceMin,
+                                                                  BigDecimal priceMax,
+                                                                  LocalDate dateFrom,
+                                                                  LocalDate dateTo,
+                                                                  int page,
+                                                                  int size,
+                                                                  String sortBy,
+                                                                  String direction) {
+        Specification<Bill> specification = searchSpecification(
+                name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        Pageable pageable = pageable(page, size, sortBy, direction);
+
+        CompletableFuture<List<BillView>> content = billQueryExecutor.submit(
+                () -> billRepository.findViewContentBySpecification(specification, pageable));
+        CompletableFuture<BillTotal> total = billQueryExecutor.submit(
+                () -> billRepository.sumBySpecification(specification));
+
+        return content.thenCombine(total, (bills, billTotal) -> new BillSearchSummary(
+                new PageImpl<>(bills, pageable, billTotal.count()), billTotal.sum()));
     }
 
     /**
      * Calculates the total sum of all bills that match the provided filters.
-     * Uses dynamic JPA Specifications to apply optional filters and returns
-     * the aggregated price as BigDecimal.
+     * Results are cached per filter set until a write could change them.
+     * The sum is answered by the in-memory column store when it is loaded. Otherwise
+     * dynamic JPA Specifications are applied and the SUM and COUNT are calculated
+     * by the database, so no Bill entity is loaded in either case.
      *
      * @param name      article name filter (nullable)
      * @param type      article type filter (nullable)
@@ -167,32 +383,139 @@ public class BillServiceFunctions {
                                                        LocalDate dateFrom,
                                                        LocalDate dateTo)
     {
-        Specification<Bill> specification = Specification
-                .where(BillSpecification.hasName(name))
-                .and(BillSpecification.hasType(type))
-                .and(BillSpecification.hasBrand(brand))
-                .and(BillSpecification.priceGreaterThan(priceMin))
-                .and(BillSpecification.priceLessThan(priceMax))
-                .and(BillSpecification.dateAfter(dateFrom))
-                .and(BillSpecification.dateBefore(dateTo));
-
-        List<Bill> bills = billRepository.findAll(specification);
-
-        if (bills.isEmpty()) {
+        BillTotal total = totalFiltered(name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+
+        if (total.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
 
-        //Ovako sam uradio prvi put, a onda sam napisao ovu "optimizovaniju verziju"
-//        BigDecimal sum = BigDecimal.ZERO;
-//
-//        for (Bill bill : bills) {
-//            sum = sum.add(bill.getArticlePrice());
-//        }
-        BigDecimal sum = bills.stream()
-                .map(Bill::getArticlePrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return ResponseEntity.ok(total.sum());
 
-        return ResponseEntity.ok(sum);
+    }
+
+    /**
+     * Calculates the price sum and count of the bills matching the /search filters,
+     * like {@link #sumFilteredBills}, and returns both instead of a response.
+     *
+     * @return the total, with a null sum and 0 count if no bills match
+     */
+    public BillTotal totalFiltered(String name,
+                                   String type,
+                                   String brand,
+                                   BigDecimal priceMin,
+                                   BigDecimal priceMax,
+                                   LocalDate dateFrom,
+                                   LocalDate dateTo) {
+        BillAggregateCache.Key key = BillAggregateCache.Key.filtered(
+                name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        return billAggregateCache.get(key, () -> {
+            if (billColumnStore.isReady()) {
+                return billColumnStore.sumFiltered(name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+            }
+            Specification<Bill> specification = filter(name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+            return readOnly(() -> billRepository.sumBySpecification(specification));
+        });
+    }
+
+    /**
+     * Groups bills that match the provided filters into time periods, optionally split by
+     * article type or brand, and calculates sum, count, min and max price of every group.
+     * The filters are the same as for /search, and the database calculates all groups
+     * in one GROUP BY query, so no Bill entity is loaded.
+     *
+     * @param name        article name filter (nullable)
+     * @param type        article type filter (nullable)
+     * @param brand       brand name filter (nullable)
+     * @param priceMin    minimum price filter (nullable)
+     * @param priceMax    maximum price filter (nullable)
+     * @param dateFrom    start date filter (nullable)
+     * @param dateTo      end date filter (nullable)
+     * @param granularity day, week (starting on Monday) or month
+     * @param groupBy     none, type or brand
+     * @return            ResponseEntity containing the buckets ordered by period and group,
+     *                    or 204 No Content if no bills match
+     * @throws CustomException if granularity or groupBy is not supported
+     */
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<BillBucket>> sumByPeriod(String name,
+                                                       String type,
+                                                       String brand,
+                                                       BigDecimal priceMin,
+                                                       BigDecimal priceMax,
+                                                       LocalDate dateFrom,
+                                                       LocalDate dateTo,
+                                                       String granularity,
+                                                       String groupBy)
+    {
+        BillBucket.Granularity periodLength = BillBucket.parse(
+                BillBucket.Granularity.class, granularity, "granularity");
+        BillBucket.GroupBy grouping = BillBucket.parse(BillBucket.GroupBy.class, groupBy, "groupBy");
 
+        Specification<Bill> specification = searchSpecification(
+                name, type, brand, priceMin, priceMax, dateFrom, dateTo);
+        List<BillBucket> buckets = billRepository.aggregateBySpecification(specification, periodLength, grouping);
+
+        return buckets.isEmpty()
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.ok(buckets);
+    }
+
+    /**
+     * Runs a SQL fallback in a read-only transaction. The sums answered by the column store
+     * don't use this, so they take no connection from the pool.
+     */
+    private <T> T readOnly(Supplier<T> query) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> query.get());
+    }
+
+    private static Pageable pageable(int page, int size, String sortBy, String direction) {
+        // Check sortBy and make it default "billDate"
+        if (sortBy == null || sortBy.isBlank()) {
+            sortBy = "billDate";
+        }
+        // Types and brands are stored as lookup ids, so sorting by them joins the lookup table's name
+        sortBy = SORT_PATHS.getOrDefault(sortBy, sortBy);
+
+        // Check and initializes sorting direction
+        Sort sort = direction.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        return PageRequest.of(page, size, sort);
+    }
+
+    /**
+     * Builds the search Specification. Name, type and brand substring filters can't use an index
+     * with LIKE '%text%', so when the column store is loaded they are first resolved to bill ids,
+     * and the database reads those bills by primary key. If too many bills match,
+     * the ids wouldn't help and only the filters are used.
+     */
+    private Specification<Bill> searchSpecification(String name,
+                                                    String type,
+                                                    String brand,
+                                                    BigDecimal priceMin,
+                                                    BigDecimal priceMax,
+                                                    LocalDate dateFrom,
+                                                    LocalDate dateTo) {
+        int[] ids = billColumnStore.findIdsContaining(name, type, brand, maxSubstringCandidates);
+        return filter(name, type, brand, priceMin, priceMax, dateFrom, dateTo)
+                .and(BillSpecification.idIn(ids));
+    }
+
+    /**
+     * Builds the filter Specification. Type and brand filters are resolved to the matching
+     * lookup ids by the dictionary, so the database filters bills on integers.
+     */
+    private Specification<Bill> filter(String name,
+                                       String type,
+                                       String brand,
+                                       BigDecimal priceMin,
+                                       BigDecimal priceMax,
+                                       LocalDate dateFrom,
+                                       LocalDate dateTo) {
+        return BillSpecification.filter(name, billDictionary.articleTypes().containing(type),
+                billDictionary.brands().containing(brand), priceMin, priceMax, dateFrom, dateTo);
     }
 }
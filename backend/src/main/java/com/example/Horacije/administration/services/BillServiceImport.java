@@ -0,0 +1,273 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillImportStatus;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import com.example.Horacije.administration.sharedTools.helpers.CsvReader;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports bills from CSV files in the background.
+ * <p>
+ * The uploaded file is copied to a temporary file and parsed row by row, so it is never
+ * kept in memory. Valid rows are committed in chunks of {@code horacije.import.chunk-size},
+ * each chunk in its own transaction. If a chunk fails, its rows are retried one by one,
+ * so only the failing rows are rejected and the rest of the import continues.
+ * Imports run one at a time, in the order they were uploaded.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class BillServiceImport {
+
+    private static final Set<String> REQUIRED_COLUMNS = Set.of("bill_date", "article_name", "article_price");
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final int MAX_KEPT_JOBS = 100;
+
+    private final BillServiceCrud billServiceCrud;
+    private final Validator validator;
+
+    @Value("${horacije.import.chunk-size:1000}")
+    private int chunkSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Keeps only the latest jobs, so finished imports don't pile up
+    private final Map<String, ImportJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) {
+            return size() > MAX_KEPT_JOBS;
+        }
+    });
+
+    /**
+     * Stores the uploaded CSV file and schedules its import.
+     * The file must have a header row with bill_date, article_name and article_price columns,
+     * article_type and brand_name are optional, other columns (like id) are ignored.
+     *
+     * @param file uploaded CSV file
+     * @return 202 Accepted with the status of the new import job
+     * @throws CustomException if the file is empty or can not be stored
+     */
+    public ResponseEntity<BillImportStatus> startImport(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new CustomException("Import file is empty or null");
+        }
+
+        // The multipart file is deleted after the request, so the import works on its own copy
+        Path copy;
+        try {
+            copy = Files.createTempFile("bill-import-", ".csv");
+            file.transferTo(copy);
+        } catch (IOException e) {
+            throw new CustomException("Failed to store import file", e);
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename());
+        jobs.put(job.id, job);
+        executor.submit(() -> run(job, copy));
+        return ResponseEntity.accepted().body(job.toStatus());
+    }
+
+    /**
+     * Returns progress of an import job.
+     *
+     * @param id import job id
+     * @return 200 OK with the job status
+     * @throws CustomException if the job doesn't exist
+     */
+    public ResponseEntity<BillImportStatus> getImportStatus(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new CustomException("Import job " + id + " doesn't exist");
+        }
+        return ResponseEntity.ok(job.toStatus());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ImportJob job, Path file) {
+        job.startedAt = Instant.now();
+        job.status = "RUNNING";
+        try (CsvReader csv = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = readHeader(csv);
+
+            List<Bill> chunk = new ArrayList<>(chunkSize);
+            List<Long> chunkLines = new ArrayList<>(chunkSize);
+            List<String> record;
+            while ((record = csv.readRecord()) != null) {
+                if (record.size() == 1 && record.getFirst().isBlank()) {
+                    continue;
+                }
+                job.rowsRead.incrementAndGet();
+                try {
+                    chunk.add(toBill(record, columns));
+                    chunkLines.add(csv.getLineNumber());
+                } catch (Exception e) {
+                    job.reject(csv.getLineNumber(), e.getMessage());
+                }
+
+                if (chunk.size() == chunkSize) {
+                    commit(job, chunk, chunkLines);
+                    chunk = new ArrayList<>(chunkSize);
+                    chunkLines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commit(job, chunk, chunkLines);
+            }
+            job.status = "COMPLETED";
+        } catch (Exception e) {
+            log.error("Bill import {} failed", job.id, e);
+            job.failure = e.getMessage();
+            job.status = "FAILED";
+        } finally {
+            job.finishedAt = Instant.now();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete import file {}", file, e);
+            }
+        }
+    }
+
+    private void commit(ImportJob job, List<Bill> chunk, List<Long> lines) {
+        try {
+            billServiceCrud.insertBills(chunk);
+            job.rowsCommitted.addAndGet(chunk.size());
+        } catch (Exception e) {
+            // Find the failing rows, the others are still saved
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    billServiceCrud.insertBills(List.of(chunk.get(i)));
+                    job.rowsCommitted.incrementAndGet();
+                } catch (Exception rowError) {
+                    job.reject(lines.get(i), rootMessage(rowError));
+                }
+            }
+        }
+    }
+
+    private static Map<String, Integer> readHeader(CsvReader csv) throws IOException {
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            throw new CustomException("Import file has no header row");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).strip().toLowerCase(), i);
+        }
+        if (!columns.keySet().containsAll(REQUIRED_COLUMNS)) {
+            throw new CustomException("Import file header must contain " + REQUIRED_COLUMNS);
+        }
+        return columns;
+    }
+
+    private Bill toBill(List<String> record, Map<String, Integer> columns) {
+        Bill bill = new Bill();
+        String date = value(record, columns, "bill_date");
+        String price = value(record, columns, "article_price");
+        bill.setBillDate(date == null ? null : LocalDate.parse(date));
+        bill.setArticleName(value(record, columns, "article_name"));
+        bill.setArticlePrice(price == null ? null : new BigDecimal(price));
+        bill.setArticleType(value(record, columns, "article_type"));
+        bill.setBrandName(value(record, columns, "brand_name"));
+
+        Set<ConstraintViolation<Bill>> violations = validator.validate(bill);
+        if (!violations.isEmpty()) {
+            throw new CustomException(violations.iterator().next().getMessage());
+        }
+        return bill;
+    }
+
+    private static String value(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).strip();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    private static final class ImportJob {
+
+        private final String id;
+        private final String fileName;
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsCommitted = new AtomicLong();
+        private final AtomicLong rowsRejected = new AtomicLong();
+        private final List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        private volatile String status = "QUEUED";
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String failure;
+
+        private ImportJob(String id, String fileName) {
+            this.id = id;
+            this.fileName = fileName;
+        }
+
+        private void reject(long line, String reason) {
+            rowsRejected.incrementAndGet();
+            if (rejected.size() < MAX_REPORTED_REJECTIONS) {
+                rejected.add("line " + line + ": " + reason);
+            }
+        }
+
+        private BillImportStatus toStatus() {
+            Instant started = startedAt;
+            Instant finished = finishedAt;
+            double rowsPerSecond = 0;
+            if (started != null) {
+                long millis = Duration.between(started, finished == null ? Instant.now() : finished).toMillis();
+                rowsPerSecond = millis == 0 ? 0 : rowsCommitted.get() * 1000.0 / millis;
+            }
+            List<String> rejectedCopy;
+            synchronized (rejected) {
+                rejectedCopy = List.copyOf(rejected);
+            }
+            return new BillImportStatus(id, fileName, status,
+                    rowsRead.get(), rowsCommitted.get(), rowsRejected.get(), rowsPerSecond,
+                    started, finished, failure, rejectedCopy);
+        }
+    }
+}
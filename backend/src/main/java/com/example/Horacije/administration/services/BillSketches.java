@@ -0,0 +1,323 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillPriceStats;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.Union;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Price percentiles and distinct article counts per (article type, month), kept as mergeable sketches.
+ * <p>
+ * Every cell has a KLL quantile sketch of the prices and a HyperLogLog sketch of the article names.
+ * A query merges the cells of the requested months, so any range of months costs a few merges
+ * instead of sorting all its prices in the database. The sketches are loaded when the application
+ * is ready and the bills added by a {@link BillChangedEvent} are added to them.
+ * <p>
+ * Sketches can't remove a value, so a cell with a deleted or changed bill is marked stale and
+ * is rebuilt from its bills the next time a query needs it. A cell that a bill was added to, changed
+ * in or deleted from while it was rebuilt stays stale and is rebuilt again on the next query.
+ * <p>
+ * Error bounds, independent of the number of bills: with the default quantile k of 200 the rank
+ * of a returned percentile is off by at most about 1.3% with 99% confidence. With the default
+ * distinct lg k of 12 the distinct count has a relative standard error of about 1.6%,
+ * the returned bounds are two standard errors wide.
+ */
+@Slf4j
+@Service
+public class BillSketches {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final int NO_TYPE = 0;
+    private static final int BOUND_STANDARD_DEVIATIONS = 2;
+
+    private final BillRepository billRepository;
+    private final BillDictionary billDictionary;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int quantileK;
+    private final int distinctLgK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Cell, CellSketch> cells = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public BillSketches(BillRepository billRepository,
+                        BillDictionary billDictionary,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${horacije.sketches.enabled:true}") boolean enabled,
+                        @Value("${horacije.sketches.quantile-k:200}") int quantileK,
+                        @Value("${horacije.sketches.distinct-lg-k:12}") int distinctLgK) {
+        this.billRepository = billRepository;
+        this.billDictionary = billDictionary;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.quantileK = quantileK;
+        this.distinctLgK = distinctLgK;
+    }
+
+    /**
+     * Article type id (0 for bills without a type) and month of a group of bills.
+     */
+    private record Cell(int typeId, YearMonth month) {
+    }
+
+    /**
+     * Sketches of one cell. Changed only under the write lock.
+     */
+    private final class CellSketch {
+
+        private final KllDoublesSketch prices = KllDoublesSketch.newHeapInstance(quantileK);
+        private final HllSketch articles = new HllSketch(distinctLgK);
+        private long changes;
+        private boolean stale;
+
+        private void add(BigDecimal price, String articleName) {
+            prices.update(price.doubleValue());
+            articles.update(Helpers.normalize(articleName));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            log.info("Bill sketches are disabled");
+            return;
+        }
+        reload();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Drops all sketches and builds them from all bills, read in batches ordered by id.
+     * Writes that happen while loading wait for the lock and are applied afterwards.
+     */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            int lastId = 0;
+            long loaded = 0;
+            List<Bill> batch;
+            do {
+                // Not read-only, so bills that aren't replicated yet are read from the primary
+                int after = lastId;
+                batch = transactionTemplate.execute(status ->
+                        billRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(LOAD_BATCH_SIZE)));
+                for (Bill bill : batch) {
+                    addLocked(bill);
+                    lastId = bill.getId();
+                }
+                loaded += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            ready = true;
+            log.info("Bill sketches loaded {} bills into {} cells", loaded, cells.size());
+        } catch (Exception e) {
+            cells.clear();
+            log.error("Failed to load bill sketches, price statistics are not available", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the added bills to their cells and marks the cells of removed bills stale.
+     *
+     * @param event change published by BillServiceCrud
+     */
+    @EventListener
+    public void onBillsChanged(BillChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Bill bill : event.removed()) {
+                CellSketch sketch = cells.get(cellOf(bill.getArticleType(), bill.getBillDate()));
+                if (sketch != null) {
+                    sketch.stale = true;
+                    sketch.changes++;
+                }
+            }
+            event.added().forEach(this::addLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the sketches of the months between startMonth and endMonth (inclusive).
+     *
+     * @param articleType article type, or null for bills of all types
+     * @return the statistics, or null if there are no bills in the range
+     * @throws CustomException if the sketches aren't loaded or the range is invalid
+     */
+    public BillPriceStats stats(String articleType, YearMonth startMonth, YearMonth endMonth) {
+        if (!ready) {
+            throw new CustomException("Price statistics are not loaded yet");
+        }
+        if (startMonth.isAfter(endMonth)) {
+            throw new CustomException("start_month must not be after end_month");
+        }
+        Integer typeId = articleType == null ? null : billDictionary.articleTypes().idOf(articleType);
+        if (typeId != null && typeId == BillDictionary.UNKNOWN_ID) {
+            return null;
+        }
+        List<Cell> selected;
+        lock.readLock().lock();
+        try {
+            requireReady();
+            selected = cells.keySet().stream()
+                    .filter(cell -> typeId == null || cell.typeId() == typeId)
+                    .filter(cell -> !cell.month().isBefore(startMonth) && !cell.month().isAfter(endMonth))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Cell cell : selected) {
+            if (isStale(cell)) {
+                rebuild(cell);
+            }
+        }
+
+        KllDoublesSketch prices = KllDoublesSketch.newHeapInstance(quantileK);
+        Union articles = new Union(distinctLgK);
+        lock.readLock().lock();
+        try {
+            // A reload that started after the selection leaves the cells half loaded
+            requireReady();
+            for (Cell cell : selected) {
+                CellSketch sketch = cells.get(cell);
+                if (sketch != null) {
+                    prices.merge(sketch.prices);
+                    articles.update(sketch.articles);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (prices.isEmpty()) {
+            return null;
+        }
+        return new BillPriceStats(articleType, startMonth, endMonth, prices.getN(),
+                toPrice(prices.getQuantile(0.5)), toPrice(prices.getQuantile(0.9)),
+                prices.getNormalizedRankError(false),
+                Math.round(articles.getEstimate()),
+                (long) Math.floor(articles.getLowerBound(BOUND_STANDARD_DEVIATIONS)),
+                (long) Math.ceil(articles.getUpperBound(BOUND_STANDARD_DEVIATIONS)));
+    }
+
+    private void requireReady() {
+        if (!ready) {
+            throw new CustomException("Price statistics are not loaded yet");
+        }
+    }
+
+    private boolean isStale(Cell cell) {
+        lock.readLock().lock();
+        try {
+            CellSketch sketch = cells.get(cell);
+            return sketch != null && sketch.stale;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the cell again from its bills, outside of the lock, so writes are not blocked by the query.
+     * The rebuilt sketch replaces the cell only if no reload or other rebuild replaced it in the meantime.
+     */
+    private void rebuild(Cell cell) {
+        CellSketch before;
+        long changesBefore;
+        lock.readLock().lock();
+        try {
+            before = cells.get(cell);
+            if (before == null) {
+                return;
+            }
+            changesBefore = before.changes;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LocalDate startDate = cell.month().atDay(1);
+        LocalDate endDate = cell.month().atEndOfMonth();
+        // Not read-only, so the bills are read from the primary, like the change that made the cell stale
+        List<BillView> bills = transactionTemplate.execute(status -> switch (cell.typeId()) {
+            case NO_TYPE -> billRepository.findViewsWithoutArticleTypeByBillDateBetween(startDate, endDate);
+            // Types are registered before bills are written, so no stored bill has a type missing from the lookup
+            case BillDictionary.UNKNOWN_ID -> List.of();
+            default -> billRepository.findViewsByArticleTypeAndBillDateBetween(
+                    billDictionary.articleTypes().nameOf(cell.typeId()), startDate, endDate);
+        });
+        CellSketch rebuilt = new CellSketch();
+        for (BillView bill : bills) {
+            rebuilt.add(bill.articlePrice(), bill.articleName());
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (cells.get(cell) != before) {
+                return;
+            }
+            rebuilt.changes = before.changes;
+            // A bill added, changed or deleted during the rebuild may be missing from the bills that were read
+            rebuilt.stale = before.changes != changesBefore;
+            cells.put(cell, rebuilt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(Bill bill) {
+        CellSketch sketch = cells.computeIfAbsent(cellOf(bill.getArticleType(), bill.getBillDate()),
+                cell -> new CellSketch());
+        sketch.add(bill.getArticlePrice(), bill.getArticleName());
+        // Counted like a removal, so a rebuild that was reading the cell doesn't drop the bill
+        sketch.changes++;
+    }
+
+    /**
+     * Bills without a type go to the {@link #NO_TYPE} cell, bills of a type missing from the lookup table
+     * to a {@link BillDictionary#UNKNOWN_ID} cell of their own, the same rule {@link #rebuild} reads them with.
+     */
+    private Cell cellOf(String articleType, LocalDate billDate) {
+        Integer typeId = billDictionary.articleTypes().idOf(articleType);
+        return new Cell(typeId == null ? NO_TYPE : typeId, YearMonth.from(billDate));
+    }
+
+    // The price column is DECIMAL(10,2), so the double of a stored price rounds back to it exactly
+    private static BigDecimal toPrice(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
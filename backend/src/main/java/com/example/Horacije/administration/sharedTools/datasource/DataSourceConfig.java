@@ -0,0 +1,77 @@
+package com.example.Horacije.administration.sharedTools.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes read-only transactions to the read replicas and everything else to the primary.
+ * <p>
+ * The primary pool is configured by spring.datasource.*, every replica in
+ * horacije.datasource.replica-urls gets a copy of its pool settings. Connections are taken lazily,
+ * when the first statement runs, so the read-only flag of the transaction is already known and
+ * {@link LazyConnectionDataSourceProxy} takes read-only connections from {@link ReplicaDataSource}.
+ * Without replicas all connections come from the primary. Flyway always migrates the primary.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(
+            Environment environment,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${spring.datasource.driver-class-name}") String driverClassName,
+            @Value("${horacije.datasource.replica-urls:}") List<String> replicaUrls,
+            @Value("${horacije.datasource.replica-username:${spring.datasource.username}}") String replicaUsername,
+            @Value("${horacije.datasource.replica-password:${spring.datasource.password}}") String replicaPassword,
+            @Value("${horacije.datasource.read-your-writes:PT5S}") Duration readYourWrites,
+            @Value("${horacije.datasource.replica-max-lag:PT5S}") Duration maxLag) {
+        HikariConfig primaryConfig = new HikariConfig();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primaryConfig));
+        primaryConfig.setJdbcUrl(url);
+        primaryConfig.setUsername(username);
+        primaryConfig.setPassword(password);
+        primaryConfig.setDriverClassName(driverClassName);
+        if (primaryConfig.getPoolName() == null) {
+            primaryConfig.setPoolName("primary");
+        }
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariConfig replicaConfig = new HikariConfig();
+            primaryConfig.copyStateTo(replicaConfig);
+            replicaConfig.setJdbcUrl(replicaUrls.get(i));
+            replicaConfig.setUsername(replicaUsername);
+            replicaConfig.setPassword(replicaPassword);
+            replicaConfig.setPoolName("replica-" + i);
+            // A replica that is down at startup is skipped by the health check instead of failing the start
+            replicaConfig.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(replicaConfig));
+        }
+        return new ReplicaDataSource(new HikariDataSource(primaryConfig), replicas, readYourWrites, maxLag);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(replicaDataSource.getPrimary());
+        if (replicaDataSource.hasReplicas()) {
+            dataSource.setReadOnlyDataSource(replicaDataSource);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.Horacije.administration.sharedTools.datasource;
+
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections for read-only transactions, see {@link DataSourceConfig}.
+ * <p>
+ * Connections come from the healthy replicas in round-robin order. The primary is used instead
+ * when no replica is healthy, when getting a replica connection fails, in which case the replica
+ * is marked unhealthy until the next health check, and for reads that must see the latest writes.
+ * A replica is healthy if it answers and, when it is a MariaDB replica, replicates and lags behind
+ * the primary by at most the maximum lag.
+ * <p>
+ * The read-your-writes window belongs to the client that wrote: a write in a request sets the
+ * {@value #LAST_WRITE_COOKIE} cookie, and requests carrying it read from the primary until the window
+ * is over. Writes outside of a request (ingest log flushes, import jobs) don't open a window, so a
+ * steady write stream doesn't move every read to the primary. Other clients can read data that is
+ * up to the replica lag old. Reads that fill state shared by all clients (cached totals, live totals)
+ * use {@link #readFromPrimary}, and requests tagged with the data version (ETags) are moved to the
+ * primary after every write by the {@value #PRIMARY_READS_ATTRIBUTE} request attribute.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    /**
+     * Cookie with the time (epoch millis) of the client's last write.
+     */
+    public static final String LAST_WRITE_COOKIE = "horacije-last-write";
+
+    /**
+     * Request attribute that moves all reads of the request to the primary.
+     */
+    public static final String PRIMARY_READS_ATTRIBUTE = "horacije-primary-reads";
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Duration readYourWrites;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(HikariDataSource primary,
+                             List<HikariDataSource> replicas,
+                             Duration readYourWrites,
+                             Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLag = maxLag;
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicas.isEmpty() || PRIMARY_READS.get() != null || requestReadsFromPrimary()) {
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Replica {} failed, reading from the primary until it recovers",
+                        replica.dataSource.getPoolName(), e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the configured credentials");
+    }
+
+    /**
+     * Runs the reads on the primary, for results that are shared with clients that didn't write
+     * and must not be older than the last write. Connections taken before the call are not affected.
+     */
+    public static <T> T readFromPrimary(Supplier<T> reads) {
+        if (PRIMARY_READS.get() != null) {
+            return reads.get();
+        }
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            PRIMARY_READS.remove();
+        }
+    }
+
+    /**
+     * Starts the read-your-writes window of the writing client. The rest of the request reads from
+     * the primary, and the cookie moves the client's next requests there until the window is over.
+     */
+    @EventListener
+    public void onBillsChanged(BillChangedEvent event) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        attributes.getRequest().setAttribute(LAST_WRITE_COOKIE, now);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            ResponseCookie cookie = ResponseCookie.from(LAST_WRITE_COOKIE, Long.toString(now))
+                    .path("/")
+                    .maxAge(readYourWrites.plusSeconds(1))
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        }
+    }
+
+    private boolean requestReadsFromPrimary() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (request.getAttribute(PRIMARY_READS_ATTRIBUTE) != null) {
+            return true;
+        }
+        Long lastWrite = request.getAttribute(LAST_WRITE_COOKIE) instanceof Long written ? written : null;
+        if (lastWrite == null) {
+            Cookie cookie = WebUtils.getCookie(request, LAST_WRITE_COOKIE);
+            if (cookie == null) {
+                return false;
+            }
+            try {
+                lastWrite = Long.parseLong(cookie.getValue());
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return System.currentTimeMillis() - lastWrite < readYourWrites.toMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${horacije.datasource.replica-health-check-interval:PT5S}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy = isHealthy(replica.dataSource);
+            if (healthy != replica.healthy) {
+                log.info("Replica {} is {}", replica.dataSource.getPoolName(), healthy ? "healthy" : "unhealthy");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    private boolean isHealthy(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS) && lagsAtMost(connection, maxLag);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // A server without replication status is not a replica (e.g. a local stand-in) and never lags.
+    // Without the privilege to read the status the lag is unknown and the replica is trusted.
+    private static boolean lagsAtMost(Connection connection, Duration maxLag) {
+        try (Statement statement = connection.createStatement();
+             ResultSet status = statement.executeQuery("SHOW SLAVE STATUS")) {
+            if (!status.next()) {
+                return true;
+            }
+            long lag = status.getLong("Seconds_Behind_Master");
+            // NULL means that replication is stopped or broken
+            return !status.wasNull() && lag <= maxLag.toSeconds();
+        } catch (SQLException e) {
+            log.debug("Can't read the replication status", e);
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+        primary.close();
+    }
+}
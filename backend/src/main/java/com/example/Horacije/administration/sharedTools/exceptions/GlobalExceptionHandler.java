@@ -1,6 +1,8 @@
 package com.example.Horacije.administration.sharedTools.exceptions;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.ConstraintViolationException;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -11,17 +13,34 @@ import org.springframework.web.method.annotation.MethodArgumentTypeMismatchExcep
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
 
+    private static final Pattern UUID = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    private final MeterRegistry meterRegistry;
+
     @ExceptionHandler(CustomException.class)
     public ResponseEntity<Map<String, String>> handleCustomException(CustomException ex) {
+        meterRegistry.counter("horacije.custom.exceptions", "category", category(ex.getMessage())).increment();
         Map<String, String> error = new HashMap<>();
         error.put("error", ex.getMessage());
         return ResponseEntity.badRequest().body(error);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleServiceUnavailable(ServiceUnavailableException ex) {
+        meterRegistry.counter("horacije.custom.exceptions", "category", category(ex.getMessage())).increment();
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationErrors(MethodArgumentNotValidException ex) {
         Map<String, String> error = new HashMap<>();
@@ -61,5 +80,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(error);
     }
 
-
-}
\ No newline at end of file
+    /**
+     * Turns an exception message into a metric tag with a bounded number of values:
+     * details after ':' are dropped, ids and numbers are replaced with placeholders.
+     * For example "Bill with id 42 doesn't exist" becomes "Bill with id {n} doesn't exist".
+     */
+    static String category(String message) {
+        if (message == null || message.isBlank()) {
+            return "unknown";
+        }
+        int details = message.indexOf(':');
+        String category = details < 0 ? message : message.substring(0, details);
+        category = UUID.matcher(category).replaceAll("{id}");
+        category = NUMBER.matcher(category).replaceAll("{n}");
+        return category.strip();
+    }
+}
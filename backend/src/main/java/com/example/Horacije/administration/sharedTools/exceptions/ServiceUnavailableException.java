@@ -0,0 +1,19 @@
+package com.example.Horacije.administration.sharedTools.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The server is overloaded (too many concurrent queries, subscriptions or pending writes).
+ * Returned as 503, so clients retry later instead of treating the request as invalid.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends CustomException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
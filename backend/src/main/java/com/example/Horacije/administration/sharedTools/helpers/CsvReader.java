@@ -0,0 +1,100 @@
+package com.example.Horacije.administration.sharedTools.helpers;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming CSV reader (RFC 4180): comma separated, fields optionally quoted with
+ * double quotes, quotes escaped by doubling them, line breaks allowed inside quoted fields.
+ * Lines may end with LF or CRLF, and a UTF-8 byte order mark at the start of the input is skipped.
+ * Reads one record at a time, so the whole file is never kept in memory.
+ */
+public class CsvReader implements Closeable {
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final BufferedReader reader;
+    private long linesRead;
+    private long recordLine;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+
+    /**
+     * Returns the line number where the last read record started (1-based).
+     */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return fields of the record, or null at the end of input
+     * @throws IOException if reading fails or a quoted field is not closed
+     */
+    public List<String> readRecord() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        // Excel writes a byte order mark, which would otherwise become part of the first column name
+        if (linesRead == 0 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+            line = line.substring(1);
+        }
+        recordLine = ++linesRead;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Quoted field continues in the next line
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unclosed quoted field starting at line " + recordLine);
+                }
+                linesRead++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -1,13 +1,27 @@
 package com.example.Horacije.administration.sharedTools.helpers;
 
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 public class Helpers {
 
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
     public static <T>List<T> listConverter(Iterable<T> iterable) {
         List<T> list = new ArrayList<>();
         iterable.forEach(list::add);
         return list;
     }
+
+    /**
+     * Lower-cases the value and removes accents, to compare strings
+     * like the utf8mb4_unicode_ci collation of the database does.
+     */
+    public static String normalize(String value) {
+        String withoutAccents = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        return withoutAccents.toLowerCase(Locale.ROOT);
+    }
 }
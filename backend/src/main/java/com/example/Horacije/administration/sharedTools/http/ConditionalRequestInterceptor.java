@@ -0,0 +1,77 @@
+package com.example.Horacije.administration.sharedTools.http;
+
+import com.example.Horacije.administration.services.BillDataVersion;
+import com.example.Horacije.administration.sharedTools.datasource.ReplicaDataSource;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Answers GET requests of {@link VersionedResource} endpoints with 304 Not Modified when the
+ * If-None-Match header holds the current ETag, before the controller runs, so an unchanged read
+ * doesn't touch the database. Other responses get the ETag and Cache-Control: no-cache,
+ * which makes browsers revalidate the stored response on every fetch.
+ * <p>
+ * The ETag is derived from the {@link BillDataVersion} and the request (path, sorted parameters
+ * and Accept header). The version is read before the data, so a response can be tagged with
+ * an older version than its data, which only costs the client one extra full response,
+ * but never with a newer one. The version changes on the primary, so for the maximum replica lag
+ * after a write, by any client, the request reads from the primary: a lagging replica would
+ * otherwise return the old data under the new ETag, and every later 304 would keep it.
+ */
+@Component
+public class ConditionalRequestInterceptor implements HandlerInterceptor {
+
+    private final BillDataVersion billDataVersion;
+    private final Duration replicaMaxLag;
+
+    public ConditionalRequestInterceptor(BillDataVersion billDataVersion,
+                                         @Value("${horacije.datasource.replica-max-lag:PT5S}") Duration replicaMaxLag) {
+        this.billDataVersion = billDataVersion;
+        this.replicaMaxLag = replicaMaxLag;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The async dispatch of a CompletableFuture endpoint must keep the ETag of the first dispatch
+        if (request.getDispatcherType() == DispatcherType.ASYNC
+                || !(handler instanceof HandlerMethod method)
+                || !method.hasMethodAnnotation(VersionedResource.class)) {
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        // The same URL can be sent as JSON, columnar JSON, Smile or CBOR
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String etag = etag(request);
+        // Checked after the version was read, a write in between only moves the request to the primary
+        if (billDataVersion.changedWithin(replicaMaxLag)) {
+            request.setAttribute(ReplicaDataSource.PRIMARY_READS_ATTRIBUTE, Boolean.TRUE);
+        }
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+
+    String etag(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            key.append('&').append(parameter.getKey()).append('=').append(Arrays.toString(parameter.getValue()));
+        }
+        key.append('|').append(request.getHeader(HttpHeaders.ACCEPT));
+        String hash = DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8));
+        return "\"" + Long.toHexString(billDataVersion.instance()) + "-" + billDataVersion.current()
+                + "-" + hash + "\"";
+    }
+}
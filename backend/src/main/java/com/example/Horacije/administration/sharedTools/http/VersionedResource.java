@@ -0,0 +1,15 @@
+package com.example.Horacije.administration.sharedTools.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET endpoint whose response depends only on the bill data and the request,
+ * so {@link ConditionalRequestInterceptor} can answer it with an ETag and 304 Not Modified.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedResource {
+}
@@ -0,0 +1,114 @@
+package com.example.Horacije.administration.sharedTools.metrics;
+
+import com.example.Horacije.administration.specification.BillSpecification;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the number and total time of SQL statements of every API request, tagged like
+ * http.server.requests with the method and URI pattern, and puts the BillSpecification predicates
+ * active for the request into the logging MDC ({@value #PREDICATES_MDC_KEY}), so slow query logs
+ * show which filters produced the query.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    public static final String PREDICATES_MDC_KEY = "billPredicates";
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String predicates = activePredicates(request);
+        if (predicates != null) {
+            MDC.put(PREDICATES_MDC_KEY, predicates);
+        }
+        RequestSqlStatistics statistics = RequestSqlStatistics.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestSqlStatistics.finish();
+            MDC.remove(PREDICATES_MDC_KEY);
+            if (request.isAsyncStarted()) {
+                // CompletableFuture endpoints finish their queries on other threads after this returns
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, statistics);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, statistics);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, RequestSqlStatistics statistics) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            return;
+        }
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern.toString());
+        DistributionSummary.builder("horacije.request.sql.statements")
+                .description("JDBC statements executed by Hibernate per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        Timer.builder("horacije.request.sql.time")
+                .description("Time spent executing JDBC statements per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static String activePredicates(HttpServletRequest request) {
+        StringJoiner predicates = new StringJoiner(",", "[", "]");
+        predicates.setEmptyValue("");
+        for (Map.Entry<String, String> entry : BillSpecification.PREDICATES_BY_PARAMETER.entrySet()) {
+            String value = request.getParameter(entry.getKey());
+            if (value != null && !value.isBlank()) {
+                predicates.add(entry.getValue());
+            }
+        }
+        String result = predicates.toString();
+        return result.isEmpty() ? null : result;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.Horacije.administration.sharedTools.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Number and duration of the JDBC statements executed by Hibernate in the current request.
+ * <p>
+ * {@link RequestMetricsFilter} starts collecting when a request comes in,
+ * {@link SqlStatementListener} adds every executed statement and the filter publishes
+ * the totals when the request is done. Statements outside of a request are not collected.
+ * Queries the request runs on other threads are counted when they run inside {@link #callWith}.
+ */
+public final class RequestSqlStatistics {
+
+    private static final ThreadLocal<RequestSqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    private RequestSqlStatistics() {
+    }
+
+    static RequestSqlStatistics start() {
+        RequestSqlStatistics statistics = new RequestSqlStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    static void finish() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return statistics of the request on the current thread, null outside of a request
+     */
+    public static RequestSqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the task with its statements added to the given request statistics,
+     * for work a request hands to another thread.
+     *
+     * @param statistics statistics from {@link #current()} on the request thread, may be null
+     */
+    public static <T> T callWith(RequestSqlStatistics statistics, Supplier<T> task) {
+        RequestSqlStatistics previous = CURRENT.get();
+        CURRENT.set(statistics);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    static void record(long statementNanos) {
+        RequestSqlStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.statements.increment();
+            statistics.nanos.add(statementNanos);
+        }
+    }
+
+    long getStatements() {
+        return statements.sum();
+    }
+
+    long getNanos() {
+        return nanos.sum();
+    }
+}
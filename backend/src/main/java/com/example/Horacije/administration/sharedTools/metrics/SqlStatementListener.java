@@ -0,0 +1,25 @@
+package com.example.Horacije.administration.sharedTools.metrics;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Measures every JDBC statement Hibernate executes and adds it to {@link RequestSqlStatistics}.
+ * <p>
+ * Registered for every session with {@code hibernate.session.events.auto}, so Hibernate creates
+ * one instance per session. Statements executed with JdbcTemplate don't go through Hibernate
+ * and are not counted.
+ */
+public class SqlStatementListener implements SessionEventListener {
+
+    private long statementStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestSqlStatistics.record(System.nanoTime() - statementStart);
+    }
+}
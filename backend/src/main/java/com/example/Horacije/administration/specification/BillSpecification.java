@@ -1,15 +1,46 @@
 package com.example.Horacije.administration.specification;
 
 import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillCursor;
+import com.example.Horacije.administration.repository.BillDictionary;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class BillSpecification {
 
+    /**
+     * Predicates applied by {@link #filter} for each /search request parameter, in filter() order.
+     */
+    public static final Map<String, String> PREDICATES_BY_PARAMETER;
+
+    // Not a backslash, which MariaDB would also read as an escape inside the SQL string literal
+    private static final char LIKE_ESCAPE = '!';
+
+    static {
+        Map<String, String> predicates = new LinkedHashMap<>();
+        predicates.put("name", "hasName");
+        predicates.put("type", "hasType");
+        predicates.put("brand", "hasBrand");
+        predicates.put("priceMin", "priceGreaterThan");
+        predicates.put("priceMax", "priceLessThan");
+        predicates.put("dateFrom", "dateAfter");
+        predicates.put("dateTo", "dateBefore");
+        PREDICATES_BY_PARAMETER = Collections.unmodifiableMap(predicates);
+    }
+
     /**
      * Creates a case-insensitive substring filter for articleName.
+     * % and _ in the name are searched for literally, like the column store does.
      *
      * @param name the text to search for inside articleName (nullable)
      * @return a Specification filtering by articleName, or null if name is empty
@@ -18,33 +49,27 @@ public class BillSpecification {
         return (root, query, cb) ->
                 name == null || name.isBlank()
                         ? null
-                        : cb.like(cb.lower(root.get("articleName")),"%"+name.toLowerCase()+"%");
+                        : cb.like(cb.lower(root.get("articleName")),"%"+escapeLike(name.toLowerCase())+"%", LIKE_ESCAPE);
     }
 
     /**
-     * Creates a case-insensitive substring filter for articleType.
+     * Filters by articleType, on the ids of the article types the type filter matched in advance.
      *
-     * @param type the article type to match (nullable)
-     * @return a Specification filtering by articleType, or null if type is empty
+     * @param types article types to keep, see {@link BillDictionary.Lookup#containing} (nullable)
+     * @return a Specification filtering by articleType, or null if types are not provided
      */
-    public static Specification<Bill> hasType(String type) {
-        return (root, query, cb) ->
-                type == null || type.isBlank()
-        ? null :
-                cb.like(cb.lower(root.get("articleType")),"%"+type.toLowerCase()+"%");
+    public static Specification<Bill> hasType(List<String> types) {
+        return (root, query, cb) -> in(root.get("articleType"), types, cb);
     }
 
     /**
-     * Creates a case-insensitive substring filter for brandName.
+     * Filters by brandName, on the ids of the brands the brand filter matched in advance.
      *
-     * @param brand the brand text to search for (nullable)
-     * @return a Specification filtering by brandName, or null if brand is empty
+     * @param brands brand names to keep, see {@link BillDictionary.Lookup#containing} (nullable)
+     * @return a Specification filtering by brandName, or null if brands are not provided
      */
-    public static Specification<Bill> hasBrand(String brand) {
-        return (root, query, cb) ->
-                brand == null || brand.isBlank()
-                        ? null
-                        : cb.like(cb.lower(root.get("brandName")),"%"+brand.toLowerCase()+"%");
+    public static Specification<Bill> hasBrand(List<String> brands) {
+        return (root, query, cb) -> in(root.get("brandName"), brands, cb);
     }
 
     /**
@@ -98,4 +123,89 @@ public class BillSpecification {
                         ? null
                         : cb.lessThanOrEqualTo(root.get("billDate"), dateTo);
     }
+
+    /**
+     * Filters bills by a list of ids, found in advance by the substring index.
+     *
+     * @param ids ids of the bills to keep (nullable)
+     * @return a Specification selecting only the given ids, or null if ids are not provided
+     */
+    public static Specification<Bill> idIn(int[] ids) {
+        return (root, query, cb) -> {
+            if (ids == null) {
+                return null;
+            }
+            if (ids.length == 0) {
+                return cb.disjunction();
+            }
+            return root.get("id").in(Arrays.stream(ids).boxed().toList());
+        };
+    }
+
+    /**
+     * Keyset filter that selects bills placed after the cursor position
+     * when sorted by the cursor sort field and then by id.
+     *
+     * @param cursor position of the last bill on the previous page (nullable)
+     * @return a Specification selecting the following bills, or null if cursor is not provided
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Bill> after(BillCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return null;
+            }
+            Path<Comparable> key = root.get(cursor.sortBy());
+            Path<Integer> id = root.get("id");
+            Comparable value = cursor.key();
+            return cursor.direction().equalsIgnoreCase("desc")
+                    ? cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, cursor.id())))
+                    : cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, cursor.id())));
+        };
+    }
+
+    /**
+     * Combines all optional search filters into a single Specification.
+     * Filters with null or blank values are skipped.
+     *
+     * @param name     article name filter (nullable)
+     * @param types    article types matched by the type filter (nullable)
+     * @param brands   brand names matched by the brand filter (nullable)
+     * @param priceMin minimum price (nullable)
+     * @param priceMax maximum price (nullable)
+     * @param dateFrom start date (nullable)
+     * @param dateTo   end date (nullable)
+     * @return a Specification combining all provided filters
+     */
+    public static Specification<Bill> filter(String name,
+                                             List<String> types,
+                                             List<String> brands,
+                                             BigDecimal priceMin,
+                                             BigDecimal priceMax,
+                                             LocalDate dateFrom,
+                                             LocalDate dateTo) {
+        return Specification
+                .where(hasName(name))
+                .and(hasType(types))
+                .and(hasBrand(brands))
+                .and(priceGreaterThan(priceMin))
+                .and(priceLessThan(priceMax))
+                .and(dateAfter(dateFrom))
+                .and(dateBefore(dateTo));
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // The values are converted to their dictionary ids, so the database compares integers
+    private static Predicate in(Path<String> path, List<String> values, CriteriaBuilder cb) {
+        if (values == null) {
+            return null;
+        }
+        if (values.isEmpty()) {
+            return cb.disjunction();
+        }
+        return path.in(values);
+    }
 }
@@ -0,0 +1,2 @@
+CREATE INDEX idx_bill_date ON bill (bill_date, id);
+CREATE INDEX idx_article_price ON bill (article_price, id);
@@ -0,0 +1,16 @@
+-- Daily totals per article type and brand, kept up to date by the application.
+-- Missing type or brand is stored as '' because primary key columns can't be NULL.
+CREATE TABLE bill_daily_summary (
+                      bill_date DATE NOT NULL,
+                      article_type VARCHAR(255) NOT NULL DEFAULT '',
+                      brand_name VARCHAR(255) NOT NULL DEFAULT '',
+                      total_price DECIMAL(19, 2) NOT NULL,
+                      bill_count BIGINT NOT NULL,
+                      PRIMARY KEY (bill_date, article_type, brand_name) USING BTREE,
+                      INDEX idx_summary_type_date (article_type, bill_date)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC;
+
+INSERT INTO bill_daily_summary (bill_date, article_type, brand_name, total_price, bill_count)
+SELECT bill_date, COALESCE(article_type, ''), COALESCE(brand_name, ''), SUM(article_price), COUNT(*)
+FROM bill
+GROUP BY bill_date, COALESCE(article_type, ''), COALESCE(brand_name, '');
@@ -0,0 +1,22 @@
+-- Partitions bill by bill_date year, so date-bounded queries read only the matching partitions.
+-- Every unique key of a partitioned table must contain the partitioning column,
+-- so the primary key becomes (id, bill_date). AUTO_INCREMENT still keeps id unique.
+-- Years before p_archive's bound are merged into p_archive by BillArchiver,
+-- which also adds a partition for every new year before p_future has to take its bills.
+ALTER TABLE bill DROP PRIMARY KEY, ADD PRIMARY KEY (id, bill_date) USING BTREE;
+
+-- InnoDB compresses whole tables only, pages are compressed when flushed, not on the request path
+ALTER TABLE bill PAGE_COMPRESSED = 1;
+
+ALTER TABLE bill PARTITION BY RANGE COLUMNS (bill_date) (
+    PARTITION p_archive VALUES LESS THAN ('2020-01-01'),
+    PARTITION p2020 VALUES LESS THAN ('2021-01-01'),
+    PARTITION p2021 VALUES LESS THAN ('2022-01-01'),
+    PARTITION p2022 VALUES LESS THAN ('2023-01-01'),
+    PARTITION p2023 VALUES LESS THAN ('2024-01-01'),
+    PARTITION p2024 VALUES LESS THAN ('2025-01-01'),
+    PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+    PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+    PARTITION p2027 VALUES LESS THAN ('2028-01-01'),
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
@@ -0,0 +1,55 @@
+-- Moves article types and brands into lookup tables, bills and the daily summary keep their integer ids.
+-- Names are unique under the table collation, so spellings that differ only in case or accents,
+-- which filters and groups already treated as equal, share one id and read back as one spelling.
+-- Partitioned InnoDB tables can't have foreign keys, so bill references the lookups by indexed ids only.
+CREATE TABLE article_type (
+                      id INT NOT NULL AUTO_INCREMENT,
+                      name VARCHAR(255) NOT NULL,
+                      PRIMARY KEY (id) USING BTREE,
+                      UNIQUE INDEX uq_article_type_name (name)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC;
+
+CREATE TABLE brand (
+                      id INT NOT NULL AUTO_INCREMENT,
+                      name VARCHAR(255) NOT NULL,
+                      PRIMARY KEY (id) USING BTREE,
+                      UNIQUE INDEX uq_brand_name (name)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC;
+
+INSERT IGNORE INTO article_type (name)
+SELECT DISTINCT article_type FROM bill WHERE article_type IS NOT NULL ORDER BY article_type;
+
+INSERT IGNORE INTO brand (name)
+SELECT DISTINCT brand_name FROM bill WHERE brand_name IS NOT NULL ORDER BY brand_name;
+
+ALTER TABLE bill
+    ADD COLUMN article_type_id INT NULL AFTER article_type,
+    ADD COLUMN brand_id INT NULL AFTER brand_name;
+
+UPDATE bill b JOIN article_type t ON t.name = b.article_type SET b.article_type_id = t.id;
+UPDATE bill b JOIN brand r ON r.name = b.brand_name SET b.brand_id = r.id;
+
+ALTER TABLE bill
+    DROP INDEX idx_brand_name,
+    DROP COLUMN article_type,
+    DROP COLUMN brand_name,
+    ADD INDEX idx_article_type (article_type_id, bill_date),
+    ADD INDEX idx_brand (brand_id, bill_date);
+
+-- Missing type or brand is stored as 0 because primary key columns can't be NULL, lookup ids start at 1
+DROP TABLE bill_daily_summary;
+
+CREATE TABLE bill_daily_summary (
+                      bill_date DATE NOT NULL,
+                      article_type_id INT NOT NULL DEFAULT 0,
+                      brand_id INT NOT NULL DEFAULT 0,
+                      total_price DECIMAL(19, 2) NOT NULL,
+                      bill_count BIGINT NOT NULL,
+                      PRIMARY KEY (bill_date, article_type_id, brand_id) USING BTREE,
+                      INDEX idx_summary_type_date (article_type_id, bill_date)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC;
+
+INSERT INTO bill_daily_summary (bill_date, article_type_id, brand_id, total_price, bill_count)
+SELECT bill_date, COALESCE(article_type_id, 0), COALESCE(brand_id, 0), SUM(article_price), COUNT(*)
+FROM bill
+GROUP BY bill_date, COALESCE(article_type_id, 0), COALESCE(brand_id, 0);
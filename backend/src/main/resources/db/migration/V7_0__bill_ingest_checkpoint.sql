@@ -0,0 +1,7 @@
+-- Last ingest log sequence saved to bill, per log directory (an instance can have its own log).
+-- Updated in the same transaction as the bills, so a replayed log never saves a record twice.
+CREATE TABLE bill_ingest_checkpoint (
+                      log_id CHAR(36) NOT NULL,
+                      flushed_sequence BIGINT NOT NULL,
+                      PRIMARY KEY (log_id) USING BTREE
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC;
@@ -0,0 +1,15 @@
+-- Closed years are moved out of bill into bill_archive by BillArchiver, so only the archive is compressed
+-- and inserts and updates of live bills don't pay for compression.
+-- The archive keeps the ids and columns of bill; it is not read by the application.
+ALTER TABLE bill PAGE_COMPRESSED = 0;
+
+CREATE TABLE bill_archive (
+                      id INT NOT NULL,
+                      bill_date DATE NOT NULL,
+                      article_name VARCHAR(255) NOT NULL,
+                      article_price DECIMAL(10, 2) NOT NULL,
+                      article_type_id INT NULL,
+                      brand_id INT NULL,
+                      PRIMARY KEY (id) USING BTREE,
+                      INDEX idx_bill_archive_date (bill_date)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC PAGE_COMPRESSED = 1;
@@ -0,0 +1,156 @@
+package com.example.Horacije.administration.controller;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillColumns;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.services.BillAggregateCache;
+import com.example.Horacije.administration.services.BillArchiver;
+import com.example.Horacije.administration.services.BillColumnStore;
+import com.example.Horacije.administration.services.BillDataVersion;
+import com.example.Horacije.administration.services.BillIngestLog;
+import com.example.Horacije.administration.services.BillLiveTotals;
+import com.example.Horacije.administration.services.BillServiceCrud;
+import com.example.Horacije.administration.services.BillServiceExport;
+import com.example.Horacije.administration.services.BillServiceFunctions;
+import com.example.Horacije.administration.services.BillServiceImport;
+import com.example.Horacije.administration.sharedTools.http.ConditionalRequestInterceptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BillControllerContentNegotiationTests {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final LocalDate START = LocalDate.of(2025, 3, 1);
+    private static final LocalDate END = LocalDate.of(2025, 3, 31);
+
+    private static final List<BillView> BILLS = List.of(
+            new BillView(1, START, "Mleko", new BigDecimal("129.99"), "Hrana", "Imlek"),
+            new BillView(2, null, "Hleb", new BigDecimal("75.00"), null, null));
+
+    private final BillServiceCrud billServiceCrud = mock(BillServiceCrud.class);
+    private final BillServiceFunctions billServiceFunctions = mock(BillServiceFunctions.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        BillController controller = new BillController(billServiceCrud, billServiceFunctions,
+                mock(BillServiceExport.class), mock(BillServiceImport.class), mock(BillIngestLog.class),
+                mock(BillColumnStore.class), mock(BillAggregateCache.class), mock(BillArchiver.class),
+                mock(BillLiveTotals.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .addInterceptors(new ConditionalRequestInterceptor(new BillDataVersion(), Duration.ofSeconds(5)))
+                .build();
+    }
+
+    @Test
+    void columnsHaveOneValuePerBillInEveryArray() {
+        BillColumns columns = BillColumns.of(BILLS);
+
+        assertEquals(2, columns.count());
+        assertArrayEquals(new int[]{1, 2}, columns.id());
+        assertArrayEquals(new String[]{"2025-03-01", null}, columns.billDate());
+        assertArrayEquals(new String[]{"Mleko", "Hleb"}, columns.articleName());
+        assertArrayEquals(new BigDecimal[]{new BigDecimal("129.99"), new BigDecimal("75.00")}, columns.articlePrice());
+        assertArrayEquals(new String[]{"Hrana", null}, columns.articleType());
+        assertArrayEquals(new String[]{"Imlek", null}, columns.brandName());
+    }
+
+    @Test
+    void readAllSendsColumnsForTheColumnarMediaType() throws Exception {
+        when(billServiceCrud.readAllBillsAsColumns()).thenReturn(ResponseEntity.ok(BillColumns.of(BILLS)));
+
+        mockMvc.perform(get("/api/v1/bill/read-all").accept(BillColumns.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(BillColumns.MEDIA_TYPE))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.bill_date[0]").value("2025-03-01"))
+                .andExpect(jsonPath("$.article_name[1]").value("Hleb"))
+                .andExpect(jsonPath("$.brand_name[1]").doesNotExist());
+    }
+
+    @Test
+    void readAllSendsBillsAsJsonByDefault() throws Exception {
+        Bill bill = new Bill();
+        bill.setId(1);
+        bill.setBillDate(START);
+        bill.setArticleName("Mleko");
+        bill.setArticlePrice(new BigDecimal("129.99"));
+        when(billServiceCrud.readAllBills()).thenReturn(ResponseEntity.ok(List.of(bill)));
+
+        mockMvc.perform(get("/api/v1/bill/read-all").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(jsonPath("$[0].article_name").value("Mleko"));
+    }
+
+    @Test
+    void readByDateRangeSendsColumnsForTheColumnarMediaType() throws Exception {
+        when(billServiceFunctions.findAllByBillDateBetweenAsColumns(START, END))
+                .thenReturn(ResponseEntity.ok(BillColumns.of(BILLS)));
+
+        mockMvc.perform(readByDateRange().accept(BillColumns.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(BillColumns.MEDIA_TYPE))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(jsonPath("$.id[1]").value(2))
+                .andExpect(jsonPath("$.article_price[0]").value(129.99));
+    }
+
+    @Test
+    void readByDateRangeSendsSmile() throws Exception {
+        when(billServiceFunctions.findAllByBillDateBetween(START, END)).thenReturn(ResponseEntity.ok(BILLS));
+
+        byte[] body = mockMvc.perform(readByDateRange().accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(BILLS, List.of(new SmileMapper().readValue(body, BillView[].class)));
+    }
+
+    @Test
+    void readByDateRangeSendsCbor() throws Exception {
+        when(billServiceFunctions.findAllByBillDateBetween(START, END)).thenReturn(ResponseEntity.ok(BILLS));
+
+        byte[] body = mockMvc.perform(readByDateRange().accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(BILLS, List.of(new CBORMapper().readValue(body, BillView[].class)));
+    }
+
+    private static MockHttpServletRequestBuilder readByDateRange() {
+        return get("/api/v1/bill/read-by-date-range")
+                .param("start_date", START.toString())
+                .param("end_date", END.toString());
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.Horacije.administration.controller;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.example.Horacije.administration.services.BillServiceCrud;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * End-to-end load test of the BillController endpoints.
+ * <p>
+ * Fills the database with {@link SyntheticBillGenerator} bills, then drives every endpoint in turn
+ * over HTTP with a fixed number of concurrent clients and prints throughput and p50/p99 latency.
+ * By default it starts an embedded MariaDB (MariaDB4j, no network or installed server needed),
+ * with {@code -Dhoracije.loadtest.embedded=false} it uses the MariaDB from application.properties
+ * and deletes the generated bills afterwards. Skipped unless started with
+ * <pre>
+ * mvn test -Dtest=BillControllerLoadHarness -Dhoracije.loadtest=true
+ *     [-Dhoracije.loadtest.rows=1000000] [-Dhoracije.loadtest.years=5] [-Dhoracije.loadtest.skew=1.0]
+ *     [-Dhoracije.loadtest.concurrency=16] [-Dhoracije.loadtest.duration=PT30S]
+ *     [-Dhoracije.loadtest.endpoints=search,sum] [-Dhoracije.loadtest.embedded=true]
+ * </pre>
+ * Any application property can be changed the same way, e.g. {@code -Dhoracije.column-store.enabled=false}
+ * (the column store needs roughly 100 bytes of heap per bill). /read-all and the /export endpoints
+ * without filters return the whole table and are left out, /read-by-bill-date expects one bill
+ * per date, and /delete and /import are not driven because they would change the data set.
+ */
+@EnabledIfSystemProperty(named = "horacije.loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BillControllerLoadHarness {
+
+    private static final boolean EMBEDDED = Boolean.parseBoolean(System.getProperty("horacije.loadtest.embedded", "true"));
+    private static final String DATABASE = "horacije";
+    private static final int CHUNK_SIZE = 10_000;
+
+    private static DB embeddedDb;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @DynamicPropertySource
+    static void embeddedDatabase(DynamicPropertyRegistry registry) throws Exception {
+        if (!EMBEDDED) {
+            return;
+        }
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        embeddedDb = DB.newEmbeddedDB(config.build());
+        embeddedDb.start();
+        embeddedDb.createDB(DATABASE);
+
+        String url = "jdbc:mariadb://localhost:" + embeddedDb.getConfiguration().getPort() + "/" + DATABASE;
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.flyway.url", () -> url);
+    }
+
+    @AfterAll
+    static void stopEmbeddedDatabase() throws Exception {
+        if (embeddedDb != null) {
+            embeddedDb.stop();
+        }
+    }
+
+    /**
+     * One endpoint with a request generator.
+     *
+     * @param name    name used in the report and in horacije.loadtest.endpoints
+     * @param method  HTTP method
+     * @param path    creates the path and query of a request
+     * @param body    creates the JSON body of a request, null for requests without a body
+     */
+    private record Scenario(String name, String method, Function<Random, String> path, Function<Random, String> body) {
+
+        static Scenario get(String name, Function<Random, String> path) {
+            return new Scenario(name, "GET", path, null);
+        }
+    }
+
+    private record Result(String name, long requests, long errors, double seconds, long[] latencies) {
+    }
+
+    @Test
+    void driveEndpoints() throws Exception {
+        int rows = Integer.getInteger("horacije.loadtest.rows", 1_000_000);
+        int years = Integer.getInteger("horacije.loadtest.years", 5);
+        double skew = Double.parseDouble(System.getProperty("horacije.loadtest.skew", "1.0"));
+        int concurrency = Integer.getInteger("horacije.loadtest.concurrency", 16);
+        Duration duration = Duration.parse(System.getProperty("horacije.loadtest.duration", "PT30S"));
+        String endpoints = System.getProperty("horacije.loadtest.endpoints", "");
+
+        SyntheticBillGenerator generator = new SyntheticBillGenerator(rows, years, 40, 2_000, 200, skew, 42);
+        try {
+            long start = System.nanoTime();
+            generator.generate(CHUNK_SIZE, billServiceCrud::insertBills);
+            System.out.printf("Generated %d bills in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+
+            // Only generated bills are read and updated, also when the database has other bills
+            Integer minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM bill WHERE brand_id IN (SELECT id FROM brand WHERE name LIKE ?)",
+                    Integer.class, SyntheticBillGenerator.BRAND_PREFIX + "%");
+            Integer maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM bill WHERE brand_id IN (SELECT id FROM brand WHERE name LIKE ?)",
+                    Integer.class, SyntheticBillGenerator.BRAND_PREFIX + "%");
+            List<Scenario> scenarios = scenarios(generator, minId, maxId);
+            if (!endpoints.isBlank()) {
+                Set<String> selected = Set.of(endpoints.split(","));
+                scenarios = scenarios.stream().filter(scenario -> selected.contains(scenario.name())).toList();
+            }
+
+            System.out.printf("%-24s %10s %8s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms");
+            for (Scenario scenario : scenarios) {
+                // Warm up JIT, pools and caches, then measure
+                run(scenario, concurrency, duration.dividedBy(6));
+                report(run(scenario, concurrency, duration));
+            }
+        } finally {
+            if (!EMBEDDED) {
+                jdbcTemplate.update("DELETE FROM bill WHERE brand_id IN (SELECT id FROM brand WHERE name LIKE ?)",
+                        SyntheticBillGenerator.BRAND_PREFIX + "%");
+                billServiceCrud.rebuildDailySummary();
+            }
+        }
+    }
+
+    private List<Scenario> scenarios(SyntheticBillGenerator generator, int minId, int maxId) {
+        List<String> types = generator.types();
+        List<String> brands = generator.brands();
+        LocalDate first = generator.firstDate();
+        int days = (int) (generator.lastDate().toEpochDay() - first.toEpochDay()) + 1;
+        // The rarest type, the frequent ones would return a large part of the table
+        String rareType = types.getLast();
+
+        Function<Random, LocalDate> anyDate = random -> first.plusDays(random.nextInt(days));
+        Function<Random, String> anyType = random -> generator.pick(types, random);
+        Function<Random, String> anyName = random -> generator.pick(generator.names(anyType.apply(random)), random);
+        Function<Random, String> anyBrand = random -> generator.pick(brands, random);
+        Function<Random, Integer> anyId = random -> minId + random.nextInt(maxId - minId + 1);
+
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(Scenario.get("read-by-id", random -> "/read-by-id/" + anyId.apply(random)));
+        scenarios.add(Scenario.get("read-by-article-name", random ->
+                "/read-by-article-name?article_name=" + encode(anyName.apply(random))));
+        scenarios.add(Scenario.get("read-by-article-type", random ->
+                "/read-by-article-type?article_type=" + encode(rareType)));
+        scenarios.add(Scenario.get("read-by-date-range", random -> {
+            LocalDate start = anyDate.apply(random);
+            return "/read-by-date-range?start_date=" + start + "&end_date=" + start.plusDays(1);
+        }));
+        scenarios.add(Scenario.get("sum-by-date-range", random -> {
+            LocalDate start = anyDate.apply(random);
+            return "/sum-by-date-range?start_date=" + start + "&end_date=" + start.plusYears(1);
+        }));
+        scenarios.add(Scenario.get("sum-by-article-name", random -> {
+            LocalDate start = anyDate.apply(random);
+            return "/sum-by-article-name?article_name=" + encode(anyName.apply(random))
+                    + "&start_date=" + start + "&end_date=" + start.plusMonths(3);
+        }));
+        scenarios.add(Scenario.get("sum-by-article-type", random -> {
+            LocalDate start = anyDate.apply(random);
+            return "/sum-by-article-type?article_type=" + encode(anyType.apply(random))
+                    + "&start_date=" + start + "&end_date=" + start.plusYears(1);
+        }));
+        scenarios.add(Scenario.get("search", random ->
+                "/search?name=" + encode(anyName.apply(random).split(" ")[0]) + "&page=" + random.nextInt(10) + "&size=20"));
+        scenarios.add(Scenario.get("search-cursor", random ->
+                "/search?mode=cursor&type=" + encode(anyType.apply(random)) + "&size=20"));
+        scenarios.add(Scenario.get("search-facets", random -> {
+            LocalDate start = anyDate.apply(random);
+            return "/search?mode=facets&dateFrom=" + start + "&dateTo=" + start.plusMonths(1) + "&size=20";
+        }));
+        scenarios.add(Scenario.get("sum", random ->
+                "/sum?brand=" + encode(anyBrand.apply(random)) + "&priceMin=" + random.nextInt(1_000)));
+        scenarios.add(Scenario.get("sum-by-period", random -> {
+            LocalDate start = anyDate.apply(random);
+            return "/sum-by-period?granularity=week&groupBy=type&dateFrom=" + start + "&dateTo=" + start.plusMonths(6);
+        }));
+        scenarios.add(Scenario.get("export-csv", random -> {
+            LocalDate date = anyDate.apply(random);
+            return "/export/csv?dateFrom=" + date + "&dateTo=" + date;
+        }));
+        scenarios.add(new Scenario("create", "POST", random -> "/create", random -> "[" + billJson(generator, random) + "]"));
+        scenarios.add(new Scenario("update", "PUT", random -> "/update/" + anyId.apply(random),
+                random -> billJson(generator, random)));
+        return scenarios;
+    }
+
+    private Result run(Scenario scenario, int concurrency, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService workers = Executors.newFixedThreadPool(concurrency)) {
+            List<Future<long[]>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(workers.submit(() -> drive(scenario, deadline)));
+            }
+
+            long errors = 0;
+            List<long[]> latencies = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                long[] worker = future.get();
+                // The last element is the error count of the worker
+                errors += worker[worker.length - 1];
+                latencies.add(Arrays.copyOf(worker, worker.length - 1));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            return new Result(scenario.name(), all.length, errors, seconds, all);
+        }
+    }
+
+    private long[] drive(Scenario scenario, long deadline) {
+        Random random = ThreadLocalRandom.current();
+        long[] latencies = new long[1024];
+        int count = 0;
+        long errors = 0;
+        while (System.nanoTime() < deadline) {
+            HttpRequest request = request(scenario, random);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 400) {
+                    errors++;
+                }
+            } catch (Exception e) {
+                errors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        long[] result = Arrays.copyOf(latencies, count + 1);
+        result[count] = errors;
+        return result;
+    }
+
+    private HttpRequest request(Scenario scenario, Random random) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/v1/bill" + scenario.path().apply(random)))
+                .timeout(Duration.ofSeconds(60));
+        if (scenario.body() == null) {
+            return builder.method(scenario.method(), HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return builder.header("Content-Type", "application/json")
+                .method(scenario.method(), HttpRequest.BodyPublishers.ofString(scenario.body().apply(random)))
+                .build();
+    }
+
+    private static void report(Result result) {
+        double p50 = percentile(result.latencies(), 0.50);
+        double p99 = percentile(result.latencies(), 0.99);
+        System.out.printf("%-24s %10d %8d %10.1f %10.2f %10.2f%n", result.name(), result.requests(), result.errors(),
+                result.requests() / result.seconds(), p50, p99);
+    }
+
+    // Nearest-rank percentile of sorted nanos, in milliseconds
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+
+    private static String billJson(SyntheticBillGenerator generator, Random random) {
+        String type = generator.pick(generator.types(), random);
+        LocalDate date = generator.lastDate().minusDays(random.nextInt(30));
+        return "{\"bill_date\":\"" + date + "\",\"article_name\":\"" + generator.pick(generator.names(type), random)
+                + "\",\"article_price\":" + (1 + random.nextInt(100_000)) / 100.0
+                + ",\"article_type\":\"" + type + "\",\"brand_name\":\"" + generator.pick(generator.brands(), random) + "\"}";
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
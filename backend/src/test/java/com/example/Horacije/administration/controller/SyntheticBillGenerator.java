@@ -0,0 +1,173 @@
+package com.example.Horacije.administration.controller;
+
+import com.example.Horacije.administration.model.Bill;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Generates realistic bills for load tests, deterministic for a given seed.
+ * <p>
+ * Article types, brands and article names follow Zipf distributions, so a few values are very
+ * frequent and most are rare, like in real shopping data. Dates span several years with more
+ * bills in later years, and prices are log-normal around a median that depends on the type.
+ */
+class SyntheticBillGenerator {
+
+    private static final String[] TYPE_WORDS = {"hrana", "piće", "higijena", "slatkiši", "duvan", "kućna hemija",
+            "odeća", "obuća", "kozmetika", "tehnika", "alat", "igračke", "knjige", "apoteka", "ostalo"};
+    private static final String[] NAME_WORDS = {"mleko", "hleb", "jogurt", "sir", "kafa", "čokolada", "sapun",
+            "šampon", "sok", "voda", "pivo", "keks", "jaja", "pasta", "pirinač", "brašno", "ulje", "šećer"};
+
+    static final String BRAND_PREFIX = "lt-";
+
+    private final int rows;
+    private final int years;
+    private final LocalDate firstDate;
+    private final String[] types;
+    private final String[] brands;
+    private final String[][] namesByType;
+    private final double[] typeCdf;
+    private final double[] brandCdf;
+    private final double[] nameCdf;
+    private final double[] typeMedianPrice;
+    private final double exponent;
+    private final long seed;
+    private final Map<Integer, double[]> cdfs = new ConcurrentHashMap<>();
+
+    /**
+     * @param rows     number of bills to generate
+     * @param years    number of years the bill dates span, ending with the current year
+     * @param types    number of article types
+     * @param brands   number of brands
+     * @param names    number of article names per type
+     * @param exponent Zipf exponent of types, brands and names (0 is uniform, 1 is typical skew)
+     * @param seed     random seed
+     */
+    SyntheticBillGenerator(int rows, int years, int types, int brands, int names, double exponent, long seed) {
+        this.rows = rows;
+        this.years = years;
+        this.firstDate = LocalDate.now().withDayOfYear(1).minusYears(years - 1);
+        this.exponent = exponent;
+        this.seed = seed;
+
+        Random random = new Random(seed);
+        this.types = new String[types];
+        this.typeMedianPrice = new double[types];
+        this.namesByType = new String[types][names];
+        for (int t = 0; t < types; t++) {
+            this.types[t] = TYPE_WORDS[t % TYPE_WORDS.length] + (t < TYPE_WORDS.length ? "" : " " + t);
+            // Medians between 50 and 20 000
+            this.typeMedianPrice[t] = 50 * Math.pow(400, random.nextDouble());
+            for (int n = 0; n < names; n++) {
+                namesByType[t][n] = NAME_WORDS[(t + n) % NAME_WORDS.length] + " " + this.types[t] + " " + n;
+            }
+        }
+        this.brands = new String[brands];
+        for (int b = 0; b < brands; b++) {
+            this.brands[b] = BRAND_PREFIX + NAME_WORDS[b % NAME_WORDS.length] + "-" + b;
+        }
+        this.typeCdf = zipfCdf(types, exponent);
+        this.brandCdf = zipfCdf(brands, exponent);
+        this.nameCdf = zipfCdf(names, exponent);
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    LocalDate firstDate() {
+        return firstDate;
+    }
+
+    LocalDate lastDate() {
+        return firstDate.plusYears(years).minusDays(1);
+    }
+
+    /**
+     * Article types ordered from the most to the least frequent.
+     */
+    List<String> types() {
+        return List.of(types);
+    }
+
+    List<String> brands() {
+        return List.of(brands);
+    }
+
+    /**
+     * Article names of a type ordered from the most to the least frequent.
+     */
+    List<String> names(String type) {
+        return List.of(namesByType[Arrays.asList(types).indexOf(type)]);
+    }
+
+    /**
+     * Picks a value the way the generator does, so frequent values are requested more often.
+     */
+    <T> T pick(List<T> values, Random random) {
+        return values.get(sample(cdfs.computeIfAbsent(values.size(), size -> zipfCdf(size, exponent)), random));
+    }
+
+    /**
+     * Generates all bills in chunks, never keeping more than one chunk in memory.
+     *
+     * @param chunkSize bills per chunk
+     * @param consumer  receives every chunk
+     */
+    void generate(int chunkSize, Consumer<List<Bill>> consumer) {
+        Random random = new Random(seed + 1);
+        int days = (int) (lastDate().toEpochDay() - firstDate.toEpochDay()) + 1;
+        List<Bill> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < rows; i++) {
+            int type = sample(typeCdf, random);
+            Bill bill = new Bill();
+            // Square root of a uniform value puts more bills in later days (linear growth)
+            bill.setBillDate(firstDate.plusDays((long) (Math.sqrt(random.nextDouble()) * days)));
+            bill.setArticleType(types[type]);
+            bill.setArticleName(namesByType[type][sample(nameCdf, random)]);
+            bill.setBrandName(brands[sample(brandCdf, random)]);
+            bill.setArticlePrice(price(typeMedianPrice[type], random));
+            chunk.add(bill);
+            if (chunk.size() == chunkSize) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    private static BigDecimal price(double median, Random random) {
+        double price = median * Math.exp(0.8 * random.nextGaussian());
+        price = Math.min(Math.max(price, 0.01), 99_999_999.99);
+        return BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cdf.length - 1);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.Horacije.administration.model;
+
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BillCursorTests {
+
+    @Test
+    void dateCursorSurvivesARoundTrip() {
+        BillCursor cursor = BillCursor.after(bill(42, LocalDate.of(2025, 3, 1), "129.99"), "billDate", "desc");
+
+        assertEquals(new BillCursor("billDate", "desc", LocalDate.of(2025, 3, 1), 42),
+                BillCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void priceCursorIsWrittenWithoutExponent() {
+        BillCursor cursor = BillCursor.after(bill(7, LocalDate.of(2025, 3, 1), "1E+2"), "articlePrice", "asc");
+
+        BillCursor decoded = BillCursor.decode(cursor.encode());
+
+        assertEquals(new BigDecimal("100"), decoded.key());
+        assertEquals(7, decoded.id());
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = BillCursor.after(bill(Integer.MAX_VALUE, LocalDate.of(2025, 3, 1), "-0.01"),
+                "articlePrice", "desc").encode();
+
+        assertFalse(encoded.contains("+") || encoded.contains("/") || encoded.contains("="), encoded);
+    }
+
+    @Test
+    void garbageIsAnInvalidCursor() {
+        for (String garbage : new String[]{"", "!!!", "not a cursor", "YWJj"}) {
+            CustomException exception = assertThrows(CustomException.class, () -> BillCursor.decode(garbage));
+            assertEquals("Invalid cursor", exception.getMessage());
+        }
+    }
+
+    @Test
+    void tamperedCursorIsInvalid() {
+        String[] tampered = {
+                "id|desc|5|5",
+                "billDate|desc|2025-02-30|5",
+                "billDate|desc|129.99|5",
+                "articlePrice|asc|2025-03-01|5",
+                "billDate|desc|2025-03-01|five",
+                "billDate|desc|2025-03-01",
+                "billDate|desc|2025-03-01|5|6",
+        };
+        for (String raw : tampered) {
+            assertThrows(CustomException.class, () -> BillCursor.decode(encode(raw)), raw);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Bill bill(int id, LocalDate billDate, String price) {
+        Bill bill = new Bill();
+        bill.setId(id);
+        bill.setBillDate(billDate);
+        bill.setArticleName("Mleko");
+        bill.setArticlePrice(new BigDecimal(price));
+        return bill;
+    }
+}
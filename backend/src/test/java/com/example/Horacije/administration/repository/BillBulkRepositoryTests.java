@@ -0,0 +1,107 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.sharedTools.datasource.MariaDbTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.example.Horacije.administration.repository.BillBulkRepository.ROWS_PER_STATEMENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The ids returned by the multi-row INSERT ... RETURNING must belong to the bills in the same order,
+ * also across statement boundaries.
+ */
+@MariaDbTest
+class BillBulkRepositoryTests {
+
+    @Autowired
+    private BillBulkRepository billBulkRepository;
+
+    @Autowired
+    private BillDictionary billDictionary;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyTable() {
+        jdbcTemplate.update("DELETE FROM bill");
+    }
+
+    @Test
+    void returnedIdsBelongToTheInsertedRowsInOrder() {
+        int[] sizes = {1, ROWS_PER_STATEMENT - 1, ROWS_PER_STATEMENT, ROWS_PER_STATEMENT + 1,
+                2 * ROWS_PER_STATEMENT, 2 * ROWS_PER_STATEMENT + 1};
+        for (int size : sizes) {
+            List<Bill> bills = bills(size);
+            billDictionary.register(bills);
+
+            transactionTemplate.executeWithoutResult(status -> billBulkRepository.insertAll(bills));
+
+            Map<Integer, Map<String, Object>> rows = jdbcTemplate.queryForList(
+                            "SELECT id, bill_date, article_name, article_price FROM bill WHERE article_name LIKE ?",
+                            "Artikal " + size + "-%").stream()
+                    .collect(Collectors.toMap(row -> ((Number) row.get("id")).intValue(), row -> row));
+            assertEquals(size, rows.size(), "rows inserted for " + size);
+            for (int i = 0; i < size; i++) {
+                Bill bill = bills.get(i);
+                Map<String, Object> row = rows.get(bill.getId());
+                assertEquals(bill.getArticleName(), row.get("article_name"), "bill " + i + " of " + size);
+                assertEquals(0, bill.getArticlePrice().compareTo((BigDecimal) row.get("article_price")));
+                if (i > 0) {
+                    assertTrue(bill.getId() > bills.get(i - 1).getId(), "ids follow the list order");
+                }
+            }
+        }
+    }
+
+    @Test
+    void deleteReturnsTheDeletedRowsAcrossStatements() {
+        List<Bill> bills = bills(ROWS_PER_STATEMENT + 1);
+        billDictionary.register(bills);
+        transactionTemplate.executeWithoutResult(status -> billBulkRepository.insertAll(bills));
+
+        List<Integer> ids = new ArrayList<>(bills.stream().map(Bill::getId).toList());
+        ids.add(Integer.MAX_VALUE);
+        List<Bill> deleted = transactionTemplate.execute(status -> billBulkRepository.deleteAllReturning(ids));
+
+        assertEquals(bills.size(), deleted.size());
+        Map<Integer, Bill> deletedById = deleted.stream().collect(Collectors.toMap(Bill::getId, bill -> bill));
+        for (Bill bill : bills) {
+            Bill row = deletedById.get(bill.getId());
+            assertEquals(bill.getArticleName(), row.getArticleName());
+            assertEquals(bill.getArticleType(), row.getArticleType());
+            assertEquals(bill.getBrandName(), row.getBrandName());
+        }
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bill", Integer.class));
+    }
+
+    private static List<Bill> bills(int count) {
+        List<Bill> bills = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Bill bill = new Bill();
+            bill.setBillDate(LocalDate.of(2025, 1, 1).plusDays(i % 365));
+            bill.setArticleName("Artikal " + count + "-" + i);
+            bill.setArticlePrice(BigDecimal.valueOf(i, 2));
+            bill.setArticleType(i % 3 == 0 ? null : "Hrana");
+            bill.setBrandName(i % 2 == 0 ? "Imlek" : null);
+            bills.add(bill);
+        }
+        return bills;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.services.BillServiceCrud;
+import com.example.Horacije.administration.services.BillServiceFunctions;
+import com.example.Horacije.administration.sharedTools.datasource.MariaDbTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the summary SQL on MariaDB: the rebuild must produce the same rows as the incremental updates,
+ * and bills changed outside of the application must show up in every sum after a rebuild.
+ */
+@MariaDbTest
+class BillDailySummaryRepositoryTests {
+
+    private static final LocalDate MARCH_FIRST = LocalDate.of(2025, 3, 1);
+    private static final LocalDate MARCH_LAST = LocalDate.of(2025, 3, 31);
+    private static final String SUMMARY = """
+            SELECT bill_date, article_type_id, brand_id, total_price, bill_count
+            FROM bill_daily_summary
+            ORDER BY bill_date, article_type_id, brand_id""";
+
+    @Autowired
+    private BillDailySummaryRepository billDailySummaryRepository;
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private BillServiceFunctions billServiceFunctions;
+
+    @Autowired
+    private BillDictionary billDictionary;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyTables() {
+        jdbcTemplate.update("DELETE FROM bill");
+        billServiceCrud.rebuildDailySummary();
+    }
+
+    @Test
+    void rebuildGroupsBillsByDayTypeAndBrand() {
+        billDictionary.register("Hrana", "Imlek");
+        int hrana = billDictionary.articleTypes().idOf("Hrana");
+        int imlek = billDictionary.brands().idOf("Imlek");
+        insertOutsideTheApplication(MARCH_FIRST, "Mleko", "129.99", hrana, imlek);
+        insertOutsideTheApplication(MARCH_FIRST, "Mleko", "10.01", hrana, imlek);
+        insertOutsideTheApplication(MARCH_FIRST, "Hleb", "75.00", hrana, null);
+        insertOutsideTheApplication(MARCH_FIRST, "Kokos", "-5.00", null, null);
+        insertOutsideTheApplication(MARCH_LAST, "Mleko", "129.99", hrana, imlek);
+        // A stale row the rebuild has to remove
+        jdbcTemplate.update("INSERT INTO bill_daily_summary (bill_date, article_type_id, brand_id, total_price, bill_count) "
+                + "VALUES ('2020-01-01', 0, 0, 1.00, 1)");
+
+        Integer rows = transactionTemplate.execute(status -> billDailySummaryRepository.rebuild());
+
+        assertEquals(4, rows);
+        List<Map<String, Object>> summary = jdbcTemplate.queryForList(SUMMARY);
+        assertEquals(4, summary.size());
+        assertRow(summary.get(0), MARCH_FIRST, 0, 0, "-5.00", 1);
+        assertRow(summary.get(1), MARCH_FIRST, hrana, 0, "75.00", 1);
+        assertRow(summary.get(2), MARCH_FIRST, hrana, imlek, "140.00", 2);
+        assertRow(summary.get(3), MARCH_LAST, hrana, imlek, "129.99", 1);
+        assertEquals(new BigDecimal("339.99"), billDailySummaryRepository.sumByDateRange(MARCH_FIRST, MARCH_LAST));
+        assertEquals(new BigDecimal("344.99"),
+                billDailySummaryRepository.sumByArticleTypeAndDateRange("HRANA", MARCH_FIRST, MARCH_LAST));
+    }
+
+    @Test
+    void rebuildMatchesTheIncrementalSummary() {
+        billServiceCrud.createBill(List.of(
+                bill(MARCH_FIRST, "Mleko", "129.99", "Hrana", "Imlek"),
+                bill(MARCH_FIRST, "Mleko", "10.005", "Hrana", "Imlek"),
+                bill(MARCH_LAST, "Hleb", "75.00", null, "Bambi"),
+                bill(MARCH_LAST, "Sok", "90.00", "Piće", null)));
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM bill ORDER BY id", Integer.class);
+        billServiceCrud.update(ids.get(0), bill(MARCH_LAST, "Mleko", "100.00", "Piće", null));
+        billServiceCrud.deleteBills(List.of(ids.get(2)));
+        List<Map<String, Object>> incremental = jdbcTemplate.queryForList(SUMMARY);
+
+        transactionTemplate.execute(status -> billDailySummaryRepository.rebuild());
+
+        assertEquals(incremental, jdbcTemplate.queryForList(SUMMARY));
+    }
+
+    @Test
+    void rebuildMakesBillsChangedOutsideTheApplicationVisibleToTheSums() {
+        billServiceCrud.createBill(List.of(bill(MARCH_FIRST, "Mleko", "129.99", "Hrana", null)));
+        // Cached by the aggregate cache and answered by the column store
+        assertEquals(new BigDecimal("129.99"),
+                billServiceFunctions.sumArticlePriceByDateRange(MARCH_FIRST, MARCH_LAST).getBody());
+
+        insertOutsideTheApplication(MARCH_LAST, "Hleb", "75.00", null, null);
+        billServiceCrud.rebuildDailySummary();
+
+        assertEquals(new BigDecimal("204.99"),
+                billServiceFunctions.sumArticlePriceByDateRange(MARCH_FIRST, MARCH_LAST).getBody());
+        assertEquals(new BigDecimal("204.99"),
+                billServiceFunctions.sumFilteredBills(null, null, null, null, null, MARCH_FIRST, MARCH_LAST).getBody());
+    }
+
+    private void insertOutsideTheApplication(LocalDate billDate, String articleName, String price,
+                                             Integer articleTypeId, Integer brandId) {
+        jdbcTemplate.update("INSERT INTO bill (bill_date, article_name, article_price, article_type_id, brand_id) "
+                + "VALUES (?, ?, ?, ?, ?)", billDate, articleName, new BigDecimal(price), articleTypeId, brandId);
+    }
+
+    private static void assertRow(Map<String, Object> row, LocalDate billDate, int articleTypeId, int brandId,
+                                  String totalPrice, long billCount) {
+        assertEquals(billDate, ((Date) row.get("bill_date")).toLocalDate(), row.toString());
+        assertEquals(articleTypeId, ((Number) row.get("article_type_id")).intValue(), row.toString());
+        assertEquals(brandId, ((Number) row.get("brand_id")).intValue(), row.toString());
+        assertEquals(0, new BigDecimal(totalPrice).compareTo((BigDecimal) row.get("total_price")), row.toString());
+        assertEquals(billCount, ((Number) row.get("bill_count")).longValue(), row.toString());
+    }
+
+    private static Bill bill(LocalDate billDate, String articleName, String price, String articleType, String brandName) {
+        Bill bill = new Bill();
+        bill.setBillDate(billDate);
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal(price));
+        bill.setArticleType(articleType);
+        bill.setBrandName(brandName);
+        return bill;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.Horacije.administration.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BillDictionaryTests {
+
+    private BillDictionary billDictionary;
+
+    @BeforeEach
+    void loadArticleTypes() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getInt("id")).thenReturn(1, 2, 3);
+            when(rs.getString("name")).thenReturn("Piće", "Hrana", "Slatkiši");
+            for (int i = 0; i < 3; i++) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT id, name FROM article_type"), any(RowCallbackHandler.class));
+
+        billDictionary = new BillDictionary(jdbcTemplate);
+        billDictionary.afterSingletonsInstantiated();
+    }
+
+    @Test
+    void resolvesLoadedNamesAndIds() {
+        assertEquals(2, billDictionary.articleTypes().idOf("Hrana"));
+        assertEquals("Slatkiši", billDictionary.articleTypes().nameOf(3));
+        assertNull(billDictionary.articleTypes().idOf(null));
+        assertNull(billDictionary.articleTypes().nameOf(null));
+    }
+
+    @Test
+    void containingIgnoresCaseAndAccents() {
+        assertEquals(List.of("Piće"), billDictionary.articleTypes().containing("PICE"));
+        assertEquals(List.of(), billDictionary.articleTypes().containing("duvan"));
+        assertNull(billDictionary.articleTypes().containing(" "));
+    }
+
+    @Test
+    void unknownNamesAreRejectedForWrites() {
+        assertEquals(BillDictionary.UNKNOWN_ID, billDictionary.articleTypes().idOf("duvan"));
+        assertThrows(IllegalStateException.class, () -> billDictionary.articleTypes().requireId("duvan"));
+        assertThrows(IllegalStateException.class,
+                () -> new ArticleTypeConverter(billDictionary).convertToDatabaseColumn("duvan"));
+        assertEquals(2, new ArticleTypeConverter(billDictionary).convertToDatabaseColumn("Hrana"));
+    }
+
+    @Test
+    void containingLoadsNamesAddedByOtherInstances() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM article_type", Integer.class)).thenReturn(1, 2);
+        List<List<String>> loads = List.of(List.of("Hrana"), List.of("Hrana", "Duvan"));
+        int[] load = {0};
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            List<String> names = loads.get(load[0]++);
+            for (int i = 0; i < names.size(); i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt("id")).thenReturn(i + 1);
+                when(rs.getString("name")).thenReturn(names.get(i));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT id, name FROM article_type"), any(RowCallbackHandler.class));
+        BillDictionary dictionary = new BillDictionary(jdbcTemplate);
+        dictionary.afterSingletonsInstantiated();
+
+        assertEquals(List.of(), dictionary.articleTypes().containing("duv"));
+        assertEquals(List.of("Duvan"), dictionary.articleTypes().containing("duv"));
+    }
+}
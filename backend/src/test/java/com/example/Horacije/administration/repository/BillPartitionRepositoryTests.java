@@ -0,0 +1,119 @@
+package com.example.Horacije.administration.repository;
+
+import com.example.Horacije.administration.sharedTools.datasource.MariaDbTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the partition statements of the archiver on MariaDB: bills of archived years leave the uncompressed
+ * bill table for the compressed archive table, and new years are split off the future partition with their bills.
+ */
+@MariaDbTest
+class BillPartitionRepositoryTests {
+
+    private static final String BILLS =
+            "SELECT id, bill_date, article_name, article_price, article_type_id, brand_id FROM ";
+
+    @Autowired
+    private BillPartitionRepository billPartitionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyTables() {
+        jdbcTemplate.update("DELETE FROM bill");
+        jdbcTemplate.update("DELETE FROM bill_archive");
+    }
+
+    @Test
+    void onlyTheArchiveTableIsCompressed() {
+        assertFalse(pageCompressed("bill"));
+        assertTrue(pageCompressed("bill_archive"));
+    }
+
+    @Test
+    void billsOfAPartitionAreMovedToTheArchiveTable() {
+        String year = firstYearPartition();
+        int archivedYear = Integer.parseInt(year.substring(1));
+        insert(LocalDate.of(archivedYear, 1, 1), "Mleko", "129.99", 1, 2);
+        insert(LocalDate.of(archivedYear, 12, 31), "Hleb", "75.00", null, null);
+        insert(LocalDate.of(archivedYear + 1, 1, 1), "Sok", "90.00", null, 2);
+        List<Map<String, Object>> moving = jdbcTemplate.queryForList(
+                BILLS + "bill WHERE bill_date < ? ORDER BY id", LocalDate.of(archivedYear + 1, 1, 1));
+
+        Integer moved = transactionTemplate.execute(status -> billPartitionRepository.moveToArchiveTable(year));
+
+        assertEquals(2, moved);
+        assertEquals(moving, jdbcTemplate.queryForList(BILLS + "bill_archive ORDER BY id"));
+        assertEquals(List.of("Sok"), jdbcTemplate.queryForList("SELECT article_name FROM bill", String.class));
+        assertEquals(0, transactionTemplate.execute(status -> billPartitionRepository.moveToArchiveTable(year)));
+    }
+
+    @Test
+    void emptiedYearIsMergedIntoTheArchivePartition() {
+        String year = firstYearPartition();
+        int archivedYear = Integer.parseInt(year.substring(1));
+        insert(LocalDate.of(archivedYear, 6, 1), "Mleko", "129.99", null, null);
+        transactionTemplate.execute(status -> billPartitionRepository.moveToArchiveTable(year));
+
+        billPartitionRepository.archive(List.of(year), archivedYear + 1);
+
+        assertFalse(billPartitionRepository.findPartitionNames().contains(year));
+        // A bill written later with an archived date lands in the archive partition, the next run moves it
+        insert(LocalDate.of(archivedYear, 6, 2), "Hleb", "75.00", null, null);
+        assertEquals(1, countIn(BillPartitionRepository.ARCHIVE));
+    }
+
+    @Test
+    void newYearTakesItsBillsFromTheFuturePartition() {
+        List<String> partitions = billPartitionRepository.findPartitionNames();
+        int nextYear = Integer.parseInt(partitions.get(partitions.size() - 2).substring(1)) + 1;
+        insert(LocalDate.of(nextYear, 5, 1), "Mleko", "129.99", null, null);
+        insert(LocalDate.of(nextYear + 1, 5, 1), "Hleb", "75.00", null, null);
+        assertEquals(2, countIn(BillPartitionRepository.FUTURE));
+
+        billPartitionRepository.addYear(nextYear);
+
+        assertEquals(1, countIn("p" + nextYear));
+        assertEquals(1, countIn(BillPartitionRepository.FUTURE));
+        List<String> added = billPartitionRepository.findPartitionNames();
+        assertEquals(List.of("p" + nextYear, BillPartitionRepository.FUTURE),
+                added.subList(added.size() - 2, added.size()));
+    }
+
+    private String firstYearPartition() {
+        List<String> partitions = billPartitionRepository.findPartitionNames();
+        assertEquals(BillPartitionRepository.ARCHIVE, partitions.getFirst());
+        return partitions.get(1);
+    }
+
+    private void insert(LocalDate billDate, String articleName, String price, Integer articleTypeId, Integer brandId) {
+        jdbcTemplate.update("INSERT INTO bill (bill_date, article_name, article_price, article_type_id, brand_id) "
+                + "VALUES (?, ?, ?, ?, ?)", billDate, articleName, new BigDecimal(price), articleTypeId, brandId);
+    }
+
+    private int countIn(String partition) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bill PARTITION (" + partition + ")", Integer.class);
+    }
+
+    private boolean pageCompressed(String table) {
+        String create = jdbcTemplate.queryForObject("SHOW CREATE TABLE " + table, (rs, row) -> rs.getString(2));
+        return create.toUpperCase().replaceAll("[`'\" ]", "").matches("(?s).*PAGE_COMPRESSED=(1|ON|YES).*");
+    }
+}
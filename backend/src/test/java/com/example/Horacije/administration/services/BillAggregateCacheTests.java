@@ -0,0 +1,64 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BillAggregateCacheTests {
+
+    private final BillAggregateCache cache = new BillAggregateCache(true, 100, Duration.ofMinutes(5));
+
+    @Test
+    void writeEvictsOnlyTheKeysThatMayIncludeTheChangedBill() {
+        BillAggregateCache.Key milk = BillAggregateCache.Key.filtered(
+                "mleko", null, null, null, null, null, null);
+        BillAggregateCache.Key bread = BillAggregateCache.Key.filtered(
+                "hleb", null, null, null, null, null, null);
+        BillAggregateCache.Key january = BillAggregateCache.Key.byDateRange(
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+        BillAggregateCache.Key march = BillAggregateCache.Key.byDateRange(
+                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31));
+        AtomicInteger loads = new AtomicInteger();
+        for (BillAggregateCache.Key key : List.of(milk, bread, january, march)) {
+            cache.get(key, () -> BigDecimal.valueOf(loads.incrementAndGet()));
+        }
+
+        cache.onBillsChanged(BillChangedEvent.inserted(List.of(bill("Mleko Imlek", LocalDate.of(2025, 3, 10)))));
+
+        assertEquals(2, cache.stats().size());
+        assertEquals(2, cache.stats().invalidations());
+        // Unrelated totals are still cached, the matching ones are calculated again
+        assertEquals(BigDecimal.valueOf(2), cache.get(bread, () -> BigDecimal.ZERO));
+        assertEquals(BigDecimal.valueOf(3), cache.get(january, () -> BigDecimal.ZERO));
+        assertEquals(BigDecimal.ZERO, cache.get(milk, () -> BigDecimal.ZERO));
+        assertEquals(BigDecimal.ZERO, cache.get(march, () -> BigDecimal.ZERO));
+    }
+
+    @Test
+    void deletedBillEvictsLikeAnAddedOne() {
+        BillAggregateCache.Key milk = BillAggregateCache.Key.byArticleName(
+                "Mleko", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
+        cache.get(milk, () -> BigDecimal.ONE);
+
+        cache.onBillsChanged(BillChangedEvent.deleted(bill("mleko", LocalDate.of(2025, 6, 1))));
+
+        assertEquals(0, cache.stats().size());
+    }
+
+    private static Bill bill(String articleName, LocalDate billDate) {
+        Bill bill = new Bill();
+        bill.setId(1);
+        bill.setBillDate(billDate);
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal("120.00"));
+        return bill;
+    }
+}
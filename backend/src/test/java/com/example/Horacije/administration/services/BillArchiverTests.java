@@ -0,0 +1,155 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.repository.BillPartitionRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class BillArchiverTests {
+
+    private static final List<String> PARTITIONS = List.of(
+            "p_archive", "p2020", "p2021", "p2022", "p2023", "p2024", "p2025", "p2026", "p2027", "p_future");
+
+    private final BillPartitionRepository billPartitionRepository = mock(BillPartitionRepository.class);
+    private final BillServiceCrud billServiceCrud = mock(BillServiceCrud.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final BillArchiver billArchiver = new BillArchiver(billPartitionRepository, billServiceCrud,
+            transactionTemplate, true, 2, 1);
+
+    @Test
+    void closedYearsAreArchivedAndNextYearIsAdded() {
+        BillArchiver.Plan plan = BillArchiver.plan(PARTITIONS, 2027, 2, 1);
+
+        assertEquals(List.of("p2020", "p2021", "p2022", "p2023", "p2024", "p2025"), plan.archive());
+        assertEquals(2026, plan.firstLiveYear());
+        assertEquals(List.of(2028), plan.add());
+    }
+
+    @Test
+    void upToDatePartitionsNeedNoChanges() {
+        List<String> partitions = List.of("p_archive", "p2025", "p2026", "p2027", "p_future");
+
+        assertTrue(BillArchiver.plan(partitions, 2026, 2, 1).isEmpty());
+    }
+
+    @Test
+    void missingYearsAreAddedAfterTheLastPartition() {
+        List<String> partitions = List.of("p_archive", "p2024", "p_future");
+
+        BillArchiver.Plan plan = BillArchiver.plan(partitions, 2026, 3, 2);
+
+        assertEquals(List.of(), plan.archive());
+        assertEquals(List.of(2025, 2026, 2027, 2028), plan.add());
+    }
+
+    @Test
+    void yearsMissingAfterALongGapAreAddedAndArchived() {
+        List<String> partitions = List.of("p_archive", "p2020", "p_future");
+
+        BillArchiver.Plan plan = BillArchiver.plan(partitions, 2030, 2, 1);
+
+        assertEquals(List.of(2021, 2022, 2023, 2024, 2025, 2026, 2027, 2028, 2029, 2030, 2031), plan.add());
+        assertEquals(List.of("p2020", "p2021", "p2022", "p2023", "p2024", "p2025", "p2026", "p2027", "p2028"),
+                plan.archive());
+        assertEquals(2029, plan.firstLiveYear());
+    }
+
+    @Test
+    void yearsAreAddedBeforeTheirBillsAreMovedAndTheyAreArchived() {
+        int currentYear = Year.now().getValue();
+        when(billPartitionRepository.findPartitionNames())
+                .thenReturn(List.of("p_archive", "p" + (currentYear - 3), "p_future"));
+        inTransaction();
+        when(billPartitionRepository.moveToArchiveTable("p" + (currentYear - 3))).thenReturn(5);
+
+        billArchiver.archive();
+
+        InOrder inOrder = inOrder(billPartitionRepository, transactionTemplate, billServiceCrud);
+        inOrder.verify(billPartitionRepository).addYear(currentYear - 2);
+        inOrder.verify(billPartitionRepository).addYear(currentYear - 1);
+        inOrder.verify(billPartitionRepository).addYear(currentYear);
+        inOrder.verify(billPartitionRepository).addYear(currentYear + 1);
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(billPartitionRepository).moveToArchiveTable("p_archive");
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(billPartitionRepository).moveToArchiveTable("p" + (currentYear - 3));
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(billPartitionRepository).moveToArchiveTable("p" + (currentYear - 2));
+        inOrder.verify(billPartitionRepository)
+                .archive(List.of("p" + (currentYear - 3), "p" + (currentYear - 2)), currentYear - 1);
+        // The moved bills leave the summary, the column store and the sketches
+        inOrder.verify(billServiceCrud).rebuildDailySummary();
+    }
+
+    @Test
+    void billsWrittenToTheArchivePartitionAreMovedWithoutReorganizing() {
+        int currentYear = Year.now().getValue();
+        when(billPartitionRepository.findPartitionNames())
+                .thenReturn(List.of("p_archive", "p" + (currentYear - 1), "p" + currentYear,
+                        "p" + (currentYear + 1), "p_future"));
+        inTransaction();
+        when(billPartitionRepository.moveToArchiveTable("p_archive")).thenReturn(1);
+
+        assertEquals("Moved 1 bills to the archive table, archived partitions [], added years []",
+                billArchiver.archive().getBody());
+        verify(billPartitionRepository, never()).archive(anyList(), anyInt());
+        verify(billServiceCrud).rebuildDailySummary();
+    }
+
+    @Test
+    void upToDatePartitionsWithoutBillsToMoveChangeNothing() {
+        int currentYear = Year.now().getValue();
+        when(billPartitionRepository.findPartitionNames())
+                .thenReturn(List.of("p_archive", "p" + (currentYear - 1), "p" + currentYear,
+                        "p" + (currentYear + 1), "p_future"));
+        inTransaction();
+
+        assertEquals("Bill partitions are up to date", billArchiver.archive().getBody());
+        verify(billPartitionRepository, never()).addYear(anyInt());
+        verify(billPartitionRepository, never()).archive(anyList(), anyInt());
+        verifyNoInteractions(billServiceCrud);
+    }
+
+    @Test
+    void failedMoveStopsBeforeThePartitionsAreMerged() {
+        int currentYear = Year.now().getValue();
+        when(billPartitionRepository.findPartitionNames())
+                .thenReturn(List.of("p_archive", "p" + (currentYear - 2), "p" + (currentYear - 1), "p" + currentYear,
+                        "p" + (currentYear + 1), "p_future"));
+        inTransaction();
+        when(billPartitionRepository.moveToArchiveTable("p" + (currentYear - 2)))
+                .thenThrow(new IllegalStateException("Partition had 3 bills, 2 were copied and 3 deleted"));
+
+        assertThrows(CustomException.class, billArchiver::archive);
+        verify(billPartitionRepository, never()).archive(anyList(), anyInt());
+        verifyNoInteractions(billServiceCrud);
+    }
+
+    @Test
+    void unpartitionedTableIsRejected() {
+        assertThrows(CustomException.class, () -> BillArchiver.plan(List.of(), 2026, 2, 1));
+    }
+
+    private void inTransaction() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.repository.BillDailySummaryRepository;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.datasource.MariaDbTest;
+import com.example.Horacije.administration.specification.BillSpecification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every sum of the column store must equal the SQL it replaces, on the same bills.
+ */
+@MariaDbTest
+class BillColumnStoreSqlTests {
+
+    private static final LocalDate MARCH_FIRST = LocalDate.of(2025, 3, 1);
+    private static final LocalDate MARCH_LAST = LocalDate.of(2025, 3, 31);
+
+    // All bills, March, inverted, empty, and a range that ends on the first day of a year partition
+    private static final LocalDate[][] RANGES = {
+            {null, null},
+            {MARCH_FIRST, MARCH_LAST},
+            {MARCH_LAST, MARCH_FIRST},
+            {LocalDate.of(2030, 1, 1), LocalDate.of(2030, 12, 31)},
+            {LocalDate.of(2024, 12, 31), LocalDate.of(2025, 1, 1)},
+    };
+    private static final String[] NAMES = {"Mleko", "MLEKO ", "mleko imlek", "Čokolada", "cokolada", "Nepostojeće"};
+    private static final String[] TYPES = {"Hrana", "HRANA", "pice", "Nepostojeći"};
+    // Name, type and brand substring filters, null is no filter
+    private static final String[][] TEXT_FILTERS = {
+            {null, null, null},
+            {"mleko", null, null},
+            {"ok", null, null},
+            {"COKOL", null, null},
+            {null, "a", null},
+            {null, "piće", null},
+            {null, null, "m"},
+            {"o", "hrana", "imlek"},
+            {"nema", null, null},
+    };
+    private static final BigDecimal[][] PRICE_FILTERS = {
+            {null, null},
+            {new BigDecimal("10.00"), new BigDecimal("150.00")},
+            {new BigDecimal("10.005"), null},
+            {null, BigDecimal.ZERO},
+            {new BigDecimal("150.00"), new BigDecimal("10.00")},
+    };
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private BillColumnStore billColumnStore;
+
+    @Autowired
+    private BillRepository billRepository;
+
+    @Autowired
+    private BillDailySummaryRepository billDailySummaryRepository;
+
+    @Autowired
+    private BillDictionary billDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyTable() {
+        jdbcTemplate.update("DELETE FROM bill");
+        billServiceCrud.rebuildDailySummary();
+    }
+
+    @Test
+    void sumsOfAddedBillsMatchSql() {
+        billServiceCrud.createBill(fixture());
+
+        assertSumsMatchSql();
+    }
+
+    @Test
+    void sumsOfReplacedAndDeletedBillsMatchSql() {
+        billServiceCrud.createBill(fixture());
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM bill ORDER BY id", Integer.class);
+
+        billServiceCrud.update(ids.get(0), bill("Mleko Imlek", "111.11", MARCH_LAST, "Piće", null));
+        billServiceCrud.update(ids.get(1), bill("Hleb", "10.00", LocalDate.of(2025, 1, 1), null, "Bambi"));
+        billServiceCrud.deleteBills(List.of(ids.get(2), ids.get(3)));
+        billServiceCrud.deleteBillsMatching("cokolada", null, null, null, null, null, null);
+
+        assertSumsMatchSql();
+    }
+
+    @Test
+    void sumsAfterAReloadDuringWritesMatchSql() throws Exception {
+        billServiceCrud.createBill(fixture());
+
+        CompletableFuture<Void> reload = CompletableFuture.runAsync(billColumnStore::reload);
+        for (int i = 0; i < 20; i++) {
+            billServiceCrud.createBill(List.of(bill("Mleko " + i, "1" + i + ".50", MARCH_FIRST.plusDays(i), "Hrana", null)));
+        }
+        reload.get(30, TimeUnit.SECONDS);
+
+        assertTrue(billColumnStore.isReady());
+        assertTrue(billColumnStore.checkConsistency().consistent());
+        assertSumsMatchSql();
+    }
+
+    @Test
+    void substringIndexFindsTheSameBillsAsLike() {
+        List<Bill> bills = new ArrayList<>(fixture());
+        bills.add(bill("mleko hleb", "50.00", MARCH_FIRST, "Hrana", "Imlek"));
+        bills.add(bill("Sok 50% jabuka", "90.00", MARCH_FIRST, "Piće", null));
+        bills.add(bill("Sok 500 jabuka", "90.00", MARCH_FIRST, "Piće", null));
+        bills.add(bill("Vino a_b", "700.00", MARCH_FIRST, "Piće", null));
+        bills.add(bill("Vino ab", "700.00", MARCH_FIRST, "Piće", null));
+        bills.add(bill("Hleb!", "60.00", MARCH_FIRST, null, "Bambi"));
+        billServiceCrud.createBill(bills);
+
+        // Under three characters, across words, case, accents, LIKE wildcards, and texts that match nothing
+        String[][] filters = {
+                {"a", null, null},
+                {"ko", null, null},
+                {"mle", null, null},
+                {"MLEKO", null, null},
+                {"čok", null, null},
+                {"COKOL", null, null},
+                {"o hl", null, null},
+                {"ko hleb", null, null},
+                {"mleko ", null, null},
+                {"50%", null, null},
+                {"%", null, null},
+                {"_", null, null},
+                {"a_b", null, null},
+                {"!", null, null},
+                {"nema", null, null},
+                {null, "a", null},
+                {null, "PIĆE", null},
+                {null, null, "m"},
+                {"o", "hrana", "imlek"},
+        };
+        for (String[] filter : filters) {
+            List<Integer> expected = billRepository.findAll(BillSpecification.filter(filter[0],
+                            billDictionary.articleTypes().containing(filter[1]),
+                            billDictionary.brands().containing(filter[2]), null, null, null, null)).stream()
+                    .map(Bill::getId)
+                    .sorted()
+                    .toList();
+
+            int[] found = billColumnStore.findIdsContaining(filter[0], filter[1], filter[2], 1_000);
+            assertEquals(expected, Arrays.stream(found).sorted().boxed().toList(), Arrays.toString(filter));
+            // One match over maxSubstringCandidates and the search is left to LIKE
+            if (!expected.isEmpty()) {
+                assertNull(billColumnStore.findIdsContaining(filter[0], filter[1], filter[2], expected.size() - 1),
+                        Arrays.toString(filter));
+            }
+        }
+    }
+
+    private void assertSumsMatchSql() {
+        for (LocalDate[] range : RANGES) {
+            LocalDate from = range[0];
+            LocalDate to = range[1];
+            String description = " from " + from + " to " + to;
+            assertEquals(sqlTotal(null, null, null, null, null, from, to),
+                    billColumnStore.sumByDateRange(from, to), "sumByDateRange" + description);
+
+            if (from != null) {
+                // The endpoints always have both dates, the fallbacks need them
+                assertEquals(billDailySummaryRepository.sumByDateRange(from, to),
+                        billColumnStore.sumByDateRange(from, to).sum(), "daily summary" + description);
+                for (String name : NAMES) {
+                    assertEquals(billRepository.sumByArticleNameAndBillDateBetween(name, from, to),
+                            billColumnStore.sumByArticleName(name, from, to).sum(),
+                            "sumByArticleName " + name + description);
+                }
+                for (String type : TYPES) {
+                    assertEquals(billDailySummaryRepository.sumByArticleTypeAndDateRange(type, from, to),
+                            billColumnStore.sumByArticleType(type, from, to).sum(),
+                            "sumByArticleType " + type + description);
+                }
+            }
+
+            for (String[] text : TEXT_FILTERS) {
+                for (BigDecimal[] price : PRICE_FILTERS) {
+                    assertEquals(sqlTotal(text[0], text[1], text[2], price[0], price[1], from, to),
+                            billColumnStore.sumFiltered(text[0], text[1], text[2], price[0], price[1], from, to),
+                            "sumFiltered " + Arrays.toString(text) + " " + Arrays.toString(price) + description);
+                }
+            }
+        }
+    }
+
+    private BillTotal sqlTotal(String name, String type, String brand,
+                               BigDecimal priceMin, BigDecimal priceMax, LocalDate dateFrom, LocalDate dateTo) {
+        return billRepository.sumBySpecification(BillSpecification.filter(name,
+                billDictionary.articleTypes().containing(type), billDictionary.brands().containing(brand),
+                priceMin, priceMax, dateFrom, dateTo));
+    }
+
+    // Spellings that the collation treats as equal, bills without type or brand, and prices that need rounding
+    private static List<Bill> fixture() {
+        List<Bill> bills = new ArrayList<>();
+        bills.add(bill("Mleko", "129.99", MARCH_FIRST, "Hrana", "Imlek"));
+        bills.add(bill("mleko", "10.00", MARCH_LAST, "HRANA", null));
+        bills.add(bill("Mleko Imlek", "150.00", MARCH_LAST, null, "imlek"));
+        bills.add(bill("Čokolada", "199.995", LocalDate.of(2025, 3, 15), "Slatkiši", "Bambi"));
+        bills.add(bill("cokolada", "10.005", LocalDate.of(2024, 12, 31), "Slatkiši", null));
+        bills.add(bill("Sok", "-20.00", LocalDate.of(2025, 1, 1), "Piće", "Fructal"));
+        bills.add(bill("Kokos", "0.01", LocalDate.of(2025, 4, 1), null, null));
+        return bills;
+    }
+
+    private static Bill bill(String articleName, String price, LocalDate billDate, String articleType, String brandName) {
+        Bill bill = new Bill();
+        bill.setBillDate(billDate);
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal(price));
+        bill.setArticleType(articleType);
+        bill.setBrandName(brandName);
+        return bill;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.helpers.Helpers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BillColumnStoreTests {
+
+    private static final LocalDate MARCH_FIRST = LocalDate.of(2025, 3, 1);
+    private static final LocalDate MARCH_LAST = LocalDate.of(2025, 3, 31);
+    private static final BillTotal NOTHING = new BillTotal(null, 0L);
+
+    // Stand-in for the bill table, the store is loaded from it
+    private final ConcurrentSkipListMap<Integer, Bill> table = new ConcurrentSkipListMap<>();
+    private final BillRepository billRepository = mock(BillRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private BillColumnStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(billRepository.findByIdGreaterThanOrderByIdAsc(anyInt(), any(Limit.class))).thenAnswer(invocation ->
+                table.tailMap(invocation.<Integer>getArgument(0), false).values().stream()
+                        .limit(invocation.<Limit>getArgument(1).max())
+                        .toList());
+        when(billRepository.sumBySpecification(isNull())).thenAnswer(invocation -> total(table.values()));
+        store = new BillColumnStore(billRepository, transactionTemplate);
+        ReflectionTestUtils.setField(store, "enabled", true);
+    }
+
+    @Test
+    void dateRangeIsInclusiveOnBothEnds() {
+        load(bill(1, "Mleko", "100.00", LocalDate.of(2025, 2, 28)),
+                bill(2, "Mleko", "110.00", MARCH_FIRST),
+                bill(3, "Hleb", "50.50", MARCH_LAST),
+                bill(4, "Hleb", "60.00", LocalDate.of(2025, 4, 1)));
+
+        assertEquals(new BillTotal(new BigDecimal("160.50"), 2L), store.sumByDateRange(MARCH_FIRST, MARCH_LAST));
+        assertEquals(new BillTotal(new BigDecimal("320.50"), 4L), store.sumByDateRange(null, null));
+        assertEquals(new BillTotal(new BigDecimal("210.00"), 2L), store.sumByDateRange(null, MARCH_FIRST));
+    }
+
+    @Test
+    void emptyAndInvertedRangesMatchNothing() {
+        load(bill(1, "Mleko", "100.00", MARCH_FIRST), bill(2, "Hleb", "50.00", MARCH_LAST));
+
+        assertEquals(NOTHING, store.sumByDateRange(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)));
+        assertEquals(NOTHING, store.sumByDateRange(MARCH_LAST, MARCH_FIRST));
+        assertEquals(NOTHING, store.sumByArticleName("Mleko", MARCH_LAST, MARCH_FIRST));
+        assertEquals(NOTHING, store.sumFiltered(null, null, null,
+                new BigDecimal("100.00"), new BigDecimal("50.00"), null, null));
+    }
+
+    @Test
+    void priceBoundsAreExclusiveAndComparedInCents() {
+        load(bill(1, "Mleko", "10.00", MARCH_FIRST),
+                bill(2, "Mleko", "10.01", MARCH_FIRST),
+                bill(3, "Mleko", "19.99", MARCH_FIRST),
+                bill(4, "Mleko", "20.00", MARCH_FIRST),
+                bill(5, "Povrat", "-5.00", MARCH_FIRST));
+
+        BillTotal between = new BillTotal(new BigDecimal("30.00"), 2L);
+        assertEquals(between, store.sumFiltered(null, null, null,
+                new BigDecimal("10.00"), new BigDecimal("20.00"), null, null));
+        // Bounds with more than two decimals: 10.005 < 10.01 and 19.99 < 19.995
+        assertEquals(between, store.sumFiltered(null, null, null,
+                new BigDecimal("10.005"), new BigDecimal("19.995"), null, null));
+        assertEquals(new BillTotal(new BigDecimal("-5.00"), 1L), store.sumFiltered(null, null, null,
+                null, BigDecimal.ZERO, null, null));
+        assertEquals(new BillTotal(new BigDecimal("55.00"), 5L), store.sumByDateRange(null, null));
+    }
+
+    @Test
+    void pricesAreRoundedToCentsLikeTheDecimalColumn() {
+        load(bill(1, "Mleko", "10.005", MARCH_FIRST), bill(2, "Mleko", "10.004", MARCH_FIRST));
+
+        assertEquals(new BillTotal(new BigDecimal("20.01"), 2L), store.sumByDateRange(null, null));
+    }
+
+    @Test
+    void replacedAndDeletedBillsChangeTheSums() {
+        load(bill(1, "Mleko", "100.00", MARCH_FIRST), bill(2, "Hleb", "50.00", MARCH_FIRST),
+                bill(3, "Voda", "30.00", MARCH_LAST));
+
+        store.onBillsChanged(new BillChangedEvent(
+                List.of(bill(1, "Mleko", "100.00", MARCH_FIRST)),
+                List.of(bill(1, "Mleko Imlek", "120.00", MARCH_LAST))));
+        store.onBillsChanged(BillChangedEvent.deleted(bill(2, "Hleb", "50.00", MARCH_FIRST)));
+        store.remove(99);
+
+        assertEquals(NOTHING, store.sumByDateRange(MARCH_FIRST, MARCH_FIRST));
+        assertEquals(new BillTotal(new BigDecimal("150.00"), 2L), store.sumByDateRange(MARCH_FIRST, MARCH_LAST));
+        assertEquals(NOTHING, store.sumByArticleName("Mleko", MARCH_FIRST, MARCH_LAST));
+        assertEquals(new BillTotal(new BigDecimal("120.00"), 1L),
+                store.sumByArticleName("Mleko Imlek", MARCH_FIRST, MARCH_LAST));
+        // The last row was moved into the hole of the deleted one and must still be found by id
+        store.remove(3);
+        assertEquals(new BillTotal(new BigDecimal("120.00"), 1L), store.sumByDateRange(null, null));
+    }
+
+    @Test
+    void billsWithoutTypeOrBrandNeverMatchATypeOrBrandFilter() {
+        Bill withoutTypeAndBrand = bill(1, "Mleko", "100.00", MARCH_FIRST);
+        Bill withTypeAndBrand = bill(2, "Mleko", "120.00", MARCH_FIRST);
+        withTypeAndBrand.setArticleType("Hrana");
+        withTypeAndBrand.setBrandName("Imlek");
+        load(withoutTypeAndBrand, withTypeAndBrand);
+
+        BillTotal typed = new BillTotal(new BigDecimal("120.00"), 1L);
+        assertEquals(typed, store.sumByArticleType("Hrana", MARCH_FIRST, MARCH_LAST));
+        assertEquals(typed, store.sumFiltered(null, "a", null, null, null, null, null));
+        assertEquals(typed, store.sumFiltered(null, null, "m", null, null, null, null));
+        // A blank filter is no filter
+        assertEquals(new BillTotal(new BigDecimal("220.00"), 2L),
+                store.sumFiltered("mleko", " ", "", null, null, null, null));
+    }
+
+    @Test
+    void textFiltersIgnoreCaseAccentsAndTrailingSpaces() {
+        Bill juice = bill(1, "Sok od jabuke", "150.00", MARCH_FIRST);
+        juice.setArticleType("Piće");
+        load(juice, bill(2, "Čokolada", "200.00", MARCH_FIRST));
+
+        assertEquals(new BillTotal(new BigDecimal("150.00"), 1L),
+                store.sumByArticleName("SOK OD JABUKE  ", MARCH_FIRST, MARCH_LAST));
+        assertEquals(new BillTotal(new BigDecimal("150.00"), 1L),
+                store.sumByArticleType("pice", MARCH_FIRST, MARCH_LAST));
+        assertEquals(new BillTotal(new BigDecimal("200.00"), 1L),
+                store.sumFiltered("cokol", null, null, null, null, null, null));
+        assertEquals(NOTHING, store.sumByArticleName("Sok", MARCH_FIRST, MARCH_LAST));
+    }
+
+    @Test
+    void writesDuringAReloadAreNotLost() throws Exception {
+        for (int id = 1; id <= 25_000; id++) {
+            table.put(id, bill(id, "Mleko " + id % 100, "1" + id % 1000 + ".25", MARCH_FIRST.plusDays(id % 31)));
+        }
+        // The second batch waits until the first write has changed the table, so the write overlaps the load
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            int after = invocation.getArgument(0);
+            if (after > 0) {
+                firstWrite.await(5, TimeUnit.SECONDS);
+            }
+            return table.tailMap(after, false).values().stream()
+                    .limit(invocation.<Limit>getArgument(1).max())
+                    .toList();
+        }).when(billRepository).findByIdGreaterThanOrderByIdAsc(anyInt(), any(Limit.class));
+
+        CompletableFuture<Void> reload = CompletableFuture.runAsync(store::reload);
+        // Like BillServiceCrud, every write commits to the table first and then reaches the store:
+        // new bills, replaced bills and deleted bills
+        for (int i = 1; i <= 300; i++) {
+            int id = i % 3 == 0 ? 25_000 + i : i % 3 == 1 ? i * 50 : i * 70;
+            Bill changed = i % 3 == 0 ? bill(id, "Hleb", "45.50", MARCH_LAST)
+                    : i % 3 == 1 ? bill(id, "Mleko", "99.99", MARCH_FIRST)
+                    : null;
+            if (changed != null) {
+                table.put(id, changed);
+            } else {
+                table.remove(id);
+            }
+            firstWrite.countDown();
+            if (changed != null) {
+                store.upsert(changed);
+            } else {
+                store.remove(id);
+            }
+        }
+        reload.get(10, TimeUnit.SECONDS);
+
+        assertTrue(store.isReady());
+        assertTrue(store.checkConsistency().consistent());
+        assertEquals(total(table.values().stream().filter(bill -> bill.getArticleName().startsWith("Hleb")).toList()),
+                store.sumFiltered("hleb", null, null, null, null, null, null));
+    }
+
+    @Test
+    void consistencyCheckFindsABillTheStoreMissed() {
+        load(bill(1, "Mleko", "100.00", MARCH_FIRST));
+        assertTrue(store.checkConsistency().consistent());
+
+        table.put(2, bill(2, "Hleb", "50.00", MARCH_FIRST));
+        BillColumnStore.ConsistencyReport report = store.checkConsistency();
+
+        assertFalse(report.consistent());
+        assertEquals(1, report.storeCount());
+        assertEquals(2, report.dbCount());
+    }
+
+    @Test
+    void substringSearchFindsTheSameBillsAsAScan() {
+        String[] names = {"Mleko", "mleko hleb", "Čokolada", "ČOKOLADNO mleko", "Sok 50% jabuka", "aaaa", "Kafa  dupla", "A"};
+        for (int i = 0; i < names.length; i++) {
+            table.put(i + 1, bill(i + 1, names[i], "10.00", MARCH_FIRST));
+        }
+        store.reload();
+        // Added after the load, so the trigrams come from upsert
+        Bill added = bill(100, "Jogurt čokoladni", "10.00", MARCH_FIRST);
+        table.put(100, added);
+        store.upsert(added);
+
+        // Under three characters, across words, case, accents, repeated trigrams, and texts that match nothing
+        String[] texts = {"a", "ko", "mle", "MLEKO", "čok", "cok", "o hl", "ko hleb", "50%", "aaa", "aaaaa",
+                "a  d", "kolad", "ladni", "xyz", "mlekoh"};
+        for (String text : texts) {
+            int[] expected = table.values().stream()
+                    .filter(bill -> Helpers.normalize(bill.getArticleName()).contains(Helpers.normalize(text)))
+                    .mapToInt(Bill::getId)
+                    .toArray();
+            int[] found = store.findIdsContaining(text, null, null, 1_000);
+            Arrays.sort(found);
+            assertArrayEquals(expected, found, text);
+        }
+    }
+
+    @Test
+    void substringSearchGivesUpWhenTooManyBillsMatch() {
+        load(bill(1, "Mleko", "10.00", MARCH_FIRST),
+                bill(2, "Mleko", "10.00", MARCH_FIRST),
+                bill(3, "Hleb", "10.00", MARCH_FIRST));
+
+        assertArrayEquals(new int[]{1, 2}, store.findIdsContaining("mleko", null, null, 2));
+        assertNull(store.findIdsContaining("mleko", null, null, 1));
+        assertArrayEquals(new int[0], store.findIdsContaining("kafa", null, null, 0));
+        // Without a text filter the ids wouldn't narrow the search
+        assertNull(store.findIdsContaining(null, " ", null, 10));
+        // Before the store is loaded the database has to search
+        assertNull(new BillColumnStore(billRepository, transactionTemplate).findIdsContaining("mleko", null, null, 10));
+    }
+
+    private void load(Bill... bills) {
+        for (Bill bill : bills) {
+            table.put(bill.getId(), bill);
+        }
+        store.reload();
+    }
+
+    // What SELECT SUM(article_price), COUNT(*) returns for the bills
+    private static BillTotal total(Collection<Bill> bills) {
+        BigDecimal sum = bills.stream()
+                .map(bill -> bill.getArticlePrice().setScale(2, RoundingMode.HALF_UP))
+                .reduce(BigDecimal::add)
+                .orElse(null);
+        return new BillTotal(sum, (long) bills.size());
+    }
+
+    private static Bill bill(int id, String articleName, String price, LocalDate billDate) {
+        Bill bill = new Bill();
+        bill.setId(id);
+        bill.setBillDate(billDate);
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal(price));
+        return bill;
+    }
+}
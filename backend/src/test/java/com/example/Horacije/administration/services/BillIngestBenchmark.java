@@ -0,0 +1,114 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.repository.BillRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the old JPA saveAll() insert path with the multi-row INSERT path.
+ * Needs the MariaDB from application.properties and is skipped unless started with
+ * <pre>
+ * mvn test -Dtest=BillIngestBenchmark -Dhoracije.benchmark=true [-Dhoracije.benchmark.rows=10000,100000,1000000]
+ * </pre>
+ * Both paths commit every {@code horacije.bulk-insert.chunk-size} bills,
+ * because a single persistence context with a million entities doesn't fit a default heap.
+ * Inserted bills are deleted after every run.
+ */
+@EnabledIfSystemProperty(named = "horacije.benchmark", matches = "true")
+@SpringBootTest(properties = "horacije.column-store.enabled=false")
+class BillIngestBenchmark {
+
+    private static final String ARTICLE_NAME = "ingest-benchmark";
+    private static final String[] TYPES = {"hrana", "piće", "duvan", "slatkiši", "higijena", "ostalo"};
+
+    @Autowired
+    private BillRepository billRepository;
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${horacije.bulk-insert.chunk-size:10000}")
+    private int chunkSize;
+
+    @AfterEach
+    void deleteBenchmarkBills() {
+        jdbcTemplate.update("DELETE FROM bill WHERE article_name = ?", ARTICLE_NAME);
+    }
+
+    @Test
+    void compareInsertPaths() {
+        int[] sizes = Arrays.stream(System.getProperty("horacije.benchmark.rows", "10000,100000,1000000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        // Warm up JIT, connection pool and statement caches
+        runSaveAll(generate(chunkSize));
+        runMultiRowInsert(generate(chunkSize));
+        deleteBenchmarkBills();
+
+        System.out.printf("%-12s %12s %12s %14s%n", "path", "rows", "millis", "rows/sec");
+        for (int rows : sizes) {
+            report("saveAll", rows, runSaveAll(generate(rows)));
+            deleteBenchmarkBills();
+            report("multi-row", rows, runMultiRowInsert(generate(rows)));
+            deleteBenchmarkBills();
+        }
+    }
+
+    private long runSaveAll(List<Bill> bills) {
+        long start = System.nanoTime();
+        for (int from = 0; from < bills.size(); from += chunkSize) {
+            List<Bill> chunk = bills.subList(from, Math.min(from + chunkSize, bills.size()));
+            transactionTemplate.executeWithoutResult(status -> billRepository.saveAll(chunk));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runMultiRowInsert(List<Bill> bills) {
+        long start = System.nanoTime();
+        billServiceCrud.createBillsInChunks(bills);
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String path, int rows, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-12s %12d %12d %14.0f%n", path, rows, nanos / 1_000_000, rows / seconds);
+    }
+
+    private static List<Bill> generate(int rows) {
+        Random random = new Random(rows);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Bill> bills = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Bill bill = new Bill();
+            bill.setBillDate(start.plusDays(random.nextInt(5 * 365)));
+            bill.setArticleName(ARTICLE_NAME);
+            bill.setArticlePrice(BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+            bill.setArticleType(TYPES[random.nextInt(TYPES.length)]);
+            bill.setBrandName("brand-" + random.nextInt(500));
+            bills.add(bill);
+        }
+        return bills;
+    }
+}
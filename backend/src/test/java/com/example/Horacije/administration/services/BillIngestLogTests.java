@@ -0,0 +1,184 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillIngestLogStatus;
+import com.example.Horacije.administration.repository.BillIngestCheckpointRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BillIngestLogTests {
+
+    @TempDir
+    Path directory;
+
+    private final BillServiceCrud billServiceCrud = mock(BillServiceCrud.class);
+    private final BillIngestCheckpointRepository checkpointRepository = mock(BillIngestCheckpointRepository.class);
+    private BillIngestLog billIngestLog;
+
+    @BeforeEach
+    void setUp() {
+        when(checkpointRepository.findFlushedSequence(anyString())).thenReturn(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        billIngestLog.close();
+    }
+
+    @Test
+    void ingestedBillsAreSavedInOneBatchWithTheCheckpoint() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(billServiceCrud).insertBills(any(), any());
+        billIngestLog = open();
+
+        assertEquals(1, billIngestLog.ingest(List.of(bill("Mleko"), bill("Hleb"))).getBody().sequence());
+        assertEquals(2, billIngestLog.ingest(List.of(bill("Voda"))).getBody().sequence());
+        billIngestLog.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Bill>> saved = ArgumentCaptor.forClass(List.class);
+        verify(billServiceCrud).insertBills(saved.capture(), any());
+        assertEquals(List.of("Mleko", "Hleb", "Voda"), saved.getValue().stream().map(Bill::getArticleName).toList());
+        verify(checkpointRepository).save(anyString(), eq(2L));
+
+        BillIngestLogStatus status = billIngestLog.status().getBody();
+        assertEquals(2, status.flushedSequence());
+        assertEquals(0, status.pendingRecords());
+        assertEquals(0, status.lagMillis());
+        assertNull(status.lastFailure());
+    }
+
+    @Test
+    void committedBatchIsNotSavedAgainWhenHandlingTheChangeFails() {
+        AtomicLong checkpoint = new AtomicLong();
+        doAnswer(invocation -> {
+            checkpoint.set(invocation.getArgument(1));
+            return null;
+        }).when(checkpointRepository).save(anyString(), anyLong());
+        when(checkpointRepository.findFlushedSequence(anyString())).thenAnswer(invocation -> checkpoint.get());
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            throw new IllegalStateException("Listener failed after commit");
+        }).when(billServiceCrud).insertBills(any(), any());
+        billIngestLog = open();
+
+        billIngestLog.ingest(List.of(bill("Mleko")));
+        billIngestLog.ingest(List.of(bill("Hleb")));
+        billIngestLog.flush();
+        billIngestLog.flush();
+
+        verify(billServiceCrud, times(1)).insertBills(any(), any());
+        BillIngestLogStatus status = billIngestLog.status().getBody();
+        assertEquals(2, status.flushedSequence());
+        assertEquals(0, status.pendingRecords());
+        assertEquals(0, status.pendingBills());
+    }
+
+    @Test
+    void ingestIsRejectedWhileTooManyBillsWaitToBeSaved() {
+        billIngestLog = open(2);
+        billIngestLog.ingest(List.of(bill("Mleko"), bill("Hleb")));
+
+        assertThrows(ServiceUnavailableException.class, () -> billIngestLog.ingest(List.of(bill("Voda"))));
+
+        billIngestLog.flush();
+        assertEquals(2, billIngestLog.ingest(List.of(bill("Voda"))).getBody().sequence());
+    }
+
+    @Test
+    void unsavedRecordsAreReplayedAfterRestart() {
+        billIngestLog = open();
+        billIngestLog.ingest(List.of(bill("Mleko")));
+        billIngestLog.ingest(List.of(bill("Hleb"), bill("Voda")));
+        billIngestLog.close();
+
+        when(checkpointRepository.findFlushedSequence(anyString())).thenReturn(1L);
+        billIngestLog = open();
+
+        BillIngestLogStatus status = billIngestLog.status().getBody();
+        assertEquals(1, status.pendingRecords());
+        assertEquals(2, status.pendingBills());
+        assertEquals(2, status.appendedSequence());
+        assertEquals(3, billIngestLog.ingest(List.of(bill("Sok"))).getBody().sequence());
+    }
+
+    @Test
+    void incompleteRecordEndsTheLog() throws Exception {
+        billIngestLog = open();
+        billIngestLog.ingest(List.of(bill("Mleko")));
+        billIngestLog.ingest(List.of(bill("Hleb")));
+        billIngestLog.close();
+
+        // Damage the last byte of the second record, as if the process died while writing it
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("segment-")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Every record has a 24 byte header that starts with the payload length
+            long second = 24 + file.readInt();
+            file.seek(second);
+            long end = second + 24 + file.readInt();
+            file.seek(end - 1);
+            int last = file.read();
+            file.seek(end - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        billIngestLog = open();
+
+        BillIngestLogStatus status = billIngestLog.status().getBody();
+        assertEquals(1, status.pendingRecords());
+        assertEquals(2, billIngestLog.ingest(List.of(bill("Sok"))).getBody().sequence());
+    }
+
+    private BillIngestLog open() {
+        return open(1_000_000);
+    }
+
+    private BillIngestLog open(long maxPendingBills) {
+        BillIngestLog ingestLog = new BillIngestLog(billServiceCrud, checkpointRepository, true, directory,
+                DataSize.ofKilobytes(64), 10_000, Duration.ofHours(1), maxPendingBills);
+        ingestLog.open();
+        return ingestLog;
+    }
+
+    private static Bill bill(String articleName) {
+        Bill bill = new Bill();
+        bill.setBillDate(LocalDate.of(2025, 3, 1));
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal("99.90"));
+        bill.setArticleType("Hrana");
+        return bill;
+    }
+}
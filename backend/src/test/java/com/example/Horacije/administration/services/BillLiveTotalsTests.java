@@ -0,0 +1,138 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.sharedTools.exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BillLiveTotalsTests {
+
+    private final BillServiceFunctions billServiceFunctions = mock(BillServiceFunctions.class);
+    private final List<BillTotal> sent = new CopyOnWriteArrayList<>();
+    private BillLiveTotals billLiveTotals;
+
+    @BeforeEach
+    void setUp() {
+        when(billServiceFunctions.totalFiltered(anyString(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull()))
+                .thenReturn(new BillTotal(new BigDecimal("100.00"), 1L), new BillTotal(new BigDecimal("250.00"), 2L));
+        billLiveTotals = new BillLiveTotals(billServiceFunctions, Duration.ofMinutes(1), 2) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                return new SseEmitter(timeoutMillis) {
+                    @Override
+                    public void send(SseEventBuilder builder) {
+                        builder.build().stream()
+                                .map(DataWithMediaType::getData)
+                                .filter(BillTotal.class::isInstance)
+                                .forEach(data -> sent.add((BillTotal) data));
+                    }
+                };
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        billLiveTotals.shutdown();
+    }
+
+    @Test
+    void subscriptionsWithTheSameFiltersShareOneTotal() {
+        billLiveTotals.subscribe("mleko", null, null, null, null, null, null);
+        billLiveTotals.subscribe("MLEKO", null, null, null, null, null, null);
+
+        assertEquals(2, billLiveTotals.subscriptionCount());
+        verify(billServiceFunctions, times(1)).totalFiltered(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void matchingWriteRecalculatesTheTotalOnceForAllSubscribers() throws InterruptedException {
+        billLiveTotals.subscribe("mleko", null, null, null, null, null, null);
+        billLiveTotals.subscribe("Mleko", null, null, null, null, null, null);
+        awaitSent(2);
+
+        billLiveTotals.changed(BillChangedEvent.inserted(List.of(bill("Mleko Imlek"))));
+
+        verify(billServiceFunctions, timeout(1000).times(2))
+                .totalFiltered(any(), any(), any(), any(), any(), any(), any());
+        awaitSent(4);
+        BillTotal first = new BillTotal(new BigDecimal("100.00"), 1L);
+        BillTotal second = new BillTotal(new BigDecimal("250.00"), 2L);
+        assertEquals(List.of(first, first, second, second), sent);
+    }
+
+    @Test
+    void unchangedTotalIsNotSentAgain() throws InterruptedException {
+        BillTotal total = new BillTotal(new BigDecimal("100.00"), 1L);
+        when(billServiceFunctions.totalFiltered(anyString(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull()))
+                .thenReturn(total);
+        billLiveTotals.subscribe("mleko", null, null, null, null, null, null);
+
+        // The write matches the filters, but the total stays the same
+        billLiveTotals.changed(BillChangedEvent.inserted(List.of(bill("Mleko Imlek"))));
+
+        verify(billServiceFunctions, timeout(1000).times(2))
+                .totalFiltered(any(), any(), any(), any(), any(), any(), any());
+        Thread.sleep(200);
+        assertEquals(List.of(total), sent);
+    }
+
+    @Test
+    void unrelatedWriteIsIgnored() {
+        billLiveTotals.subscribe("mleko", null, null, null, null, null, null);
+
+        billLiveTotals.changed(BillChangedEvent.inserted(List.of(bill("Hleb"))));
+
+        verify(billServiceFunctions, after(200).times(1))
+                .totalFiltered(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void subscriptionsAreLimited() {
+        billLiveTotals.subscribe("mleko", null, null, null, null, null, null);
+        billLiveTotals.subscribe("hleb", null, null, null, null, null, null);
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> billLiveTotals.subscribe("voda", null, null, null, null, null, null));
+        assertEquals(2, billLiveTotals.subscriptionCount());
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Bill bill(String articleName) {
+        Bill bill = new Bill();
+        bill.setId(1);
+        bill.setBillDate(LocalDate.of(2025, 3, 1));
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal("150.00"));
+        return bill;
+    }
+}
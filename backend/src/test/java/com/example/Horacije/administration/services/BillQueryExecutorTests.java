@@ -0,0 +1,74 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.sharedTools.exceptions.ServiceUnavailableException;
+import com.example.Horacije.administration.sharedTools.metrics.RequestMetricsFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class BillQueryExecutorTests {
+
+    private final BillQueryExecutor billQueryExecutor =
+            new BillQueryExecutor(mock(PlatformTransactionManager.class), false, 1, Duration.ofMillis(50));
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+        billQueryExecutor.shutdown();
+    }
+
+    @Test
+    void queriesRunWithTheCallersLoggingContext() {
+        MDC.put(RequestMetricsFilter.PREDICATES_MDC_KEY, "[name,type]");
+
+        String predicates = billQueryExecutor.submit(() -> MDC.get(RequestMetricsFilter.PREDICATES_MDC_KEY)).join();
+
+        assertEquals("[name,type]", predicates);
+    }
+
+    @Test
+    void queryThatCantStartInTimeIsRejectedAsUnavailable() throws InterruptedException {
+        // Virtual threads, so the second query reaches the permit check while the first one runs
+        BillQueryExecutor virtualExecutor =
+                new BillQueryExecutor(mock(PlatformTransactionManager.class), true, 1, Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = virtualExecutor.submit(() -> {
+                started.countDown();
+                await(release);
+                return null;
+            });
+            started.await();
+
+            CompletionException exception = assertThrows(CompletionException.class,
+                    () -> virtualExecutor.submit(() -> null).join());
+            release.countDown();
+            running.join();
+
+            assertInstanceOf(ServiceUnavailableException.class, exception.getCause());
+        } finally {
+            release.countDown();
+            virtualExecutor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.specification.BillSpecification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the entity read path (managed Bill entities, as read with open-in-view)
+ * with the read-only BillView path, by latency and bytes allocated per request.
+ * Needs the MariaDB from application.properties and is skipped unless started with
+ * <pre>
+ * mvn test -Dtest=BillReadPathBenchmark -Dhoracije.benchmark=true [-Dhoracije.benchmark.rows=200000]
+ * </pre>
+ * Inserted bills are deleted after the run.
+ */
+@EnabledIfSystemProperty(named = "horacije.benchmark", matches = "true")
+@SpringBootTest(properties = "horacije.column-store.enabled=false")
+class BillReadPathBenchmark {
+
+    private static final String BRAND = "read-path-benchmark";
+    private static final String TYPE = "read-path-benchmark";
+    private static final String[] WORDS = {"mleko", "hleb", "jogurt", "sir", "kafa", "čokolada", "sapun", "sok"};
+    private static final int ITERATIONS = 20;
+
+    @Autowired
+    private BillRepository billRepository;
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private BillServiceFunctions billServiceFunctions;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BillDictionary billDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void deleteBenchmarkBills() {
+        jdbcTemplate.update("DELETE FROM bill WHERE brand_id = (SELECT id FROM brand WHERE name = ?)", BRAND);
+        billServiceCrud.rebuildDailySummary();
+    }
+
+    @Test
+    void compareReadPaths() {
+        int rows = Integer.getInteger("horacije.benchmark.rows", 200_000);
+        seed(rows);
+
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 1, 31);
+        Pageable pageable = PageRequest.of(0, 100, Sort.by("billDate").descending());
+
+        System.out.printf("%-22s %12s %12s %14s %14s%n",
+                "read", "entity ms", "view ms", "entity KB", "view KB");
+        compare("by article type",
+                () -> inTransaction(() -> billRepository.findAll(BillSpecification.hasType(List.of(TYPE)))),
+                () -> billServiceCrud.readAllBillsByArticleType(TYPE));
+        compare("by date range",
+                () -> inTransaction(() -> billRepository.findAllByBillDateBetween(from, to)),
+                () -> billServiceFunctions.findAllByBillDateBetween(from, to));
+        compare("search page",
+                () -> inTransaction(() -> billRepository.findAll(
+                        BillSpecification.filter(null, null, billDictionary.brands().containing(BRAND),
+                                null, null, null, null), pageable)),
+                () -> billServiceFunctions.searchBills(
+                        null, null, BRAND, null, null, null, null, 0, 100, "billDate", "desc"));
+    }
+
+    private void inTransaction(Runnable read) {
+        transactionTemplate.executeWithoutResult(status -> read.run());
+    }
+
+    private static void compare(String read, Runnable entityPath, Runnable viewPath) {
+        long[] entity = measure(entityPath);
+        long[] view = measure(viewPath);
+        System.out.printf("%-22s %12.2f %12.2f %14d %14d%n",
+                read, entity[0] / 1e6, view[0] / 1e6, entity[1] / 1024, view[1] / 1024);
+    }
+
+    // Average nanos and allocated bytes of the current thread per run
+    private static long[] measure(Runnable read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        read.run();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            read.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new long[]{nanos / ITERATIONS, allocated / ITERATIONS};
+    }
+
+    private void seed(int rows) {
+        Random random = new Random(rows);
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        List<Bill> bills = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Bill bill = new Bill();
+            bill.setBillDate(start.plusDays(random.nextInt(3 * 365)));
+            bill.setArticleName(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1_000));
+            bill.setArticlePrice(BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+            // Every tenth bill gets the benchmark type, so the type read returns a tenth of the table
+            bill.setArticleType(i % 10 == 0 ? TYPE : "ostalo");
+            bill.setBrandName(BRAND);
+            bills.add(bill);
+        }
+        billServiceCrud.createBillsInChunks(bills);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillChanges;
+import com.example.Horacije.administration.repository.BillBulkRepository;
+import com.example.Horacije.administration.repository.BillDailySummaryRepository;
+import com.example.Horacije.administration.repository.BillDailySummaryRepository.Delta;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class BillServiceCrudTests {
+
+    private static final LocalDate MARCH_FIRST = LocalDate.of(2025, 3, 1);
+
+    private final BillRepository billRepository = mock(BillRepository.class);
+    private final BillBulkRepository billBulkRepository = mock(BillBulkRepository.class);
+    private final BillDailySummaryRepository billDailySummaryRepository = mock(BillDailySummaryRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final BillDataVersion billDataVersion = mock(BillDataVersion.class);
+    private final BillLiveTotals billLiveTotals = mock(BillLiveTotals.class);
+    private final BillColumnStore billColumnStore = mock(BillColumnStore.class);
+    private final BillSketches billSketches = mock(BillSketches.class);
+    private final BillAggregateCache billAggregateCache = mock(BillAggregateCache.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private BillServiceCrud billServiceCrud;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        billServiceCrud = new BillServiceCrud(billRepository, billBulkRepository, billDailySummaryRepository,
+                new BillDictionary(mock(JdbcTemplate.class)), eventPublisher, billDataVersion, billLiveTotals,
+                billColumnStore, billSketches, billAggregateCache, transactionTemplate, mock(Validator.class));
+        ReflectionTestUtils.setField(billServiceCrud, "maxBulkChangeRows", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bulkUpdateCorrectsTheDailySummaryAndPublishesTheChange() {
+        List<Bill> before = List.of(bill(1, "Mleko", "100.00"), bill(2, "Hleb", "50.00"));
+        when(billRepository.lockBySpecification(any(), eq(3))).thenReturn(before);
+        BillChanges changes = new BillChanges(null, null, new BigDecimal("150.00"), null, null);
+        when(billRepository.updateBySpecification(any(), eq(changes))).thenReturn(2);
+
+        assertEquals("2 bills updated", billServiceCrud.updateBills(List.of(1, 2), changes).getBody());
+
+        ArgumentCaptor<List<Delta>> deltas = ArgumentCaptor.forClass(List.class);
+        verify(billDailySummaryRepository).apply(deltas.capture());
+        assertEquals(List.of(
+                new Delta(MARCH_FIRST, null, null, new BigDecimal("-150.00"), -2),
+                new Delta(MARCH_FIRST, null, null, new BigDecimal("300.00"), 2)), deltas.getValue());
+
+        ArgumentCaptor<BillChangedEvent> event = ArgumentCaptor.forClass(BillChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(before, event.getValue().removed());
+        assertEquals(List.of("Mleko", "Hleb"), event.getValue().added().stream().map(Bill::getArticleName).toList());
+        assertEquals(List.of(new BigDecimal("150.00"), new BigDecimal("150.00")),
+                event.getValue().added().stream().map(Bill::getArticlePrice).toList());
+        verify(billDataVersion).increment();
+        verify(billLiveTotals).changed(event.getValue());
+    }
+
+    @Test
+    void bulkUpdateFailsIfItChangedOtherBillsThanTheLockedOnes() {
+        when(billRepository.lockBySpecification(any(), anyInt())).thenReturn(List.of(bill(1, "Mleko", "100.00")));
+        BillChanges changes = new BillChanges(null, "Mleko Imlek", null, null, null);
+        when(billRepository.updateBySpecification(any(), eq(changes))).thenReturn(2);
+
+        assertThrows(CustomException.class, () -> billServiceCrud.updateBillsMatching(
+                "mleko", null, null, null, null, null, null, changes));
+
+        verify(billDailySummaryRepository, never()).apply(any());
+        verifyNoInteractions(eventPublisher, billDataVersion, billLiveTotals);
+    }
+
+    @Test
+    void bulkUpdateWithoutChangesIsRejected() {
+        BillChanges changes = new BillChanges(null, null, null, null, null);
+
+        assertThrows(CustomException.class, () -> billServiceCrud.updateBills(List.of(1), changes));
+
+        verifyNoInteractions(billRepository);
+    }
+
+    @Test
+    void bulkChangeWithoutFiltersIsRejected() {
+        BillChanges changes = new BillChanges(null, "Mleko", null, null, null);
+
+        CustomException exception = assertThrows(CustomException.class, () -> billServiceCrud.updateBillsMatching(
+                " ", null, "", null, null, null, null, changes));
+        assertEquals("At least one filter is required", exception.getMessage());
+        assertThrows(CustomException.class, () -> billServiceCrud.deleteBillsMatching(
+                null, null, null, null, null, null, null));
+
+        verifyNoInteractions(billRepository, billDailySummaryRepository);
+    }
+
+    @Test
+    void bulkChangeOfMoreThanMaxRowsIsRejected() {
+        when(billRepository.lockBySpecification(any(), eq(3))).thenReturn(List.of(
+                bill(1, "Mleko", "100.00"), bill(2, "Mleko", "110.00"), bill(3, "Mleko", "120.00")));
+
+        CustomException exception = assertThrows(CustomException.class, () -> billServiceCrud.deleteBillsMatching(
+                "mleko", null, null, null, null, null, null));
+
+        assertEquals("More than 2 bills match, narrow the filters", exception.getMessage());
+        verify(billRepository, never()).deleteBySpecification(any());
+        verifyNoInteractions(billDailySummaryRepository, eventPublisher);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteMatchingRemovesTheLockedBillsFromTheDailySummary() {
+        List<Bill> before = List.of(bill(1, "Mleko", "100.00"), bill(2, "Mleko", "110.00"));
+        when(billRepository.lockBySpecification(any(), eq(3))).thenReturn(before);
+
+        assertEquals("2 bills deleted", billServiceCrud.deleteBillsMatching(
+                "mleko", null, null, null, null, null, null).getBody());
+
+        verify(billRepository).deleteBySpecification(any());
+        ArgumentCaptor<List<Delta>> deltas = ArgumentCaptor.forClass(List.class);
+        verify(billDailySummaryRepository).apply(deltas.capture());
+        assertEquals(List.of(new Delta(MARCH_FIRST, null, null, new BigDecimal("-210.00"), -2)), deltas.getValue());
+        verify(eventPublisher).publishEvent(new BillChangedEvent(before, List.of()));
+    }
+
+    @Test
+    void deleteByIdsPublishesOnlyWhenBillsWereDeleted() {
+        when(billBulkRepository.deleteAllReturning(List.of(7, 8))).thenReturn(List.of(bill(7, "Mleko", "100.00")));
+        when(billBulkRepository.deleteAllReturning(List.of(9))).thenReturn(List.of());
+
+        assertEquals("1 bills deleted", billServiceCrud.deleteBills(List.of(7, 8)).getBody());
+        assertEquals("0 bills deleted", billServiceCrud.deleteBills(List.of(9)).getBody());
+
+        verify(eventPublisher).publishEvent(any(BillChangedEvent.class));
+        verify(billDataVersion).increment();
+    }
+
+    @Test
+    void rebuildReloadsEveryCopyOfTheBillsBeforeTheVersionChanges() {
+        when(billDailySummaryRepository.rebuild()).thenReturn(31);
+
+        assertEquals("Daily summary rebuilt with 31 rows", billServiceCrud.rebuildDailySummary().getBody());
+
+        InOrder inOrder = inOrder(billDailySummaryRepository, billColumnStore, billSketches,
+                billAggregateCache, billDataVersion);
+        inOrder.verify(billDailySummaryRepository).rebuild();
+        inOrder.verify(billColumnStore).reload();
+        inOrder.verify(billSketches).reload();
+        inOrder.verify(billAggregateCache).clear();
+        inOrder.verify(billDataVersion).increment();
+    }
+
+    private static Bill bill(int id, String articleName, String price) {
+        Bill bill = new Bill();
+        bill.setId(id);
+        bill.setBillDate(MARCH_FIRST);
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal(price));
+        return bill;
+    }
+}
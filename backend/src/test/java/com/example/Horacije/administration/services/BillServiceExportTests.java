@@ -0,0 +1,146 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BillServiceExportTests {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 1);
+
+    private final BillRepository billRepository = mock(BillRepository.class);
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private BillServiceExport billServiceExport;
+
+    @BeforeEach
+    void setUp() {
+        billServiceExport = new BillServiceExport(billRepository, new BillDictionary(mock(JdbcTemplate.class)), jsonMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void csvQuotesCommasQuotesAndLineBreaks() throws IOException {
+        when(billRepository.streamBySpecification(any(Specification.class), any(Sort.class))).thenReturn(Stream.of(
+                bill(1, "Mleko", "129.99", "Hrana", "Imlek"),
+                bill(2, "Sok, jabuka", "75.00", null, null),
+                bill(3, "Keks \"Plazma\"", "1E+2", "Slatkiši", "Bambi"),
+                bill(4, "Čokolada\nsa lešnikom", "-0.50", "Slatkiši", "Line\r\nBreak")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        billServiceExport.exportCsv(null, null, null, null, null, null, null, out);
+
+        assertEquals("""
+                id,bill_date,article_name,article_price,article_type,brand_name
+                1,2025-03-01,Mleko,129.99,Hrana,Imlek
+                2,2025-03-01,"Sok, jabuka",75.00,,
+                3,2025-03-01,"Keks ""Plazma\"\"",100,Slatkiši,Bambi
+                4,2025-03-01,"Čokolada
+                sa lešnikom",-0.50,Slatkiši,"Line\r
+                Break"
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ndjsonWritesOneObjectPerLine() throws IOException {
+        List<Bill> bills = List.of(
+                bill(1, "Mleko", "129.99", "Hrana", "Imlek"),
+                bill(2, "Čokolada\nsa lešnikom", "-0.50", null, null),
+                bill(3, "Keks \"Plazma\"\r\n", "100.00", "Slatkiši", "Bambi"));
+        when(billRepository.streamBySpecification(any(Specification.class), any(Sort.class))).thenReturn(bills.stream());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        billServiceExport.exportNdjson(null, null, null, null, null, null, null, out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"), body);
+        String[] lines = body.split("\n", -1);
+        assertEquals(bills.size() + 1, lines.length, body);
+        for (int i = 0; i < bills.size(); i++) {
+            JsonNode line = jsonMapper.readTree(lines[i]);
+            assertEquals(bills.get(i).getId(), line.get("id").asInt());
+            assertEquals(bills.get(i).getArticleName(), line.get("article_name").asString());
+            assertEquals("2025-03-01", line.get("bill_date").asString());
+        }
+        assertEquals("", lines[bills.size()]);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void clientDisconnectStopsReadingAndClosesTheStream() {
+        AtomicInteger read = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Bill> bills = Stream.iterate(1, id -> id + 1)
+                .limit(100_000)
+                .map(id -> bill(id, "Mleko " + id, "129.99", "Hrana", "Imlek"))
+                .peek(bill -> read.incrementAndGet())
+                .onClose(() -> closed.set(true));
+        when(billRepository.streamBySpecification(any(Specification.class), any(Sort.class))).thenReturn(bills);
+
+        IOException exception = assertThrows(IOException.class, () -> billServiceExport.exportCsv(
+                null, null, null, null, null, null, null, new DisconnectingOutputStream(10_000)));
+
+        assertEquals("Broken pipe", exception.getMessage());
+        assertTrue(closed.get(), "database stream must be closed");
+        assertTrue(read.get() < 100_000, "export kept reading after the client left: " + read.get());
+    }
+
+    private static Bill bill(int id, String articleName, String price, String articleType, String brandName) {
+        Bill bill = new Bill();
+        bill.setId(id);
+        bill.setBillDate(DATE);
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(new BigDecimal(price));
+        bill.setArticleType(articleType);
+        bill.setBrandName(brandName);
+        return bill;
+    }
+
+    // Accepts a number of bytes and then fails like a socket whose client went away
+    private static final class DisconnectingOutputStream extends OutputStream {
+
+        private int remaining;
+
+        private DisconnectingOutputStream(int bytes) {
+            this.remaining = bytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > remaining) {
+                throw new IOException("Broken pipe");
+            }
+            remaining -= len;
+        }
+    }
+}
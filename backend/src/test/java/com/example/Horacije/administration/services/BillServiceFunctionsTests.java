@@ -0,0 +1,188 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillBucket;
+import com.example.Horacije.administration.model.BillCursor;
+import com.example.Horacije.administration.model.BillFacets;
+import com.example.Horacije.administration.model.BillSearchSummary;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BillServiceFunctionsTests {
+
+    @Mock
+    private BillRepository billRepository;
+
+    @Mock
+    private BillColumnStore billColumnStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private BillDictionary billDictionary = new BillDictionary(mock(JdbcTemplate.class));
+
+    @Spy
+    private BillAggregateCache billAggregateCache = new BillAggregateCache(false, 0, Duration.ZERO);
+
+    @Spy
+    private BillQueryExecutor billQueryExecutor =
+            new BillQueryExecutor(mock(PlatformTransactionManager.class), false, 2, Duration.ofSeconds(1));
+
+    @InjectMocks
+    private BillServiceFunctions billServiceFunctions;
+
+    @AfterEach
+    void tearDown() {
+        billQueryExecutor.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sumFilteredBillsUsesAggregateQueryWithoutLoadingEntities() {
+        when(billRepository.sumBySpecification(any(Specification.class)))
+                .thenReturn(new BillTotal(new BigDecimal("350.50"), 3L));
+
+        ResponseEntity<BigDecimal> response = billServiceFunctions.sumFilteredBills(
+                "mleko", "hrana", null, null, null,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new BigDecimal("350.50"), response.getBody());
+        verify(billRepository).sumBySpecification(any(Specification.class));
+        verify(billRepository, never()).findAll(any(Specification.class));
+        verify(billRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        verify(billRepository, never()).findAll();
+    }
+
+    @Test
+    void sumFilteredBillsAnsweredByTheColumnStoreOpensNoTransaction() {
+        when(billColumnStore.isReady()).thenReturn(true);
+        when(billColumnStore.sumFiltered("mleko", null, null, null, null, null, null))
+                .thenReturn(new BillTotal(new BigDecimal("129.99"), 1L));
+
+        ResponseEntity<BigDecimal> response = billServiceFunctions.sumFilteredBills(
+                "mleko", null, null, null, null, null, null);
+
+        assertEquals(new BigDecimal("129.99"), response.getBody());
+        verifyNoInteractions(transactionManager, billRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sumFilteredBillsReturnsNoContentWhenNothingMatches() {
+        when(billRepository.sumBySpecification(any(Specification.class)))
+                .thenReturn(new BillTotal(null, 0L));
+
+        ResponseEntity<BigDecimal> response = billServiceFunctions.sumFilteredBills(
+                null, null, "nepostojeci", null, null, null, null);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(billRepository, never()).findAll(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sumByPeriodGroupsInOneAggregateQuery() {
+        List<BillBucket> buckets = List.of(new BillBucket(LocalDate.of(2024, 3, 1), "hrana",
+                new BigDecimal("120.00"), 2L, new BigDecimal("20.00"), new BigDecimal("100.00")));
+        when(billRepository.aggregateBySpecification(any(Specification.class),
+                eq(BillBucket.Granularity.MONTH), eq(BillBucket.GroupBy.TYPE)))
+                .thenReturn(buckets);
+
+        ResponseEntity<List<BillBucket>> response = billServiceFunctions.sumByPeriod(
+                null, null, null, null, null, null, null, "Month", "type");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(buckets, response.getBody());
+        verify(billRepository, never()).findAll(any(Specification.class));
+    }
+
+    @Test
+    void sumByPeriodRejectsUnknownGranularity() {
+        CustomException exception = assertThrows(CustomException.class, () -> billServiceFunctions.sumByPeriod(
+                null, null, null, null, null, null, null, "year", "none"));
+
+        assertEquals("granularity must be one of [day, week, month]", exception.getMessage());
+    }
+
+    @Test
+    void cursorIsRejectedForADifferentSortOrder() {
+        String cursor = new BillCursor("billDate", "desc", LocalDate.of(2024, 5, 1), 42).encode();
+
+        for (String[] sort : new String[][]{{"billDate", "asc"}, {"articlePrice", "desc"}}) {
+            CustomException exception = assertThrows(CustomException.class, () -> billServiceFunctions.searchBillsByCursor(
+                    null, null, null, null, null, null, null, cursor, 10, sort[0], sort[1]));
+            assertEquals("Cursor was created for a different sort order", exception.getMessage());
+        }
+        verifyNoInteractions(billRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchBillsWithFacetsSharesOneSpecification() {
+        when(billRepository.findViewsBySpecification(any(Specification.class), any(Pageable.class))).thenReturn(Page.empty());
+
+        BillFacets facets = billServiceFunctions.searchBillsWithFacets(
+                "mleko", null, null, null, null, null, null, 0, 10, "billDate", "desc", 5, 10);
+
+        ArgumentCaptor<Specification<Bill>> specification = ArgumentCaptor.forClass(Specification.class);
+        verify(billRepository).findViewsBySpecification(specification.capture(), any(Pageable.class));
+        verify(billRepository).facetBySpecification(specification.getValue(), "articleType", 5);
+        verify(billRepository).facetBySpecification(specification.getValue(), "brandName", 5);
+        verify(billRepository).priceHistogramBySpecification(specification.getValue(), 10);
+        assertEquals(0, facets.page().getTotalElements());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchBillsWithSumCombinesPageAndTotal() {
+        BillView view = new BillView(1, LocalDate.of(2024, 5, 1), "mleko", new BigDecimal("120.00"), "hrana", "Imlek");
+        when(billRepository.findViewContentBySpecification(any(Specification.class), any(Pageable.class)))
+                .thenReturn(List.of(view));
+        when(billRepository.sumBySpecification(any(Specification.class)))
+                .thenReturn(new BillTotal(new BigDecimal("3000.00"), 25L));
+
+        BillSearchSummary summary = billServiceFunctions.searchBillsWithSum(
+                "mleko", null, null, null, null, null, null, 0, 10, "billDate", "desc").join();
+
+        assertEquals(List.of(view), summary.page().getContent());
+        assertEquals(25, summary.page().getTotalElements());
+        assertEquals(new BigDecimal("3000.00"), summary.sum());
+        verify(billRepository, never()).findViewsBySpecification(any(Specification.class), any(Pageable.class));
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillImportStatus;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class BillServiceImportTests {
+
+    private static final String HEADER = "id,bill_date,article_name,article_price,article_type,brand_name\n";
+
+    private final BillServiceCrud billServiceCrud = mock(BillServiceCrud.class);
+    // Bills of the inserts that committed
+    private final List<Bill> saved = Collections.synchronizedList(new ArrayList<>());
+    private BillServiceImport billServiceImport;
+
+    @BeforeEach
+    void setUp() {
+        billServiceImport = new BillServiceImport(billServiceCrud,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(billServiceImport, "chunkSize", 2);
+        doAnswer(invocation -> {
+            List<Bill> bills = invocation.getArgument(0);
+            // Like a unique key violation, the insert transaction rolls back as a whole
+            if (bills.stream().anyMatch(bill -> bill.getArticleName().equals("Pokvaren"))) {
+                throw new DataIntegrityViolationException("Insert failed",
+                        new SQLException("Duplicate entry 'Pokvaren'"));
+            }
+            saved.addAll(bills);
+            return null;
+        }).when(billServiceCrud).insertBills(anyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        billServiceImport.shutdown();
+    }
+
+    @Test
+    void importsQuotedFieldsWithByteOrderMarkAndCrlf() throws Exception {
+        String csv = "\uFEFF" + HEADER.replace("\n", "\r\n")
+                + "1,2025-03-01,\"Sok, jabuka\",75.00,,\r\n"
+                + "\r\n"
+                + "2,2025-03-02,\"Keks \"\"Plazma\"\"\",129.99,Slatkiši,\"Bambi\"\r\n"
+                + "3,2025-03-03,\"Čokolada\r\nsa lešnikom\",-0.50,Slatkiši,Bambi\r\n";
+
+        BillImportStatus status = await(start(csv), "COMPLETED");
+
+        assertEquals(3, status.rowsRead());
+        assertEquals(3, status.rowsCommitted());
+        assertEquals(0, status.rowsRejected());
+        assertEquals(List.of("Sok, jabuka", "Keks \"Plazma\"", "Čokolada\nsa lešnikom"),
+                saved.stream().map(Bill::getArticleName).toList());
+        Bill first = saved.getFirst();
+        assertNull(first.getId());
+        assertEquals(LocalDate.of(2025, 3, 1), first.getBillDate());
+        assertEquals(new BigDecimal("75.00"), first.getArticlePrice());
+        assertNull(first.getArticleType());
+        assertNull(first.getBrandName());
+        assertEquals("Bambi", saved.get(1).getBrandName());
+    }
+
+    @Test
+    void malformedRowsAreRejectedWithTheLineTheyStartOn() throws Exception {
+        String csv = HEADER
+                + "1,2025-03-01,Mleko,129.99,Hrana,Imlek\n"
+                + "2,2025-13-01,Hleb,75.00,,\n"
+                + "3,2025-03-03,Sok,,,\n"
+                + "4,2025-03-04,\"Dva\nreda\",10.00,,\n"
+                + "5,2025-03-05,Jaja,abc,,\n"
+                + "6,2025-03-06,   ,10.00,,\n";
+
+        BillImportStatus status = await(start(csv), "COMPLETED");
+
+        assertEquals(6, status.rowsRead());
+        assertEquals(2, status.rowsCommitted());
+        assertEquals(4, status.rowsRejected());
+        assertEquals(4, status.rejected().size());
+        assertTrue(status.rejected().get(0).startsWith("line 3: "), status.rejected().get(0));
+        assertEquals("line 4: article price can not be null", status.rejected().get(1));
+        assertTrue(status.rejected().get(2).startsWith("line 7: "), status.rejected().get(2));
+        assertEquals("line 8: article name can not be empty or null", status.rejected().get(3));
+        assertEquals(List.of("Mleko", "Dva\nreda"), saved.stream().map(Bill::getArticleName).toList());
+    }
+
+    @Test
+    void statusMovesFromQueuedThroughRunningToCompleted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            saved.addAll(invocation.getArgument(0));
+            return null;
+        }).when(billServiceCrud).insertBills(anyList());
+
+        String first = start(HEADER + "1,2025-03-01,Mleko,129.99,,\n");
+        BillImportStatus running = await(first, "RUNNING");
+        assertNotNull(running.startedAt());
+        assertNull(running.finishedAt());
+
+        // Imports run one at a time, so the second waits for the first
+        BillImportStatus queued = billServiceImport.startImport(file(HEADER + "1,2025-03-02,Hleb,75.00,,\n")).getBody();
+        assertEquals("QUEUED", queued.status());
+        assertNull(queued.startedAt());
+
+        release.countDown();
+        BillImportStatus completed = await(first, "COMPLETED");
+        assertEquals(1, completed.rowsCommitted());
+        assertNotNull(completed.finishedAt());
+        assertNull(completed.failure());
+        assertEquals(1, await(queued.id(), "COMPLETED").rowsCommitted());
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRowAndOnlyTheFailingRowIsRejected() throws Exception {
+        String csv = HEADER
+                + "1,2025-03-01,Mleko,129.99,,\n"
+                + "2,2025-03-02,Pokvaren,75.00,,\n"
+                + "3,2025-03-03,Hleb,75.00,,\n";
+
+        BillImportStatus status = await(start(csv), "COMPLETED");
+
+        assertEquals(2, status.rowsCommitted());
+        assertEquals(List.of("line 3: Duplicate entry 'Pokvaren'"), status.rejected());
+        assertEquals(List.of("Mleko", "Hleb"), saved.stream().map(Bill::getArticleName).toList());
+    }
+
+    @Test
+    void importFailingHalfwayKeepsCommittedChunksAndDropsTheCurrentOne() throws Exception {
+        String csv = HEADER
+                + "1,2025-03-01,Mleko,129.99,,\n"
+                + "2,2025-03-02,Hleb,75.00,,\n"
+                + "3,2025-03-03,Sok,90.00,,\n"
+                + "4,2025-03-04,\"Nezatvoren,10.00,,\n";
+
+        BillImportStatus status = await(start(csv), "FAILED");
+
+        assertEquals("Unclosed quoted field starting at line 5", status.failure());
+        assertEquals(2, status.rowsCommitted());
+        assertNotNull(status.finishedAt());
+        assertEquals(List.of("Mleko", "Hleb"), saved.stream().map(Bill::getArticleName).toList());
+    }
+
+    @Test
+    void fileWithoutRequiredColumnsFails() throws Exception {
+        BillImportStatus status = await(start("id,article_name\n1,Mleko\n"), "FAILED");
+
+        assertTrue(status.failure().startsWith("Import file header must contain"), status.failure());
+        assertEquals(0, status.rowsRead());
+    }
+
+    private String start(String csv) {
+        return billServiceImport.startImport(file(csv)).getBody().id();
+    }
+
+    private static MockMultipartFile file(String csv) {
+        return new MockMultipartFile("file", "bills.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private BillImportStatus await(String id, String status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        BillImportStatus current = billServiceImport.getImportStatus(id).getBody();
+        while (!current.status().equals(status)) {
+            assertTrue(System.nanoTime() < deadline, "import is still " + current.status() + ": " + current);
+            Thread.sleep(10);
+            current = billServiceImport.getImportStatus(id).getBody();
+        }
+        return current;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.model.BillPriceStats;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.sharedTools.exceptions.CustomException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BillSketchesTests {
+
+    private static final YearMonth JANUARY = YearMonth.of(2025, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2025, 2);
+
+    private final BillRepository billRepository = mock(BillRepository.class);
+    private BillSketches billSketches;
+
+    @BeforeEach
+    void loadSketches() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getInt("id")).thenReturn(1, 2);
+            when(rs.getString("name")).thenReturn("Hrana", "Piće");
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT id, name FROM article_type"), any(RowCallbackHandler.class));
+        BillDictionary billDictionary = new BillDictionary(jdbcTemplate);
+        billDictionary.afterSingletonsInstantiated();
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // Prices 1..1000 in January and 1001..2000 in February, 200 distinct food articles per month
+        List<Bill> bills = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            bills.add(bill(i, i <= 1000 ? JANUARY : FEBRUARY, "Hrana", "Artikal " + (i % 200), i));
+        }
+        bills.add(bill(2001, JANUARY, "Piće", "Voda", 5000));
+        when(billRepository.findByIdGreaterThanOrderByIdAsc(anyInt(), any(Limit.class)))
+                .thenReturn(bills, List.of());
+
+        billSketches = new BillSketches(billRepository, billDictionary, transactionTemplate, true, 200, 12);
+        billSketches.loadOnStartup();
+    }
+
+    @Test
+    void percentilesAreWithinTheRankError() {
+        BillPriceStats stats = billSketches.stats("Hrana", JANUARY, FEBRUARY);
+
+        assertEquals(2000, stats.count());
+        assertWithinRank(1000, stats.median(), stats.rankError(), 2000);
+        assertWithinRank(1800, stats.p90(), stats.rankError(), 2000);
+    }
+
+    @Test
+    void distinctCountIsWithinItsBounds() {
+        BillPriceStats stats = billSketches.stats("Hrana", JANUARY, JANUARY);
+
+        assertEquals(1000, stats.count());
+        assertTrue(stats.distinctLower() <= 200 && 200 <= stats.distinctUpper(),
+                () -> "200 is outside of " + stats.distinctLower() + ".." + stats.distinctUpper());
+    }
+
+    @Test
+    void rangesWithoutBillsHaveNoStats() {
+        assertNull(billSketches.stats("Hrana", YearMonth.of(2024, 1), YearMonth.of(2024, 12)));
+        assertNull(billSketches.stats("Duvan", JANUARY, FEBRUARY));
+        assertEquals(2001, billSketches.stats(null, JANUARY, FEBRUARY).count());
+    }
+
+    @Test
+    void deletedBillsAreRemovedByRebuildingTheirMonth() {
+        Bill expensive = bill(2001, JANUARY, "Piće", "Voda", 5000);
+        when(billRepository.findViewsByArticleTypeAndBillDateBetween(
+                "Piće", JANUARY.atDay(1), JANUARY.atEndOfMonth()))
+                .thenReturn(List.of(new BillView(2002, JANUARY.atDay(2), "Sok", new BigDecimal("120.00"), "Piće", null)));
+
+        billSketches.onBillsChanged(BillChangedEvent.deleted(expensive));
+        BillPriceStats stats = billSketches.stats("Piće", JANUARY, JANUARY);
+
+        assertEquals(1, stats.count());
+        assertEquals(new BigDecimal("120.00"), stats.median());
+    }
+
+    @Test
+    void billAddedWhileItsMonthIsRebuiltIsNotLost() {
+        Bill expensive = bill(2001, JANUARY, "Piće", "Voda", 5000);
+        Bill added = bill(2003, JANUARY, "Piće", "Kafa", 300);
+        BillView juice = new BillView(2002, JANUARY.atDay(2), "Sok", new BigDecimal("120.00"), "Piće", null);
+        BillView coffee = new BillView(2003, added.getBillDate(), "Kafa", new BigDecimal("300.00"), "Piće", null);
+        when(billRepository.findViewsByArticleTypeAndBillDateBetween(
+                "Piće", JANUARY.atDay(1), JANUARY.atEndOfMonth()))
+                .thenAnswer(invocation -> {
+                    // Committed after the rebuild read the month
+                    billSketches.onBillsChanged(BillChangedEvent.inserted(List.of(added)));
+                    return List.of(juice);
+                })
+                .thenReturn(List.of(juice, coffee));
+
+        billSketches.onBillsChanged(BillChangedEvent.deleted(expensive));
+        billSketches.stats("Piće", JANUARY, JANUARY);
+        BillPriceStats stats = billSketches.stats("Piće", JANUARY, JANUARY);
+
+        assertEquals(2, stats.count());
+        verify(billRepository, times(2)).findViewsByArticleTypeAndBillDateBetween(any(), any(), any());
+    }
+
+    @Test
+    void cellsWithoutTypeAndWithAnUnknownTypeAreRebuiltByTheRuleTheyWereFilledWith() {
+        Bill withoutType = bill(2004, JANUARY, null, "Kesa", 10);
+        Bill deletedWithoutType = bill(2005, JANUARY, null, "Kesa", 20);
+        Bill unknownType = bill(2006, JANUARY, "Duvan", "Cigarete", 400);
+        when(billRepository.findViewsWithoutArticleTypeByBillDateBetween(JANUARY.atDay(1), JANUARY.atEndOfMonth()))
+                .thenReturn(List.of(new BillView(2004, withoutType.getBillDate(), "Kesa", new BigDecimal("10.00"),
+                        null, null)));
+        billSketches.onBillsChanged(BillChangedEvent.inserted(List.of(withoutType, deletedWithoutType, unknownType)));
+        assertEquals(1004, billSketches.stats(null, JANUARY, JANUARY).count());
+
+        billSketches.onBillsChanged(BillChangedEvent.deleted(deletedWithoutType));
+        billSketches.onBillsChanged(BillChangedEvent.deleted(unknownType));
+        BillPriceStats stats = billSketches.stats(null, JANUARY, JANUARY);
+
+        // 1000 food bills, the drink and the bill without type, the unknown type was not stored
+        assertEquals(1002, stats.count());
+        assertNull(billSketches.stats("Duvan", JANUARY, JANUARY));
+        verify(billRepository).findViewsWithoutArticleTypeByBillDateBetween(JANUARY.atDay(1), JANUARY.atEndOfMonth());
+    }
+
+    @Test
+    void invertedRangeIsRejected() {
+        assertThrows(CustomException.class, () -> billSketches.stats("Hrana", FEBRUARY, JANUARY));
+    }
+
+    private static void assertWithinRank(int expectedRank, BigDecimal price, double rankError, int count) {
+        // Prices are 1..count, so a price is its own rank
+        double allowed = rankError * count + 1;
+        assertTrue(Math.abs(price.doubleValue() - expectedRank) <= allowed,
+                () -> price + " is not within " + allowed + " of rank " + expectedRank);
+    }
+
+    private static Bill bill(int id, YearMonth month, String articleType, String articleName, int price) {
+        Bill bill = new Bill();
+        bill.setId(id);
+        bill.setBillDate(LocalDate.of(month.getYear(), month.getMonth(), 1 + id % 28));
+        bill.setArticleName(articleName);
+        bill.setArticlePrice(BigDecimal.valueOf(price).setScale(2));
+        bill.setArticleType(articleType);
+        return bill;
+    }
+}
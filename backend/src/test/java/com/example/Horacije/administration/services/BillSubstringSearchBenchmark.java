@@ -0,0 +1,117 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.specification.BillSpecification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares /search with substring filters before (LIKE '%text%' on the whole table)
+ * and after (ids resolved by the column store trigram index) on a large table.
+ * Needs the MariaDB from application.properties and is skipped unless started with
+ * <pre>
+ * mvn test -Dtest=BillSubstringSearchBenchmark -Dhoracije.benchmark=true [-Dhoracije.benchmark.rows=1000000]
+ * </pre>
+ * Inserted bills are deleted after the run.
+ */
+@EnabledIfSystemProperty(named = "horacije.benchmark", matches = "true")
+@SpringBootTest
+class BillSubstringSearchBenchmark {
+
+    private static final String BRAND_PREFIX = "substring-benchmark-";
+    private static final String[] TYPES = {"hrana", "piće", "duvan", "slatkiši", "higijena", "ostalo"};
+    private static final String[] WORDS = {"mleko", "hleb", "jogurt", "sir", "kafa", "čokolada", "sapun",
+            "šampon", "cigarete", "sok", "voda", "pivo", "keks", "jaja", "pasta", "pirinač"};
+    private static final int ITERATIONS = 20;
+
+    @Autowired
+    private BillRepository billRepository;
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private BillServiceFunctions billServiceFunctions;
+
+    @Autowired
+    private BillColumnStore billColumnStore;
+
+    @Autowired
+    private BillDictionary billDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void deleteBenchmarkBills() {
+        jdbcTemplate.update("DELETE FROM bill WHERE brand_id IN (SELECT id FROM brand WHERE name LIKE ?)", BRAND_PREFIX + "%");
+        billServiceCrud.rebuildDailySummary();
+        billColumnStore.reload();
+    }
+
+    @Test
+    void compareSubstringSearch() {
+        int rows = Integer.getInteger("horacije.benchmark.rows", 1_000_000);
+        seed(rows);
+        billColumnStore.reload();
+
+        // Selective text, a common text, and a brand matching only a few bills
+        String[][] searches = {
+                {"čokolada 17", null, null},
+                {"mleko", null, null},
+                {null, null, BRAND_PREFIX + "42"},
+        };
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("billDate").descending());
+
+        System.out.printf("%-40s %14s %14s%n", "search (name|type|brand)", "LIKE ms", "index ms");
+        for (String[] search : searches) {
+            long before = measure(() -> billRepository.findAll(
+                    BillSpecification.filter(search[0], billDictionary.articleTypes().containing(search[1]),
+                            billDictionary.brands().containing(search[2]), null, null, null, null), pageable));
+            long after = measure(() -> billServiceFunctions.searchBills(
+                    search[0], search[1], search[2], null, null, null, null, 0, 10, "billDate", "desc"));
+            System.out.printf("%-40s %14.2f %14.2f%n",
+                    search[0] + "|" + search[1] + "|" + search[2], before / 1e6, after / 1e6);
+        }
+    }
+
+    private static long measure(Runnable search) {
+        search.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            search.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private void seed(int rows) {
+        Random random = new Random(rows);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Bill> bills = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Bill bill = new Bill();
+            bill.setBillDate(start.plusDays(random.nextInt(5 * 365)));
+            bill.setArticleName(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1_000));
+            bill.setArticlePrice(BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+            bill.setArticleType(TYPES[random.nextInt(TYPES.length)]);
+            bill.setBrandName(BRAND_PREFIX + random.nextInt(50_000));
+            bills.add(bill);
+        }
+        billServiceCrud.createBillsInChunks(bills);
+    }
+}
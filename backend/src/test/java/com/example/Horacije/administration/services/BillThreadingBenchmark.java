@@ -0,0 +1,159 @@
+package com.example.Horacije.administration.services;
+
+import com.example.Horacije.administration.model.Bill;
+import com.example.Horacije.administration.model.BillSearchSummary;
+import com.example.Horacije.administration.model.BillTotal;
+import com.example.Horacije.administration.model.BillView;
+import com.example.Horacije.administration.repository.BillDictionary;
+import com.example.Horacije.administration.repository.BillRepository;
+import com.example.Horacije.administration.specification.BillSpecification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the sequential page + sum queries with BillServiceFunctions.searchBillsWithSum,
+ * which runs them concurrently, first for a single caller (latency) and then for many concurrent
+ * callers (throughput). The callers are virtual or platform threads, like Tomcat request threads,
+ * depending on spring.threads.virtual.enabled, so run it once per mode to compare them.
+ * Needs the MariaDB from application.properties and is skipped unless started with
+ * <pre>
+ * mvn test -Dtest=BillThreadingBenchmark -Dhoracije.benchmark=true -Dspring.threads.virtual.enabled=false
+ * mvn test -Dtest=BillThreadingBenchmark -Dhoracije.benchmark=true -Dspring.threads.virtual.enabled=true
+ *     [-Dhoracije.benchmark.rows=500000] [-Dhoracije.benchmark.callers=400]
+ * </pre>
+ * Inserted bills are deleted after the run.
+ */
+@EnabledIfSystemProperty(named = "horacije.benchmark", matches = "true")
+@SpringBootTest(properties = "horacije.column-store.enabled=false")
+class BillThreadingBenchmark {
+
+    private static final String BRAND = "threading-benchmark";
+    private static final String[] TYPES = {"hrana", "piće", "duvan", "slatkiši", "higijena", "ostalo"};
+    private static final int ITERATIONS = 50;
+    private static final int CALLS_PER_CALLER = 20;
+
+    @Autowired
+    private BillRepository billRepository;
+
+    @Autowired
+    private BillServiceCrud billServiceCrud;
+
+    @Autowired
+    private BillServiceFunctions billServiceFunctions;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BillDictionary billDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @AfterEach
+    void deleteBenchmarkBills() {
+        jdbcTemplate.update("DELETE FROM bill WHERE brand_id = (SELECT id FROM brand WHERE name = ?)", BRAND);
+        billServiceCrud.rebuildDailySummary();
+    }
+
+    @Test
+    void compareSequentialAndParallelQueries() throws Exception {
+        int rows = Integer.getInteger("horacije.benchmark.rows", 500_000);
+        int callers = Integer.getInteger("horacije.benchmark.callers", 400);
+        seed(rows);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Specification<Bill> specification = BillSpecification.filter(null, billDictionary.articleTypes().containing("hrana"),
+                billDictionary.brands().containing(BRAND), null, null, null, null);
+        Pageable pageable = PageRequest.of(0, 20, Sort.by("billDate").descending());
+        Runnable sequential = () -> readOnly.executeWithoutResult(status -> {
+            List<BillView> content = billRepository.findViewContentBySpecification(specification, pageable);
+            BillTotal total = billRepository.sumBySpecification(specification);
+            new BillSearchSummary(new PageImpl<>(content, pageable, total.count()), total.sum());
+        });
+        Runnable parallel = () -> billServiceFunctions.searchBillsWithSum(
+                null, "hrana", BRAND, null, null, null, null, 0, 20, "billDate", "desc").join();
+
+        System.out.println("Callers on " + (virtualThreads ? "virtual" : "platform") + " threads");
+        System.out.printf("%-12s %14s %10s %10s %10s%n", "path", "single ms", "req/s", "p50 ms", "p99 ms");
+        report("sequential", sequential, callers);
+        report("parallel", parallel, callers);
+    }
+
+    private void report(String path, Runnable call, int callers) throws Exception {
+        call.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        double single = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+
+        long[] latencies = new long[callers * CALLS_PER_CALLER];
+        AtomicLong next = new AtomicLong();
+        try (ExecutorService executor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(200)) {
+            List<Future<?>> futures = new ArrayList<>();
+            start = System.nanoTime();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < CALLS_PER_CALLER; j++) {
+                        long callStart = System.nanoTime();
+                        call.run();
+                        latencies[(int) next.getAndIncrement()] = System.nanoTime() - callStart;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("%-12s %14.2f %10.1f %10.2f %10.2f%n", path, single, latencies.length / seconds,
+                latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6);
+    }
+
+    private void seed(int rows) {
+        Random random = new Random(rows);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Bill> bills = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Bill bill = new Bill();
+            bill.setBillDate(start.plusDays(random.nextInt(5 * 365)));
+            bill.setArticleName("threading " + random.nextInt(1_000));
+            bill.setArticlePrice(BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+            bill.setArticleType(TYPES[random.nextInt(TYPES.length)]);
+            bill.setBrandName(BRAND);
+            bills.add(bill);
+        }
+        billServiceCrud.createBillsInChunks(bills);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.Horacije.administration.sharedTools.datasource;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Points the application at an embedded MariaDB (MariaDB4j), which Flyway migrates like the real database.
+ * The server is started once per JVM and shared by all {@link MariaDbTest} classes.
+ */
+public class EmbeddedMariaDb implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    private static DB db;
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        String url = "jdbc:mariadb://localhost:" + port() + "/horacije?createDatabaseIfNotExist=true";
+        TestPropertyValues.of(
+                "spring.datasource.url=" + url,
+                "spring.datasource.username=root",
+                "spring.datasource.password=",
+                "spring.flyway.url=" + url
+        ).applyTo(context);
+    }
+
+    private static synchronized int port() {
+        if (db == null) {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(0);
+            try {
+                DB started = DB.newEmbeddedDB(config.build());
+                started.start();
+                db = started;
+            } catch (ManagedProcessException e) {
+                throw new IllegalStateException("Failed to start the embedded MariaDB", e);
+            }
+        }
+        return db.getConfiguration().getPort();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.Horacije.administration.sharedTools.datasource;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the test class against the whole application on the {@link EmbeddedMariaDb}, for results that
+ * must be compared with real SQL. All such classes share one application context and one database,
+ * so each test empties the tables it reads first. Skipped unless started with
+ * <pre>
+ * mvn test -Dhoracije.dbtest=true
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@EnabledIfSystemProperty(named = "horacije.dbtest", matches = "true")
+@SpringBootTest(properties = "horacije.archive.enabled=false")
+@ContextConfiguration(initializers = EmbeddedMariaDb.class)
+public @interface MariaDbTest {
+}
@@ -0,0 +1,230 @@
+package com.example.Horacije.administration.sharedTools.datasource;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.example.Horacije.administration.model.BillChangedEvent;
+import com.example.Horacije.administration.services.BillDataVersion;
+import com.example.Horacije.administration.sharedTools.http.ConditionalRequestInterceptor;
+import com.example.Horacije.administration.sharedTools.http.VersionedResource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing of {@link ReplicaDataSource} between two embedded MariaDB instances (MariaDB4j),
+ * a primary and a stand-in replica without replication. The servers are told apart by their port.
+ * Skipped unless started with
+ * <pre>
+ * mvn test -Dtest=ReplicaDataSourceTests -Dhoracije.replicatest=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "horacije.replicatest", matches = "true")
+class ReplicaDataSourceTests {
+
+    private static final Duration READ_YOUR_WRITES = Duration.ofMillis(300);
+    private static final Duration MAX_LAG = Duration.ofMillis(300);
+
+    private static DB primaryDb;
+    private static DB replicaDb;
+
+    private ReplicaDataSource replicaDataSource;
+
+    @BeforeAll
+    static void startDatabases() throws Exception {
+        primaryDb = start();
+        replicaDb = start();
+        for (DB db : List.of(primaryDb, replicaDb)) {
+            try (HikariDataSource setup = pool(db, "setup");
+                 Connection connection = setup.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE test.written (id INT NOT NULL)");
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopDatabases() throws Exception {
+        primaryDb.stop();
+        replicaDb.stop();
+    }
+
+    @BeforeEach
+    void createDataSource() {
+        replicaDataSource = new ReplicaDataSource(pool(primaryDb, "primary"), List.of(pool(replicaDb, "replica-0")),
+                READ_YOUR_WRITES, MAX_LAG);
+    }
+
+    @AfterEach
+    void closeDataSource() {
+        RequestContextHolder.resetRequestAttributes();
+        replicaDataSource.close();
+    }
+
+    @Test
+    void readsGoToTheReplica() throws SQLException {
+        assertEquals(port(replicaDb), serverPort());
+    }
+
+    @Test
+    void readsOfTheWritingClientGoToThePrimaryDuringTheReadYourWritesWindow() throws Exception {
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        inRequest(new MockHttpServletRequest(), writeResponse);
+        replicaDataSource.onBillsChanged(new BillChangedEvent(List.of(), List.of()));
+        assertEquals(port(primaryDb), serverPort());
+
+        Cookie lastWrite = writeResponse.getCookie(ReplicaDataSource.LAST_WRITE_COOKIE);
+        MockHttpServletRequest sameClient = new MockHttpServletRequest();
+        sameClient.setCookies(lastWrite);
+        inRequest(sameClient, new MockHttpServletResponse());
+        assertEquals(port(primaryDb), serverPort());
+
+        inRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+        assertEquals(port(replicaDb), serverPort());
+
+        Thread.sleep(READ_YOUR_WRITES.toMillis() + 100);
+        inRequest(sameClient, new MockHttpServletResponse());
+        assertEquals(port(replicaDb), serverPort());
+    }
+
+    @Test
+    void versionedReadsOfOtherClientsGoToThePrimaryWhileTheReplicaMayLag() throws Exception {
+        BillDataVersion billDataVersion = new BillDataVersion();
+        ConditionalRequestInterceptor interceptor = new ConditionalRequestInterceptor(billDataVersion, MAX_LAG);
+        HandlerMethod versioned = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("versioned"));
+        HandlerMethod unversioned = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("unversioned"));
+
+        // The first client writes, the stand-in replica doesn't replicate, so it lags behind
+        inRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+        try (Connection connection = replicaDataSource.getPrimary().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO test.written (id) VALUES (1)");
+        }
+        replicaDataSource.onBillsChanged(new BillChangedEvent(List.of(), List.of()));
+        billDataVersion.increment();
+
+        // A second client without the cookie reads a resource tagged with the new version
+        MockHttpServletRequest otherClient = new MockHttpServletRequest("GET", "/api/v1/bill/sum");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(otherClient, response, versioned);
+        inRequest(otherClient, response);
+        assertEquals(port(primaryDb), serverPort());
+        assertEquals(1, writtenRows());
+
+        MockHttpServletRequest untagged = new MockHttpServletRequest("GET", "/api/v1/bill/export");
+        interceptor.preHandle(untagged, new MockHttpServletResponse(), unversioned);
+        inRequest(untagged, new MockHttpServletResponse());
+        assertEquals(port(replicaDb), serverPort());
+
+        Thread.sleep(MAX_LAG.toMillis() + 100);
+        MockHttpServletRequest afterTheLag = new MockHttpServletRequest("GET", "/api/v1/bill/sum");
+        interceptor.preHandle(afterTheLag, new MockHttpServletResponse(), versioned);
+        inRequest(afterTheLag, new MockHttpServletResponse());
+        assertEquals(port(replicaDb), serverPort());
+    }
+
+    @Test
+    void writesOutsideOfARequestDontMoveReadsToThePrimary() throws SQLException {
+        replicaDataSource.onBillsChanged(new BillChangedEvent(List.of(), List.of()));
+
+        assertEquals(port(replicaDb), serverPort());
+        assertEquals(port(primaryDb), (int) ReplicaDataSource.readFromPrimary(this::uncheckedServerPort));
+    }
+
+    @Test
+    void readsFailOverToThePrimaryWhileTheReplicaIsDown() throws Exception {
+        replicaDb.stop();
+        try {
+            assertEquals(port(primaryDb), serverPort());
+            replicaDataSource.checkHealth();
+            assertEquals(port(primaryDb), serverPort());
+        } finally {
+            replicaDb.start();
+        }
+
+        replicaDataSource.checkHealth();
+        assertEquals(port(replicaDb), serverPort());
+    }
+
+    private int serverPort() throws SQLException {
+        try (Connection connection = replicaDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet port = statement.executeQuery("SELECT @@port")) {
+            port.next();
+            return port.getInt(1);
+        }
+    }
+
+    private int writtenRows() throws SQLException {
+        try (Connection connection = replicaDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM test.written")) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private int uncheckedServerPort() {
+        try {
+            return serverPort();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void inRequest(MockHttpServletRequest request, MockHttpServletResponse response) {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+    }
+
+    private static DB start() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        DB db = DB.newEmbeddedDB(config.build());
+        db.start();
+        return db;
+    }
+
+    private static int port(DB db) {
+        return db.getConfiguration().getPort();
+    }
+
+    private static HikariDataSource pool(DB db, String name) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:mariadb://localhost:" + port(db) + "/");
+        config.setUsername("root");
+        config.setPassword("");
+        config.setPoolName(name);
+        config.setConnectionTimeout(1_000);
+        config.setInitializationFailTimeout(-1);
+        return new HikariDataSource(config);
+    }
+
+    static class Endpoints {
+
+        @VersionedResource
+        public void versioned() {
+        }
+
+        public void unversioned() {
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.Horacije.administration.sharedTools.exceptions;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GlobalExceptionHandlerTests {
+
+    @Test
+    void customExceptionsAreCountedByCategory() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GlobalExceptionHandler handler = new GlobalExceptionHandler(registry);
+
+        handler.handleCustomException(new CustomException("Bill with id 7 doesn't exist"));
+        handler.handleCustomException(new CustomException("Bill with id 12 doesn't exist"));
+        handler.handleCustomException(new CustomException(
+                "Import job 3f2b8c1e-9a4d-4e7b-8c2a-1d5e6f7a8b9c doesn't exist"));
+        handler.handleCustomException(new CustomException("Bill at index 3 is invalid: bill date can not be null"));
+
+        assertEquals(2, registry.counter("horacije.custom.exceptions",
+                "category", "Bill with id {n} doesn't exist").count());
+        assertEquals(1, registry.counter("horacije.custom.exceptions",
+                "category", "Import job {id} doesn't exist").count());
+        assertEquals(1, registry.counter("horacije.custom.exceptions",
+                "category", "Bill at index {n} is invalid").count());
+    }
+}
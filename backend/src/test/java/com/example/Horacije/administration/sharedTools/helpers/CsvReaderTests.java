@@ -0,0 +1,57 @@
+package com.example.Horacije.administration.sharedTools.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvReaderTests {
+
+    @Test
+    void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        CsvReader csv = reader("1,\"Sok, jabuka\",\"Keks \"\"Plazma\"\"\",\"Čokolada\nsa lešnikom\",\n2,,\"\",x\n");
+
+        assertEquals(List.of("1", "Sok, jabuka", "Keks \"Plazma\"", "Čokolada\nsa lešnikom", ""), csv.readRecord());
+        assertEquals(1, csv.getLineNumber());
+        assertEquals(List.of("2", "", "", "x"), csv.readRecord());
+        assertEquals(3, csv.getLineNumber());
+        assertNull(csv.readRecord());
+    }
+
+    @Test
+    void crlfLineEndsAreNotPartOfTheLastField() throws IOException {
+        CsvReader csv = reader("bill_date,article_name\r\n2025-03-01,\"Mleko\r\n2L\"\r\n2025-03-02,Hleb\r\n");
+
+        assertEquals(List.of("bill_date", "article_name"), csv.readRecord());
+        assertEquals(List.of("2025-03-01", "Mleko\n2L"), csv.readRecord());
+        assertEquals(List.of("2025-03-02", "Hleb"), csv.readRecord());
+        assertEquals(4, csv.getLineNumber());
+        assertNull(csv.readRecord());
+    }
+
+    @Test
+    void byteOrderMarkIsSkippedOnlyAtTheStart() throws IOException {
+        CsvReader csv = reader("\uFEFFbill_date,article_name\n\uFEFFx,y\n");
+
+        assertEquals(List.of("bill_date", "article_name"), csv.readRecord());
+        assertEquals(List.of("\uFEFFx", "y"), csv.readRecord());
+    }
+
+    @Test
+    void unclosedQuoteReportsTheLineWhereTheRecordStarted() throws IOException {
+        CsvReader csv = reader("a,b\n\"never\nclosed,c\n");
+
+        csv.readRecord();
+        IOException exception = assertThrows(IOException.class, csv::readRecord);
+        assertEquals("Unclosed quoted field starting at line 2", exception.getMessage());
+    }
+
+    private static CsvReader reader(String content) {
+        return new CsvReader(new StringReader(content));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.Horacije.administration.sharedTools.http;
+
+import com.example.Horacije.administration.services.BillDataVersion;
+import com.example.Horacije.administration.sharedTools.datasource.ReplicaDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionalRequestInterceptorTests {
+
+    private final BillDataVersion billDataVersion = new BillDataVersion();
+    private final ConditionalRequestInterceptor interceptor = new ConditionalRequestInterceptor(billDataVersion,
+            Duration.ofMinutes(1));
+
+    @Test
+    void unchangedDataIsAnsweredWithNotModified() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(search(), first, handler("versioned")));
+        String etag = first.getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest repeated = search();
+        repeated.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(repeated, second, handler("versioned")));
+        assertEquals(304, second.getStatus());
+    }
+
+    @Test
+    void writeChangesTheEtag() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        interceptor.preHandle(search(), first, handler("versioned"));
+        billDataVersion.increment();
+
+        MockHttpServletRequest repeated = search();
+        repeated.addHeader(HttpHeaders.IF_NONE_MATCH, first.getHeader(HttpHeaders.ETAG));
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(repeated, second, handler("versioned")));
+        assertNotEquals(first.getHeader(HttpHeaders.ETAG), second.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void readsAfterAWriteGoToThePrimaryForTheReplicaLag() throws Exception {
+        MockHttpServletRequest beforeWrite = search();
+        interceptor.preHandle(beforeWrite, new MockHttpServletResponse(), handler("versioned"));
+        assertNull(beforeWrite.getAttribute(ReplicaDataSource.PRIMARY_READS_ATTRIBUTE));
+
+        billDataVersion.increment();
+        MockHttpServletRequest afterWrite = search();
+        interceptor.preHandle(afterWrite, new MockHttpServletResponse(), handler("versioned"));
+        assertEquals(Boolean.TRUE, afterWrite.getAttribute(ReplicaDataSource.PRIMARY_READS_ATTRIBUTE));
+
+        MockHttpServletRequest afterTheLag = search();
+        new ConditionalRequestInterceptor(billDataVersion, Duration.ZERO)
+                .preHandle(afterTheLag, new MockHttpServletResponse(), handler("versioned"));
+        assertNull(afterTheLag.getAttribute(ReplicaDataSource.PRIMARY_READS_ATTRIBUTE));
+    }
+
+    @Test
+    void etagDependsOnParametersButNotOnTheirOrder() {
+        MockHttpServletRequest reordered = new MockHttpServletRequest("GET", "/api/v1/bill/search");
+        reordered.addParameter("page", "0");
+        reordered.addParameter("type", "hrana");
+        MockHttpServletRequest otherPage = search();
+        otherPage.setParameter("page", "1");
+
+        assertEquals(interceptor.etag(search()), interceptor.etag(reordered));
+        assertNotEquals(interceptor.etag(search()), interceptor.etag(otherPage));
+    }
+
+    @Test
+    void endpointsWithoutAnnotationAreNotTagged() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(search(), response, handler("unversioned")));
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    private static MockHttpServletRequest search() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/bill/search");
+        request.addParameter("type", "hrana");
+        request.addParameter("page", "0");
+        return request;
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Endpoints(), Endpoints.class.getMethod(name));
+    }
+
+    static class Endpoints {
+
+        @VersionedResource
+        public void versioned() {
+        }
+
+        public void unversioned() {
+        }
+    }
+}
@@ -137,6 +137,7 @@ export default function AddBillPage() {
 
             const response = await fetch("http://localhost:8080/api/v1/bill/create", {
                 method: "POST",
+                credentials: "include",
                 headers: {
                     "Content-Type": "application/json"
                 },
@@ -109,7 +109,8 @@ export default function CheckPurchasesPage() {
             }
 
 
-            const response = await fetch(`${API_BASE_URL}/search?${params.toString()}`);
+            // Kolačić poslednjeg upisa šaljemo da bi pretraga posle izmene čitala sveže podatke
+            const response = await fetch(`${API_BASE_URL}/search?${params.toString()}`, {credentials: "include"});
 
             if (!response.ok) {
                 throw new Error("Greška pri učitavanju podataka");
@@ -178,6 +179,38 @@ export default function CheckPurchasesPage() {
         }
     };
 
+    // Živa suma – server šalje novu sumu posle svakog dodavanja, izmene ili brisanja,
+    // pa ne moramo ponovo da zovemo /sum
+    useEffect(() => {
+        const params = new URLSearchParams();
+
+        if (debouncedFilters.name.trim() !== "") params.append("name", debouncedFilters.name.trim());
+        if (debouncedFilters.type.trim() !== "") params.append("type", debouncedFilters.type.trim());
+        if (debouncedFilters.brand.trim() !== "") params.append("brand", debouncedFilters.brand.trim());
+        if (debouncedFilters.priceMin !== "") params.append("priceMin", debouncedFilters.priceMin);
+        if (debouncedFilters.priceMax !== "") params.append("priceMax", debouncedFilters.priceMax);
+        if (debouncedFilters.dateFrom !== "") params.append("dateFrom", debouncedFilters.dateFrom);
+        if (debouncedFilters.dateTo !== "") params.append("dateTo", debouncedFilters.dateTo);
+
+        const source = new EventSource(`${API_BASE_URL}/sum/live?${params.toString()}`);
+        source.addEventListener("total", (event) => {
+            const total = JSON.parse(event.data);
+            // Nema rezultata – sum je null
+            setCalculatedTotal(total.sum ?? 0);
+        });
+        // Ako server odbije pretplatu (503) ili se veza prekine, sumu jednom računamo preko /sum,
+        // a EventSource se sam ponovo povezuje dok veza nije zatvorena
+        let fellBack = false;
+        source.onerror = () => {
+            if (!fellBack) {
+                fellBack = true;
+                fetchSum();
+            }
+        };
+
+        return () => source.close();
+    }, [debouncedFilters]);
+
     return (
         <div className="check-container">
 
@@ -347,6 +380,7 @@ export default function CheckPurchasesPage() {
                     <p>—</p>
                 )}
 
+                {/* Ako živa suma ne stiže (npr. proxy zadržava stream), suma se računa ručno */}
                 <button
                     className="calculate-btn"
                     onClick={fetchSum}
@@ -519,6 +553,7 @@ export default function CheckPurchasesPage() {
                                             `http://localhost:8080/api/v1/bill/update/${editingBill.id}`,
                                             {
                                                 method: "PUT",
+                                                credentials: "include",
                                                 headers: {"Content-Type": "application/json"},
                                                 body: JSON.stringify(editingBill),
                                             }
@@ -573,7 +608,7 @@ export default function CheckPurchasesPage() {
                                     try {
                                         const response = await fetch(
                                             `http://localhost:8080/api/v1/bill/delete/${deleteTarget.id}`,
-                                            {method: "DELETE"}
+                                            {method: "DELETE", credentials: "include"}
                                         );
 
                                         if (!response.ok) {